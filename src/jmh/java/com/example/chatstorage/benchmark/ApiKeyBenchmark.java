@@ -0,0 +1,120 @@
+package com.example.chatstorage.benchmark;
+
+import com.example.chatstorage.config.RateLimitProperties;
+import com.example.chatstorage.config.SecurityProperties;
+import com.example.chatstorage.security.ApiKeyInterceptor;
+import com.example.chatstorage.security.ApiKeyService;
+import com.example.chatstorage.security.ApiKeyTier;
+import com.example.chatstorage.security.ratelimit.InMemoryRateLimitStore;
+import com.example.chatstorage.security.ratelimit.RateLimitStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiKeyBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        ApiKeyService apiKeyService;
+        ApiKeyInterceptor interceptor;
+        String sharedKey;
+        MockHttpServletRequest protectedRequest;
+        MockHttpServletRequest whitelistedRequest;
+        MockHttpServletResponse response;
+
+        @Setup
+        public void setUp() {
+            apiKeyService = new ApiKeyService(new SecurityProperties("benchmark-secret", TimeUnit.DAYS.toMillis(1)),
+                    new RateLimitProperties(Integer.MAX_VALUE), new FastWindowRateLimitStore(), new SimpleMeterRegistry());
+            interceptor = new ApiKeyInterceptor(apiKeyService);
+            sharedKey = apiKeyService.generateApiKey(ApiKeyTier.PREMIUM).getApiKey();
+            protectedRequest = new MockHttpServletRequest("GET", "/api/v1/sessions/3f1c/messages");
+            protectedRequest.addHeader("X-API-KEY", sharedKey);
+            whitelistedRequest = new MockHttpServletRequest("GET", "/v3/api-docs/swagger-config");
+            response = new MockHttpServletResponse();
+        }
+    }
+
+    // FixedWindowCounter caps a window at 2^24 - 1 permits, which validate uses up within one iteration, so the
+    // rest would measure rejections. Running the store's clock 600 times faster rolls the one-minute window every
+    // 100 ms; every call then takes the admit path, including the occasional rollover a real key sees.
+    static final class FastWindowRateLimitStore implements RateLimitStore {
+
+        private static final long SPEEDUP = 600;
+
+        private final InMemoryRateLimitStore delegate = new InMemoryRateLimitStore();
+
+        @Override
+        public boolean tryAcquire(long keyId, long keyExpiresAt, int limit, long nowMs) {
+            return delegate.tryAcquire(keyId, keyExpiresAt, limit, nowMs * SPEEDUP);
+        }
+
+        @Override
+        public int trackedKeys() {
+            return delegate.trackedKeys();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PerThread {
+
+        String key;
+
+        @Setup
+        public void setUp(Shared shared) {
+            key = shared.apiKeyService.generateApiKey(ApiKeyTier.PREMIUM).getApiKey();
+        }
+    }
+
+    @Benchmark
+    public void validate(Shared shared) {
+        shared.apiKeyService.validateAndRecordUsage(shared.sharedKey);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void validateSharedKeyContended(Shared shared) {
+        shared.apiKeyService.validateAndRecordUsage(shared.sharedKey);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void validateOwnKeyContended(Shared shared, PerThread perThread) {
+        shared.apiKeyService.validateAndRecordUsage(perThread.key);
+    }
+
+    @Benchmark
+    public boolean interceptWhitelisted(Shared shared) {
+        return shared.interceptor.preHandle(shared.whitelistedRequest, shared.response, null);
+    }
+
+    @Benchmark
+    public boolean interceptProtected(Shared shared) {
+        return shared.interceptor.preHandle(shared.protectedRequest, shared.response, null);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean interceptProtectedContended(Shared shared) {
+        return shared.interceptor.preHandle(shared.protectedRequest, shared.response, null);
+    }
+}
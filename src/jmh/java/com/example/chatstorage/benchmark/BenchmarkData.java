@@ -0,0 +1,42 @@
+package com.example.chatstorage.benchmark;
+
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.domain.SenderType;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.mapper.ChatMessageMapperImpl;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+final class BenchmarkData {
+
+    private static final OffsetDateTime BASE_TIME = OffsetDateTime.of(2024, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+    private static final String CONTENT = "How do I rotate the signing key without invalidating active sessions? ".repeat(4);
+    private static final String CONTEXT = "[{\"doc\":\"runbook-42\",\"score\":0.87,\"text\":\"Rotate keys during a window...\"}]"
+            .repeat(8);
+
+    private BenchmarkData() {
+    }
+
+    static ChatMessage message(int index) {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSender(index % 2 == 0 ? SenderType.USER : SenderType.ASSISTANT);
+        message.setContent(CONTENT);
+        message.setContext(new byte[32], CONTEXT);
+        message.setCreatedAt(BASE_TIME.plusSeconds(index));
+        return message;
+    }
+
+    static List<ChatMessageResponse> responses(int count) {
+        ChatMessageMapperImpl mapper = new ChatMessageMapperImpl();
+        List<ChatMessageResponse> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(mapper.toResponse(message(i)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.chatstorage.benchmark;
+
+import com.example.chatstorage.config.RequestLoggingProperties;
+import com.example.chatstorage.logging.RequestResponseLoggingFilter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+// Logs go through the same asynchronous configuration as production, written under target/benchmark-logs.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dlog4j2.configurationFile=benchmark/log4j2-async.xml")
+@State(Scope.Benchmark)
+public class LoggingFilterBenchmark {
+
+    private static final byte[] REQUEST_BODY = "{\"sender\":\"USER\",\"content\":\"hello\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RESPONSE_BODY = "x".repeat(8 * 1024).getBytes(StandardCharsets.UTF_8);
+
+    @Param({"1.0", "0.1", "0.0"})
+    private double sampleRate;
+
+    private RequestResponseLoggingFilter filter;
+    private FilterChain chain;
+
+    @Setup
+    public void setUp() {
+        RequestLoggingProperties properties = new RequestLoggingProperties();
+        properties.setSampleRate(sampleRate);
+        filter = new RequestResponseLoggingFilter(properties);
+        chain = (request, response) -> {
+            request.getInputStream().readAllBytes();
+            response.setContentType("application/json");
+            response.getOutputStream().write(RESPONSE_BODY);
+        };
+    }
+
+    @Benchmark
+    public MockHttpServletResponse filter() throws ServletException, IOException {
+        return doFilter();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public MockHttpServletResponse filterContended() throws ServletException, IOException {
+        return doFilter();
+    }
+
+    private MockHttpServletResponse doFilter() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/sessions/3f1c/messages");
+        request.setQueryString("userId=user-1");
+        request.addHeader("X-API-KEY", "secret");
+        request.setContentType("application/json");
+        request.setContent(REQUEST_BODY);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.chatstorage.benchmark;
+
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.domain.ChatSession;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.dto.ChatSessionResponse;
+import com.example.chatstorage.mapper.ChatMessageMapper;
+import com.example.chatstorage.mapper.ChatMessageMapperImpl;
+import com.example.chatstorage.mapper.ChatSessionMapper;
+import com.example.chatstorage.mapper.ChatSessionMapperImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappingBenchmark {
+
+    private final ChatMessageMapper chatMessageMapper = new ChatMessageMapperImpl();
+    private final ChatSessionMapper chatSessionMapper = new ChatSessionMapperImpl();
+    private ChatMessage message;
+    private ChatSession session;
+
+    @Setup
+    public void setUp() {
+        message = BenchmarkData.message(0);
+        session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        session.setUserId("user-1");
+        session.setTitle("Quarterly planning");
+        session.setFavorite(true);
+        session.setCreatedAt(OffsetDateTime.now());
+        session.setUpdatedAt(OffsetDateTime.now());
+    }
+
+    @Benchmark
+    public ChatMessageResponse mapMessage() {
+        return chatMessageMapper.toResponse(message);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ChatMessageResponse mapMessageContended() {
+        return chatMessageMapper.toResponse(message);
+    }
+
+    @Benchmark
+    public ChatSessionResponse mapSession() {
+        return chatSessionMapper.toResponse(session);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public ChatSessionResponse mapSessionContended() {
+        return chatSessionMapper.toResponse(session);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.chatstorage.benchmark;
+
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.dto.CursorPagedResponse;
+import com.example.chatstorage.dto.PagedResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    // Same settings as the application's ObjectMapper (spring.jackson.serialization in application.yml).
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    private PagedResponse<ChatMessageResponse> pagedResponse;
+    private CursorPagedResponse<ChatMessageResponse> cursorPagedResponse;
+
+    @Setup
+    public void setUp() {
+        List<ChatMessageResponse> messages = BenchmarkData.responses(pageSize);
+        pagedResponse = new PagedResponse<>(messages, 0, pageSize, 10_000, 10_000 / pageSize, false);
+        cursorPagedResponse = new CursorPagedResponse<>(messages, pageSize, "next", "previous", true, true, null);
+    }
+
+    @Benchmark
+    public byte[] pagedResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(pagedResponse);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public byte[] pagedResponseContended() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(pagedResponse);
+    }
+
+    @Benchmark
+    public byte[] cursorPagedResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(cursorPagedResponse);
+    }
+}
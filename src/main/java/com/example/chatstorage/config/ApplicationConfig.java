@@ -2,8 +2,13 @@ package com.example.chatstorage.config;
 
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @Configuration
-@EnableConfigurationProperties({CorsProperties.class})
+@EnableScheduling
+@EnableConfigurationProperties({CorsProperties.class, PurgeProperties.class, RequestLoggingProperties.class,
+        SessionCacheProperties.class, MessageTailCacheProperties.class, EmbeddingProperties.class,
+        MessageCompressionProperties.class, ContextBlobCacheProperties.class, PartitionProperties.class,
+        ArchiveProperties.class, ReadReplicaProperties.class, MessageStreamProperties.class})
 public class ApplicationConfig {
 }
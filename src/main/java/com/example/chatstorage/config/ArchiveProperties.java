@@ -0,0 +1,65 @@
+package com.example.chatstorage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "archive")
+public class ArchiveProperties {
+
+    private boolean enabled = false;
+    private Path directory = Path.of("data", "archive");
+    private Duration idleAfter = Duration.ofDays(90);
+    private long intervalMs = 3_600_000;
+    private int sessionsPerRun = 200;
+    private int maxOpenSegments = 128;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    public Duration getIdleAfter() {
+        return idleAfter;
+    }
+
+    public void setIdleAfter(Duration idleAfter) {
+        this.idleAfter = idleAfter;
+    }
+
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    public void setIntervalMs(long intervalMs) {
+        this.intervalMs = intervalMs;
+    }
+
+    public int getSessionsPerRun() {
+        return sessionsPerRun;
+    }
+
+    public void setSessionsPerRun(int sessionsPerRun) {
+        this.sessionsPerRun = sessionsPerRun;
+    }
+
+    public int getMaxOpenSegments() {
+        return maxOpenSegments;
+    }
+
+    public void setMaxOpenSegments(int maxOpenSegments) {
+        this.maxOpenSegments = maxOpenSegments;
+    }
+}
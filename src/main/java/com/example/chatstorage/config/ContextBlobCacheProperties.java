@@ -0,0 +1,18 @@
+package com.example.chatstorage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties(prefix = "context-blob-cache")
+public class ContextBlobCacheProperties {
+
+    private DataSize maximumSize = DataSize.ofMegabytes(32);
+
+    public DataSize getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(DataSize maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.chatstorage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "embeddings")
+public class EmbeddingProperties {
+
+    private boolean enabled = true;
+    private int dimensions = 1536;
+    private int m = 16;
+    private int efConstruction = 100;
+    private int efSearch = 64;
+    private int maxResults = 100;
+    private DataSize maximumSize = DataSize.ofMegabytes(512);
+    private Duration refreshInterval = Duration.ofSeconds(1);
+    private int preloadUsers = 1000;
+    private Duration preloadWindow = Duration.ofDays(1);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    public void setDimensions(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    public void setM(int m) {
+        this.m = m;
+    }
+
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    public void setEfConstruction(int efConstruction) {
+        this.efConstruction = efConstruction;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    public void setMaxResults(int maxResults) {
+        this.maxResults = maxResults;
+    }
+
+    public DataSize getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(DataSize maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public int getPreloadUsers() {
+        return preloadUsers;
+    }
+
+    public void setPreloadUsers(int preloadUsers) {
+        this.preloadUsers = preloadUsers;
+    }
+
+    public Duration getPreloadWindow() {
+        return preloadWindow;
+    }
+
+    public void setPreloadWindow(Duration preloadWindow) {
+        this.preloadWindow = preloadWindow;
+    }
+}
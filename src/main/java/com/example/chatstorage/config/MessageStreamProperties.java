@@ -0,0 +1,91 @@
+package com.example.chatstorage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "message-stream")
+public class MessageStreamProperties {
+
+    private int bufferSize = 256;
+    private int resumeLimit = 1_000;
+    private Duration timeout = Duration.ofMinutes(30);
+    private long heartbeatIntervalMs = 30_000;
+    private int dispatchThreads = 16;
+    private Duration sendTimeout = Duration.ofSeconds(10);
+    private int replayThreads = 4;
+    private boolean notifyEnabled = false;
+    private long notifyIntervalMs = 50;
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getResumeLimit() {
+        return resumeLimit;
+    }
+
+    public void setResumeLimit(int resumeLimit) {
+        this.resumeLimit = resumeLimit;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public long getHeartbeatIntervalMs() {
+        return heartbeatIntervalMs;
+    }
+
+    public void setHeartbeatIntervalMs(long heartbeatIntervalMs) {
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+    }
+
+    public int getDispatchThreads() {
+        return dispatchThreads;
+    }
+
+    public void setDispatchThreads(int dispatchThreads) {
+        this.dispatchThreads = dispatchThreads;
+    }
+
+    public Duration getSendTimeout() {
+        return sendTimeout;
+    }
+
+    public void setSendTimeout(Duration sendTimeout) {
+        this.sendTimeout = sendTimeout;
+    }
+
+    public int getReplayThreads() {
+        return replayThreads;
+    }
+
+    public void setReplayThreads(int replayThreads) {
+        this.replayThreads = replayThreads;
+    }
+
+    public boolean isNotifyEnabled() {
+        return notifyEnabled;
+    }
+
+    public void setNotifyEnabled(boolean notifyEnabled) {
+        this.notifyEnabled = notifyEnabled;
+    }
+
+    public long getNotifyIntervalMs() {
+        return notifyIntervalMs;
+    }
+
+    public void setNotifyIntervalMs(long notifyIntervalMs) {
+        this.notifyIntervalMs = notifyIntervalMs;
+    }
+}
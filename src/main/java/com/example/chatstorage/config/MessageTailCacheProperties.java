@@ -0,0 +1,47 @@
+package com.example.chatstorage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "message-tail-cache")
+public class MessageTailCacheProperties {
+
+    private boolean enabled = true;
+    private int messagesPerSession = 50;
+    private DataSize maximumSize = DataSize.ofMegabytes(64);
+    private Duration expireAfterLoad = Duration.ofSeconds(30);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getMessagesPerSession() {
+        return messagesPerSession;
+    }
+
+    public void setMessagesPerSession(int messagesPerSession) {
+        this.messagesPerSession = messagesPerSession;
+    }
+
+    public DataSize getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(DataSize maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getExpireAfterLoad() {
+        return expireAfterLoad;
+    }
+
+    public void setExpireAfterLoad(Duration expireAfterLoad) {
+        this.expireAfterLoad = expireAfterLoad;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.chatstorage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "purge")
+public class PurgeProperties {
+
+    private boolean enabled = true;
+    private long intervalMs = 5000;
+    private int sessionsPerRun = 10;
+    private int batchSize = 1000;
+    private long pauseMs = 50;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getIntervalMs() {
+        return intervalMs;
+    }
+
+    public void setIntervalMs(long intervalMs) {
+        this.intervalMs = intervalMs;
+    }
+
+    public int getSessionsPerRun() {
+        return sessionsPerRun;
+    }
+
+    public void setSessionsPerRun(int sessionsPerRun) {
+        this.sessionsPerRun = sessionsPerRun;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public long getPauseMs() {
+        return pauseMs;
+    }
+
+    public void setPauseMs(long pauseMs) {
+        this.pauseMs = pauseMs;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.chatstorage.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
@@ -7,13 +8,26 @@ import org.springframework.stereotype.Component;
 public class RateLimitProperties {
 
     private final int requestsPerMinute;
+    private final int premiumRequestsPerMinute;
 
+    @Autowired
     public RateLimitProperties(
-            @Value("${RATE_LIMIT_REQUESTS_PER_MINUTE:${ratelimit.requests-per-minute:10}}") int requestsPerMinute) {
+            @Value("${RATE_LIMIT_REQUESTS_PER_MINUTE:${ratelimit.requests-per-minute:10}}") int requestsPerMinute,
+            @Value("${RATE_LIMIT_PREMIUM_REQUESTS_PER_MINUTE:${ratelimit.premium-requests-per-minute:100}}")
+            int premiumRequestsPerMinute) {
         this.requestsPerMinute = requestsPerMinute;
+        this.premiumRequestsPerMinute = premiumRequestsPerMinute;
+    }
+
+    public RateLimitProperties(int requestsPerMinute) {
+        this(requestsPerMinute, requestsPerMinute);
     }
 
     public int getRequestsPerMinute() {
         return requestsPerMinute;
     }
+
+    public int getPremiumRequestsPerMinute() {
+        return premiumRequestsPerMinute;
+    }
 }
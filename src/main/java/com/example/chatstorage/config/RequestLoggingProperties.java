@@ -0,0 +1,46 @@
+package com.example.chatstorage.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+@ConfigurationProperties(prefix = "request-logging")
+public class RequestLoggingProperties {
+
+    private boolean enabled = true;
+    private double sampleRate = 1.0;
+    private int maxBodyBytes = 2048;
+    private List<String> redactedHeaders = List.of("x-api-key", "authorization", "cookie", "set-cookie");
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    public void setMaxBodyBytes(int maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    public List<String> getRedactedHeaders() {
+        return redactedHeaders;
+    }
+
+    public void setRedactedHeaders(List<String> redactedHeaders) {
+        this.redactedHeaders = redactedHeaders;
+    }
+}
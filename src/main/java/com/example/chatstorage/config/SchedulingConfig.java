@@ -0,0 +1,43 @@
+package com.example.chatstorage.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.task.SimpleAsyncTaskSchedulerBuilder;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+// Purge, archive and partition runs can take minutes. They get their own scheduler so that the short periodic
+// jobs (rate-limit sync, stream notifications, heartbeats) never wait behind them, whatever the size of the
+// shared pool. Spring Boot backs off its own scheduler once any TaskScheduler bean exists, so the shared one is
+// declared here the same way Boot would.
+@Configuration
+public class SchedulingConfig {
+
+    public static final String MAINTENANCE_SCHEDULER = "maintenanceTaskScheduler";
+
+    // One thread per maintenance job, so they do not hold each other up either.
+    private static final int MAINTENANCE_POOL_SIZE = 3;
+
+    @Bean(name = "taskScheduler")
+    @ConditionalOnThreading(Threading.PLATFORM)
+    ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(name = "taskScheduler")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    SimpleAsyncTaskScheduler taskSchedulerVirtualThreads(SimpleAsyncTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(name = MAINTENANCE_SCHEDULER)
+    ThreadPoolTaskScheduler maintenanceTaskScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(MAINTENANCE_POOL_SIZE);
+        scheduler.setThreadNamePrefix("maintenance-");
+        return scheduler;
+    }
+}
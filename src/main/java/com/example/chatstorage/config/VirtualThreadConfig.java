@@ -0,0 +1,50 @@
+package com.example.chatstorage.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// Active with spring.threads.virtual.enabled=true. Spring Boot then runs Tomcat request handling,
+// @Scheduled jobs (other than the maintenance jobs, see SchedulingConfig) and @Async work on virtual threads;
+// this class adapts the rest of the service to that.
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+@EnableConfigurationProperties(VirtualThreadProperties.class)
+public class VirtualThreadConfig {
+
+    private static final Logger logger = LogManager.getLogger(VirtualThreadConfig.class);
+
+    // Request concurrency is no longer capped by the Tomcat pool, so the connection pool becomes the
+    // throttle: keep it fixed-size and fail fast instead of letting waiters pile up behind it.
+    @Bean
+    static BeanPostProcessor virtualThreadHikariPolicy(ObjectProvider<VirtualThreadProperties> properties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    VirtualThreadProperties policy = properties.getObject();
+                    dataSource.setMaximumPoolSize(policy.getMaximumPoolSize());
+                    dataSource.setMinimumIdle(policy.getMaximumPoolSize());
+                    dataSource.setConnectionTimeout(policy.getConnectionTimeout().toMillis());
+                    logger.info("Virtual threads enabled: Hikari pool fixed at {} connections, connection timeout {} ms",
+                            policy.getMaximumPoolSize(), policy.getConnectionTimeout().toMillis());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    VirtualThreadPinningMonitor virtualThreadPinningMonitor(VirtualThreadProperties properties,
+                                                            MeterRegistry meterRegistry) {
+        return new VirtualThreadPinningMonitor(properties.getPinnedThreshold(), meterRegistry);
+    }
+}
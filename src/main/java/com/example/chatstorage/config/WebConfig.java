@@ -1,5 +1,6 @@
 package com.example.chatstorage.config;
 
+import com.example.chatstorage.datasource.ReadYourWritesInterceptor;
 import com.example.chatstorage.security.ApiKeyInterceptor;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
@@ -18,15 +19,19 @@ public class WebConfig implements WebMvcConfigurer {
 
     private final CorsProperties corsProperties;
     private final ApiKeyInterceptor apiKeyInterceptor;
+    private final ReadYourWritesInterceptor readYourWritesInterceptor;
 
-    public WebConfig(CorsProperties corsProperties, ApiKeyInterceptor apiKeyInterceptor) {
+    public WebConfig(CorsProperties corsProperties, ApiKeyInterceptor apiKeyInterceptor,
+                     ReadYourWritesInterceptor readYourWritesInterceptor) {
         this.corsProperties = corsProperties;
         this.apiKeyInterceptor = apiKeyInterceptor;
+        this.readYourWritesInterceptor = readYourWritesInterceptor;
     }
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(apiKeyInterceptor);
+        registry.addInterceptor(readYourWritesInterceptor);
     }
 
     @Bean
@@ -1,27 +1,43 @@
 package com.example.chatstorage.controller;
 
+import com.example.chatstorage.dto.ChatMessageBatchCreateRequest;
 import com.example.chatstorage.dto.ChatMessageCreateRequest;
 import com.example.chatstorage.dto.ChatMessageResponse;
 import com.example.chatstorage.dto.ChatSessionCreateRequest;
 import com.example.chatstorage.dto.ChatSessionFavoriteRequest;
 import com.example.chatstorage.dto.ChatSessionRenameRequest;
 import com.example.chatstorage.dto.ChatSessionResponse;
+import com.example.chatstorage.dto.CursorDirection;
+import com.example.chatstorage.dto.CursorPagedResponse;
 import com.example.chatstorage.dto.PagedResponse;
+import com.example.chatstorage.dto.SearchHitResponse;
+import com.example.chatstorage.dto.SimilarMessageResponse;
+import com.example.chatstorage.dto.SimilarMessagesRequest;
 import com.example.chatstorage.service.ChatMessageService;
 import com.example.chatstorage.service.ChatSessionService;
+import com.example.chatstorage.service.MessageSearchService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -29,12 +45,17 @@ import java.util.UUID;
 @RequestMapping("/api/v1")
 public class ChatSessionController {
 
+    private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
     private final ChatSessionService chatSessionService;
     private final ChatMessageService chatMessageService;
+    private final MessageSearchService messageSearchService;
 
-    public ChatSessionController(ChatSessionService chatSessionService, ChatMessageService chatMessageService) {
+    public ChatSessionController(ChatSessionService chatSessionService, ChatMessageService chatMessageService,
+                                 MessageSearchService messageSearchService) {
         this.chatSessionService = chatSessionService;
         this.chatMessageService = chatMessageService;
+        this.messageSearchService = messageSearchService;
     }
 
     @PostMapping("/sessions")
@@ -44,8 +65,20 @@ public class ChatSessionController {
     }
 
     @GetMapping("/sessions")
-    public List<ChatSessionResponse> listSessions(@RequestParam("userId") String userId) {
-        return chatSessionService.listSessions(userId);
+    public CursorPagedResponse<ChatSessionResponse> listSessions(
+            @RequestParam("userId") String userId,
+            @RequestParam(name = "favorite", required = false) Boolean favorite,
+            @RequestParam(name = "updatedSince", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime updatedSince,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "direction", defaultValue = "NEXT") CursorDirection direction,
+            @RequestParam(name = "size", defaultValue = "20") int size,
+            @RequestParam(name = "includeTotal", defaultValue = "false") boolean includeTotal,
+            WebRequest webRequest) {
+        if (webRequest.checkNotModified(chatSessionService.sessionListETag(userId))) {
+            return null;
+        }
+        return chatSessionService.listSessions(userId, favorite, updatedSince, cursor, direction, size, includeTotal);
     }
 
     @PatchMapping("/sessions/{sessionId}/rename")
@@ -76,11 +109,76 @@ public class ChatSessionController {
         return chatMessageService.addMessage(sessionId, userId, request);
     }
 
+    @PostMapping("/sessions/{sessionId}/messages:batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public List<ChatMessageResponse> addMessages(@PathVariable("sessionId") UUID sessionId,
+                                                 @RequestParam("userId") String userId,
+                                                 @Valid @RequestBody ChatMessageBatchCreateRequest request) {
+        return chatMessageService.addMessages(sessionId, userId, request.getMessages());
+    }
+
     @GetMapping("/sessions/{sessionId}/messages")
     public PagedResponse<ChatMessageResponse> getMessages(@PathVariable("sessionId") UUID sessionId,
                                                           @RequestParam("userId") String userId,
                                                           @RequestParam(name = "page", defaultValue = "0") int page,
-                                                          @RequestParam(name = "size", defaultValue = "20") int size) {
+                                                          @RequestParam(name = "size", defaultValue = "20") int size,
+                                                          WebRequest webRequest) {
+        if (webRequest.checkNotModified(chatMessageService.messagesETag(sessionId, userId))) {
+            return null;
+        }
         return chatMessageService.getMessages(sessionId, userId, page, size);
     }
+
+    @GetMapping(path = "/sessions/{sessionId}/messages", params = "pagination=cursor")
+    public CursorPagedResponse<ChatMessageResponse> getMessagesByCursor(
+            @PathVariable("sessionId") UUID sessionId,
+            @RequestParam("userId") String userId,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "direction", defaultValue = "NEXT") CursorDirection direction,
+            @RequestParam(name = "size", defaultValue = "20") int size,
+            @RequestParam(name = "includeTotal", defaultValue = "false") boolean includeTotal,
+            WebRequest webRequest) {
+        if (chatMessageService.servesLatestFromTailCache(cursor, direction, size, includeTotal)) {
+            CursorPagedResponse<ChatMessageResponse> page =
+                    chatMessageService.getMessagesByCursor(sessionId, userId, cursor, direction, size, includeTotal);
+            return webRequest.checkNotModified(chatMessageService.latestPageETag(sessionId, page)) ? null : page;
+        }
+        if (webRequest.checkNotModified(chatMessageService.messagesETag(sessionId, userId))) {
+            return null;
+        }
+        return chatMessageService.getMessagesByCursor(sessionId, userId, cursor, direction, size, includeTotal);
+    }
+
+    @GetMapping("/sessions/{sessionId}/messages:export")
+    public void exportMessages(@PathVariable("sessionId") UUID sessionId,
+                               @RequestParam("userId") String userId,
+                               HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON_CONTENT_TYPE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        chatMessageService.exportMessages(sessionId, userId, response.getOutputStream());
+    }
+
+    // Browsers' EventSource cannot set headers on the first request, hence the lastEventId parameter.
+    @GetMapping(path = "/sessions/{sessionId}/messages:stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessages(@PathVariable("sessionId") UUID sessionId,
+                                     @RequestParam("userId") String userId,
+                                     @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+                                     @RequestParam(name = "lastEventId", required = false) String resumeAfter) {
+        return chatMessageService.streamMessages(sessionId, userId, lastEventId != null ? lastEventId : resumeAfter);
+    }
+
+    @GetMapping("/messages:search")
+    public CursorPagedResponse<SearchHitResponse> searchMessages(
+            @RequestParam("userId") String userId,
+            @RequestParam("q") String query,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "size", defaultValue = "20") int size) {
+        return messageSearchService.search(userId, query, cursor, size);
+    }
+
+    @PostMapping("/messages:similar")
+    public List<SimilarMessageResponse> findSimilarMessages(@RequestParam("userId") String userId,
+                                                            @Valid @RequestBody SimilarMessagesRequest request) {
+        return chatMessageService.findSimilar(userId, request.getSessionId(), request.getVector(), request.getK());
+    }
 }
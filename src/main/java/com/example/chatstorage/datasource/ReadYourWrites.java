@@ -0,0 +1,56 @@
+package com.example.chatstorage.datasource;
+
+import com.example.chatstorage.config.ReadReplicaProperties;
+import com.example.chatstorage.transaction.AfterCommit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.stereotype.Component;
+
+// Users who wrote within read-replicas.stickiness have their reads pinned to the primary, so a replica that has
+// not replayed the write yet cannot hide it from them. A replica keeps taking reads until the next health check
+// finds it behind read-replicas.max-lag, so the window has to cover both. The record is kept per instance; a user
+// whose next request lands on another instance is not covered.
+@Component
+public class ReadYourWrites {
+
+    private static final long MAXIMUM_TRACKED_USERS = 100_000;
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final boolean enabled;
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWrites(ReadReplicaProperties properties) {
+        this.enabled = !properties.getUrls().isEmpty();
+        if (enabled && properties.getStickiness()
+                .compareTo(properties.getMaxLag().plusMillis(properties.getHealthCheckIntervalMs())) < 0) {
+            throw new IllegalStateException("read-replicas.stickiness must be at least read-replicas.max-lag"
+                    + " plus read-replicas.health-check-interval-ms");
+        }
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getStickiness())
+                .maximumSize(MAXIMUM_TRACKED_USERS)
+                .build();
+    }
+
+    // The window starts when the surrounding transaction commits.
+    public void recordWrite(String userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        AfterCommit.run(() -> recentWriters.put(userId, Boolean.TRUE));
+    }
+
+    public void pinIfRecentWriter(String userId) {
+        if (enabled && userId != null && recentWriters.getIfPresent(userId) != null) {
+            PINNED.set(Boolean.TRUE);
+        }
+    }
+
+    public void unpin() {
+        PINNED.remove();
+    }
+
+    static boolean isPinnedToPrimary() {
+        return PINNED.get() != null;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.chatstorage.datasource;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+
+// One replica connection pool and its health. A replica that cannot be reached or has fallen more than the
+// allowed lag behind receives no reads until a later health check finds it usable again.
+public final class ReplicaPool implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ReplicaPool.class);
+
+    // Replay lag in seconds; zero when everything received has been replayed, or on a server that is not a standby.
+    private static final String LAG_SQL = """
+            SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                        ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) END
+            """;
+
+    private final String name;
+    private final DataSource dataSource;
+    private volatile boolean healthy;
+    private volatile double lagSeconds;
+
+    public ReplicaPool(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    boolean isHealthy() {
+        return healthy;
+    }
+
+    double lagSeconds() {
+        return lagSeconds;
+    }
+
+    Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    void check(Duration maxLag) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(LAG_SQL)) {
+            resultSet.next();
+            lagSeconds = resultSet.getDouble(1);
+            boolean withinLag = lagSeconds * 1000 <= maxLag.toMillis();
+            update(withinLag, withinLag ? null : "replay lag " + lagSeconds + "s");
+        } catch (SQLException ex) {
+            update(false, ex.getMessage());
+        }
+    }
+
+    void markDown(SQLException cause) {
+        update(false, cause.getMessage());
+    }
+
+    private void update(boolean nowHealthy, String reason) {
+        if (healthy != nowHealthy) {
+            if (nowHealthy) {
+                logger.info("Read replica {} is available", name);
+            } else {
+                logger.warn("Read replica {} taken out of rotation: {}", name, reason);
+            }
+        }
+        healthy = nowHealthy;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (dataSource instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.chatstorage.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Source of the connections LazyConnectionDataSourceProxy hands to read-only transactions. Reads go round-robin
+// to healthy replicas, and to the primary when the request is pinned there by ReadYourWrites or no replica can
+// serve it.
+public class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private final DataSource primary;
+    private final List<ReplicaPool> replicas;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter replicaReads;
+    private final Counter pinnedReads;
+    private final Counter fallbackReads;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<ReplicaPool> replicas, Duration maxLag,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = List.copyOf(replicas);
+        this.maxLag = maxLag;
+        this.replicaReads = readCounter(meterRegistry, "replica");
+        this.pinnedReads = readCounter(meterRegistry, "primary-pinned");
+        this.fallbackReads = readCounter(meterRegistry, "primary-fallback");
+        for (ReplicaPool replica : this.replicas) {
+            Gauge.builder("chatstorage.datasource.replica.healthy", replica, pool -> pool.isHealthy() ? 1 : 0)
+                    .description("Whether the read replica is receiving reads")
+                    .tag("replica", replica.name())
+                    .register(meterRegistry);
+            Gauge.builder("chatstorage.datasource.replica.lag", replica, ReplicaPool::lagSeconds)
+                    .description("Replay lag of the read replica at the last health check")
+                    .baseUnit("seconds")
+                    .tag("replica", replica.name())
+                    .register(meterRegistry);
+        }
+        checkReplicas();
+    }
+
+    private static Counter readCounter(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("chatstorage.datasource.reads")
+                .description("Connections handed to read-only transactions")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (ReadYourWrites.isPinnedToPrimary()) {
+            pinnedReads.increment();
+            return primary.getConnection();
+        }
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            ReplicaPool replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if (!replica.isHealthy()) {
+                continue;
+            }
+            try {
+                Connection connection = replica.getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException ex) {
+                replica.markDown(ex);
+            }
+        }
+        fallbackReads.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Read replicas use the credentials configured for their pools");
+    }
+
+    @Scheduled(fixedDelayString = "${read-replicas.health-check-interval-ms:1000}")
+    public void checkReplicas() {
+        replicas.forEach(replica -> replica.check(maxLag));
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (ReplicaPool replica : replicas) {
+            replica.close();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.chatstorage.domain;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
@@ -11,6 +12,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 
 import java.time.OffsetDateTime;
 import java.util.UUID;
@@ -34,12 +36,25 @@ public class ChatMessage {
     @Column(nullable = false, columnDefinition = "TEXT")
     private String content;
 
-    @Column(columnDefinition = "TEXT")
-    private String context;
+    // Only set on rows written before contexts moved to context_blobs.
+    @Convert(converter = CompressedTextConverter.class)
+    @Column(columnDefinition = "BYTEA")
+    private CompressedText context;
+
+    @Column(name = "context_hash")
+    private byte[] contextHash;
+
+    @Transient
+    private String contextBlob;
 
     @Column(name = "created_at", nullable = false)
     private OffsetDateTime createdAt;
 
+    // Assigned after the insert, in commit order within the session; null on rows written before V17 or restored
+    // from the archive.
+    @Column(name = "seq", insertable = false, updatable = false)
+    private Long seq;
+
     public UUID getId() {
         return id;
     }
@@ -73,11 +88,27 @@ public class ChatMessage {
     }
 
     public String getContext() {
-        return context;
+        if (contextHash == null) {
+            return context != null ? context.text() : null;
+        }
+        if (contextBlob == null) {
+            throw new IllegalStateException("Context of message " + id + " has not been resolved");
+        }
+        return contextBlob;
     }
 
-    public void setContext(String context) {
-        this.context = context;
+    public byte[] getContextHash() {
+        return contextHash;
+    }
+
+    public void setContext(byte[] contextHash, String context) {
+        this.contextHash = contextHash;
+        this.contextBlob = context;
+        this.context = null;
+    }
+
+    public void resolveContext(String context) {
+        this.contextBlob = context;
     }
 
     public OffsetDateTime getCreatedAt() {
@@ -87,4 +118,12 @@ public class ChatMessage {
     public void setCreatedAt(OffsetDateTime createdAt) {
         this.createdAt = createdAt;
     }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
 }
@@ -1,6 +1,5 @@
 package com.example.chatstorage.domain;
 
-import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -10,6 +9,7 @@ import jakarta.persistence.OneToMany;
 import jakarta.persistence.OrderBy;
 import jakarta.persistence.Table;
 import jakarta.persistence.Version;
+import org.hibernate.annotations.SQLRestriction;
 
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
@@ -18,6 +18,7 @@ import java.util.UUID;
 
 @Entity
 @Table(name = "chat_sessions")
+@SQLRestriction("deleted_at IS NULL")
 public class ChatSession {
 
     @Id
@@ -39,10 +40,17 @@ public class ChatSession {
     @Column(name = "updated_at", nullable = false)
     private OffsetDateTime updatedAt;
 
+    @Column(name = "deleted_at")
+    private OffsetDateTime deletedAt;
+
+    // Maintained by archival and restore through their own statements, never by entity updates.
+    @Column(name = "archived_at", insertable = false, updatable = false)
+    private OffsetDateTime archivedAt;
+
     @Version
     private Long version;
 
-    @OneToMany(mappedBy = "session", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OneToMany(mappedBy = "session")
     @OrderBy("createdAt ASC")
     private List<ChatMessage> messages = new ArrayList<>();
 
@@ -94,6 +102,18 @@ public class ChatSession {
         this.updatedAt = updatedAt;
     }
 
+    public OffsetDateTime getDeletedAt() {
+        return deletedAt;
+    }
+
+    public void setDeletedAt(OffsetDateTime deletedAt) {
+        this.deletedAt = deletedAt;
+    }
+
+    public OffsetDateTime getArchivedAt() {
+        return archivedAt;
+    }
+
     public Long getVersion() {
         return version;
     }
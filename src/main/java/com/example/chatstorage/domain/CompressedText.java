@@ -0,0 +1,44 @@
+package com.example.chatstorage.domain;
+
+import org.hibernate.annotations.Immutable;
+
+// Text held either as set by the application or as the encoded column value read from the database.
+// Decoding is deferred until the text is first needed, so rows that are loaded but never rendered stay compressed.
+@Immutable
+public final class CompressedText {
+
+    private final byte[] stored;
+    private String text;
+
+    private CompressedText(byte[] stored, String text) {
+        this.stored = stored;
+        this.text = text;
+    }
+
+    public static CompressedText of(String text) {
+        return text != null ? new CompressedText(null, text) : null;
+    }
+
+    static CompressedText fromColumn(byte[] stored) {
+        return stored != null ? new CompressedText(stored, null) : null;
+    }
+
+    // The column value this was read from, or null if the text was set by the application.
+    byte[] stored() {
+        return stored;
+    }
+
+    public String text() {
+        String decoded = text;
+        if (decoded == null) {
+            decoded = TextCodec.decode(stored);
+            text = decoded;
+        }
+        return decoded;
+    }
+
+    @Override
+    public String toString() {
+        return text();
+    }
+}
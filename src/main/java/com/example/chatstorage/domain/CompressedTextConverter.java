@@ -0,0 +1,32 @@
+package com.example.chatstorage.domain;
+
+import com.example.chatstorage.config.MessageCompressionProperties;
+import jakarta.persistence.AttributeConverter;
+import org.springframework.stereotype.Component;
+
+// Resolved through Spring's bean container, so the threshold comes from configuration.
+// Values read from the database are written back unchanged rather than re-encoded.
+@Component
+public class CompressedTextConverter implements AttributeConverter<CompressedText, byte[]> {
+
+    private final int minCompressBytes;
+
+    public CompressedTextConverter(MessageCompressionProperties properties) {
+        this.minCompressBytes = properties.isEnabled()
+                ? (int) Math.min(Integer.MAX_VALUE, properties.getMinSize().toBytes())
+                : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(CompressedText value) {
+        if (value == null) {
+            return null;
+        }
+        return value.stored() != null ? value.stored() : TextCodec.encode(value.text(), minCompressBytes);
+    }
+
+    @Override
+    public CompressedText convertToEntityAttribute(byte[] column) {
+        return CompressedText.fromColumn(column);
+    }
+}
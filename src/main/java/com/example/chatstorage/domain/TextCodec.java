@@ -0,0 +1,52 @@
+package com.example.chatstorage.domain;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Column format for compressible text. Values are either plain UTF-8, which is also how rows written before
+// compression was introduced read, or a format byte followed by the payload. The format bytes can never start
+// valid UTF-8, so the two cannot be confused.
+final class TextCodec {
+
+    // 0xFE, original UTF-8 length as a big-endian int, then an LZ4 block.
+    static final byte LZ4_BLOCK = (byte) 0xFE;
+
+    private static final int HEADER_BYTES = 1 + Integer.BYTES;
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+    private TextCodec() {
+    }
+
+    static byte[] encode(String text, int minCompressBytes) {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        if (utf8.length < minCompressBytes) {
+            return utf8;
+        }
+        byte[] compressed = new byte[HEADER_BYTES + COMPRESSOR.maxCompressedLength(utf8.length)];
+        int length = COMPRESSOR.compress(utf8, 0, utf8.length, compressed, HEADER_BYTES);
+        if (HEADER_BYTES + length >= utf8.length) {
+            return utf8;
+        }
+        ByteBuffer.wrap(compressed).put(LZ4_BLOCK).putInt(utf8.length);
+        return Arrays.copyOf(compressed, HEADER_BYTES + length);
+    }
+
+    static String decode(byte[] stored) {
+        if (stored.length == 0 || stored[0] != LZ4_BLOCK) {
+            return new String(stored, StandardCharsets.UTF_8);
+        }
+        if (stored.length < HEADER_BYTES) {
+            throw new IllegalStateException("Truncated compressed text");
+        }
+        int length = ByteBuffer.wrap(stored, 1, Integer.BYTES).getInt();
+        byte[] utf8 = new byte[length];
+        DECOMPRESSOR.decompress(stored, HEADER_BYTES, utf8, 0, length);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
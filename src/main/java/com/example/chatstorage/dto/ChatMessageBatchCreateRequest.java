@@ -0,0 +1,22 @@
+package com.example.chatstorage.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public class ChatMessageBatchCreateRequest {
+
+    @NotEmpty
+    @Size(max = 100)
+    private List<@Valid ChatMessageCreateRequest> messages;
+
+    public List<ChatMessageCreateRequest> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ChatMessageCreateRequest> messages) {
+        this.messages = messages;
+    }
+}
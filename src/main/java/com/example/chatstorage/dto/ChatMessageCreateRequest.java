@@ -17,6 +17,9 @@ public class ChatMessageCreateRequest {
     @Size(max = 5000)
     private String context;
 
+    @Size(max = 4096)
+    private float[] embedding;
+
     public SenderType getSender() {
         return sender;
     }
@@ -40,4 +43,12 @@ public class ChatMessageCreateRequest {
     public void setContext(String context) {
         this.context = context;
     }
+
+    public float[] getEmbedding() {
+        return embedding;
+    }
+
+    public void setEmbedding(float[] embedding) {
+        this.embedding = embedding;
+    }
 }
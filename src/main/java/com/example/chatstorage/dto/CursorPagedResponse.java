@@ -0,0 +1,84 @@
+package com.example.chatstorage.dto;
+
+import java.util.List;
+
+public class CursorPagedResponse<T> {
+
+    private List<T> data;
+    private int size;
+    private String nextCursor;
+    private String previousCursor;
+    private boolean hasNext;
+    private boolean hasPrevious;
+    private Long totalElements;
+
+    public CursorPagedResponse() {
+    }
+
+    public CursorPagedResponse(List<T> data, int size, String nextCursor, String previousCursor,
+                               boolean hasNext, boolean hasPrevious, Long totalElements) {
+        this.data = data;
+        this.size = size;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+        this.hasNext = hasNext;
+        this.hasPrevious = hasPrevious;
+        this.totalElements = totalElements;
+    }
+
+    public List<T> getData() {
+        return data;
+    }
+
+    public void setData(List<T> data) {
+        this.data = data;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public void setSize(int size) {
+        this.size = size;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+
+    public void setPreviousCursor(String previousCursor) {
+        this.previousCursor = previousCursor;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    public boolean isHasPrevious() {
+        return hasPrevious;
+    }
+
+    public void setHasPrevious(boolean hasPrevious) {
+        this.hasPrevious = hasPrevious;
+    }
+
+    public Long getTotalElements() {
+        return totalElements;
+    }
+
+    public void setTotalElements(Long totalElements) {
+        this.totalElements = totalElements;
+    }
+}
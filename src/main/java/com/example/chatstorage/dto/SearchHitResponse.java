@@ -0,0 +1,82 @@
+package com.example.chatstorage.dto;
+
+import com.example.chatstorage.domain.SenderType;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public class SearchHitResponse {
+
+    private SearchHitType type;
+    private UUID sessionId;
+    private String sessionTitle;
+    private UUID messageId;
+    private SenderType sender;
+    private OffsetDateTime createdAt;
+    private String snippet;
+    private float score;
+
+    public SearchHitType getType() {
+        return type;
+    }
+
+    public void setType(SearchHitType type) {
+        this.type = type;
+    }
+
+    public UUID getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(UUID sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getSessionTitle() {
+        return sessionTitle;
+    }
+
+    public void setSessionTitle(String sessionTitle) {
+        this.sessionTitle = sessionTitle;
+    }
+
+    public UUID getMessageId() {
+        return messageId;
+    }
+
+    public void setMessageId(UUID messageId) {
+        this.messageId = messageId;
+    }
+
+    public SenderType getSender() {
+        return sender;
+    }
+
+    public void setSender(SenderType sender) {
+        this.sender = sender;
+    }
+
+    public OffsetDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(OffsetDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public void setScore(float score) {
+        this.score = score;
+    }
+}
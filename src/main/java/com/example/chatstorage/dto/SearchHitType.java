@@ -0,0 +1,6 @@
+package com.example.chatstorage.dto;
+
+public enum SearchHitType {
+    MESSAGE,
+    SESSION
+}
@@ -0,0 +1,43 @@
+package com.example.chatstorage.dto;
+
+import java.util.UUID;
+
+public class SimilarMessageResponse {
+
+    private UUID sessionId;
+    private float score;
+    private ChatMessageResponse message;
+
+    public SimilarMessageResponse() {
+    }
+
+    public SimilarMessageResponse(UUID sessionId, float score, ChatMessageResponse message) {
+        this.sessionId = sessionId;
+        this.score = score;
+        this.message = message;
+    }
+
+    public UUID getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(UUID sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public float getScore() {
+        return score;
+    }
+
+    public void setScore(float score) {
+        this.score = score;
+    }
+
+    public ChatMessageResponse getMessage() {
+        return message;
+    }
+
+    public void setMessage(ChatMessageResponse message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.chatstorage.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.UUID;
+
+public class SimilarMessagesRequest {
+
+    @NotNull
+    @Size(min = 1, max = 4096)
+    private float[] vector;
+
+    @Min(1)
+    private int k = 10;
+
+    private UUID sessionId;
+
+    public float[] getVector() {
+        return vector;
+    }
+
+    public void setVector(float[] vector) {
+        this.vector = vector;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    public void setK(int k) {
+        this.k = k;
+    }
+
+    public UUID getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(UUID sessionId) {
+        this.sessionId = sessionId;
+    }
+}
@@ -9,8 +9,10 @@ import jakarta.validation.ConstraintViolationException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
@@ -90,6 +92,12 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.BAD_REQUEST, "INVALID_ARGUMENT", ex.getMessage(), request, ex);
     }
 
+    @ExceptionHandler(CannotCreateTransactionException.class)
+    public ResponseEntity<ApiError> handleNoConnection(CannotCreateTransactionException ex, ServletWebRequest request) {
+        return buildResponse(HttpStatus.SERVICE_UNAVAILABLE, "SERVICE_UNAVAILABLE",
+                "The service is overloaded, please retry", request, ex);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiError> handleGeneric(Exception ex, ServletWebRequest request) {
         return buildResponse(HttpStatus.INTERNAL_SERVER_ERROR, "INTERNAL_ERROR", "An unexpected error occurred", request, ex);
@@ -98,7 +106,8 @@ public class GlobalExceptionHandler {
     private ResponseEntity<ApiError> buildResponse(HttpStatus status, String code, String message, ServletWebRequest request, Exception ex) {
         ApiError error = new ApiError(OffsetDateTime.now(), code, message, request.getRequest().getRequestURI());
         logException(status, code, message, request, ex);
-        return ResponseEntity.status(status).body(error);
+        // Explicit so that errors are still written as JSON to clients that only accept text/event-stream.
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON).body(error);
     }
 
     private String formatFieldError(FieldError error) {
@@ -0,0 +1,146 @@
+package com.example.chatstorage.logging;
+
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+// Writes straight through to the client and keeps a copy of at most maxBytes for logging,
+// unlike ContentCachingResponseWrapper which holds the whole body until the filter copies it out.
+class BodyCaptureResponseWrapper extends HttpServletResponseWrapper {
+
+    private final byte[] captured;
+    private int capturedLength;
+    private long totalLength;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    BodyCaptureResponseWrapper(HttpServletResponse response, int maxBytes) {
+        super(response);
+        this.captured = new byte[Math.max(0, maxBytes)];
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called on this response");
+        }
+        if (outputStream == null) {
+            outputStream = new CapturingOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (outputStream != null) {
+                throw new IllegalStateException("getOutputStream() has already been called on this response");
+            }
+            Charset charset = Charset.forName(getCharacterEncoding());
+            outputStream = new CapturingOutputStream(super.getOutputStream());
+            writer = new PrintWriter(new OutputStreamWriter(outputStream, charset));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        super.flushBuffer();
+    }
+
+    // The dispatcher resets the buffer before rendering an error, so what was captured before it was never sent.
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        clearCapture();
+    }
+
+    // A full reset also lets the next writer choose between getWriter() and getOutputStream() again.
+    @Override
+    public void reset() {
+        super.reset();
+        clearCapture();
+        writer = null;
+        outputStream = null;
+    }
+
+    byte[] getCapturedBody() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return Arrays.copyOf(captured, capturedLength);
+    }
+
+    boolean isTruncated() {
+        return totalLength > capturedLength;
+    }
+
+    private void clearCapture() {
+        capturedLength = 0;
+        totalLength = 0;
+    }
+
+    private void capture(byte[] bytes, int offset, int length) {
+        totalLength += length;
+        int room = captured.length - capturedLength;
+        if (room > 0) {
+            int copied = Math.min(room, length);
+            System.arraycopy(bytes, offset, captured, capturedLength, copied);
+            capturedLength += copied;
+        }
+    }
+
+    private final class CapturingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+
+        private CapturingOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            totalLength++;
+            if (capturedLength < captured.length) {
+                captured[capturedLength++] = (byte) b;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            capture(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            delegate.setWriteListener(listener);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.chatstorage.logging;
 
+import com.example.chatstorage.config.RequestLoggingProperties;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -9,14 +10,15 @@ import org.apache.logging.log4j.Logger;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 @Component
@@ -24,63 +26,93 @@ public class RequestResponseLoggingFilter extends OncePerRequestFilter {
 
     private static final Logger requestLogger = LogManager.getLogger("REQUEST_LOG");
     private static final Logger responseLogger = LogManager.getLogger("RESPONSE_LOG");
+    private static final String REDACTED = "***";
+
+    private final boolean enabled;
+    private final double sampleRate;
+    private final int maxBodyBytes;
+    private final Set<String> redactedHeaders;
+
+    public RequestResponseLoggingFilter(RequestLoggingProperties properties) {
+        if (properties.getSampleRate() < 0 || properties.getSampleRate() > 1) {
+            throw new IllegalStateException("request-logging.sample-rate must be between 0 and 1");
+        }
+        this.enabled = properties.isEnabled();
+        this.sampleRate = properties.getSampleRate();
+        this.maxBodyBytes = Math.max(0, properties.getMaxBodyBytes());
+        this.redactedHeaders = properties.getRedactedHeaders().stream()
+                .map(name -> name.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
-        ContentCachingRequestWrapper requestWrapper = wrapRequest(request);
-        ContentCachingResponseWrapper responseWrapper = wrapResponse(response);
-        long startTime = System.currentTimeMillis();
+        if (!isSampled()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        ContentCachingRequestWrapper requestWrapper = new ContentCachingRequestWrapper(request, maxBodyBytes);
+        BodyCaptureResponseWrapper responseWrapper = new BodyCaptureResponseWrapper(response, maxBodyBytes);
+        long startTime = System.nanoTime();
         try {
             filterChain.doFilter(requestWrapper, responseWrapper);
         } finally {
-            long duration = System.currentTimeMillis() - startTime;
+            long durationMs = (System.nanoTime() - startTime) / 1_000_000;
             logRequest(requestWrapper);
-            logResponse(responseWrapper, duration);
-            responseWrapper.copyBodyToResponse();
-        }
-    }
-
-    private ContentCachingRequestWrapper wrapRequest(HttpServletRequest request) {
-        if (request instanceof ContentCachingRequestWrapper wrapper) {
-            return wrapper;
+            logResponse(responseWrapper, durationMs);
         }
-        return new ContentCachingRequestWrapper(request);
     }
 
-    private ContentCachingResponseWrapper wrapResponse(HttpServletResponse response) {
-        if (response instanceof ContentCachingResponseWrapper wrapper) {
-            return wrapper;
+    private boolean isSampled() {
+        if (!enabled || !requestLogger.isInfoEnabled()) {
+            return false;
         }
-        return new ContentCachingResponseWrapper(response);
+        return sampleRate >= 1.0 || ThreadLocalRandom.current().nextDouble() < sampleRate;
     }
 
     private void logRequest(ContentCachingRequestWrapper request) {
-        Map<String, String> headers = Collections.list(request.getHeaderNames()).stream()
-                .collect(Collectors.toMap(name -> name, request::getHeader, (first, second) -> second, LinkedHashMap::new));
+        StringBuilder headers = new StringBuilder(256).append('{');
+        Enumeration<String> names = request.getHeaderNames();
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            appendHeader(headers, name, request.getHeader(name));
+        }
+        headers.append('}');
 
-        String payload = getPayload(request.getContentAsByteArray(), request.getCharacterEncoding());
+        byte[] body = request.getContentAsByteArray();
         String queryString = request.getQueryString();
-
-        requestLogger.info("method={} uri={} query={} headers={} payload={}",
+        requestLogger.info("method={} uri={} query={} headers={} payload={}{}",
                 request.getMethod(),
                 request.getRequestURI(),
                 queryString != null ? queryString : "",
                 headers,
-                payload);
+                getPayload(body, request.getCharacterEncoding()),
+                request.getContentLength() > body.length ? "...(truncated)" : "");
     }
 
-    private void logResponse(ContentCachingResponseWrapper response, long duration) {
-        Map<String, String> headers = response.getHeaderNames().stream()
-                .collect(Collectors.toMap(name -> name, response::getHeader, (first, second) -> second, LinkedHashMap::new));
-
-        String payload = getPayload(response.getContentAsByteArray(), response.getCharacterEncoding());
+    private void logResponse(BodyCaptureResponseWrapper response, long durationMs) {
+        StringBuilder headers = new StringBuilder(128).append('{');
+        Collection<String> names = response.getHeaderNames();
+        for (String name : names) {
+            appendHeader(headers, name, response.getHeader(name));
+        }
+        headers.append('}');
 
-        responseLogger.info("status={} durationMs={} headers={} payload={}",
+        responseLogger.info("status={} durationMs={} headers={} payload={}{}",
                 response.getStatus(),
-                duration,
+                durationMs,
                 headers,
-                payload);
+                getPayload(response.getCapturedBody(), response.getCharacterEncoding()),
+                response.isTruncated() ? "...(truncated)" : "");
+    }
+
+    private void appendHeader(StringBuilder target, String name, String value) {
+        if (target.length() > 1) {
+            target.append(", ");
+        }
+        target.append(name).append('=');
+        target.append(redactedHeaders.contains(name.toLowerCase(Locale.ROOT)) ? REDACTED : value);
     }
 
     private String getPayload(byte[] content, String charsetName) {
@@ -0,0 +1,37 @@
+package com.example.chatstorage.metrics;
+
+// Statement count and JDBC time for the request bound to the current thread.
+final class RequestStatements {
+
+    private static final ThreadLocal<RequestStatements> CURRENT = new ThreadLocal<>();
+
+    private int count;
+    private long nanos;
+
+    static RequestStatements open() {
+        RequestStatements statements = new RequestStatements();
+        CURRENT.set(statements);
+        return statements;
+    }
+
+    static RequestStatements current() {
+        return CURRENT.get();
+    }
+
+    void close() {
+        CURRENT.remove();
+    }
+
+    void record(long elapsedNanos) {
+        count++;
+        nanos += elapsedNanos;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long nanos() {
+        return nanos;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.chatstorage.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class StatementMetricsFilter extends OncePerRequestFilter {
+
+    static final String STATEMENTS = "chatstorage.hibernate.statements";
+    static final String STATEMENT_TIME = "chatstorage.hibernate.statement.time";
+
+    private final MeterRegistry meterRegistry;
+
+    public StatementMetricsFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        RequestStatements statements = RequestStatements.open();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            statements.close();
+            Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            // Unmapped requests would otherwise add a series per path.
+            if (uri != null) {
+                record(Tags.of("method", request.getMethod(), "uri", uri.toString()), statements);
+            }
+        }
+    }
+
+    private void record(Tags tags, RequestStatements statements) {
+        DistributionSummary.builder(STATEMENTS)
+                .description("JDBC statements executed by Hibernate per request")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statements.count());
+        Timer.builder(STATEMENT_TIME)
+                .description("Time spent executing Hibernate JDBC statements per request")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(statements.nanos(), TimeUnit.NANOSECONDS);
+    }
+}
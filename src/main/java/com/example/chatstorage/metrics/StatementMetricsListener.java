@@ -0,0 +1,38 @@
+package com.example.chatstorage.metrics;
+
+import org.hibernate.BaseSessionEventListener;
+
+// Instantiated by Hibernate for every Session (hibernate.session.events.auto). Statements executed
+// outside a request, such as by the purge job, are not recorded.
+public class StatementMetricsListener extends BaseSessionEventListener {
+
+    private long executeStart;
+    private long batchStart;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        executeStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        record(executeStart);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        batchStart = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        record(batchStart);
+    }
+
+    private static void record(long start) {
+        RequestStatements statements = RequestStatements.current();
+        if (statements != null) {
+            statements.record(System.nanoTime() - start);
+        }
+    }
+}
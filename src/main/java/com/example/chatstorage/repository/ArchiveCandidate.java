@@ -0,0 +1,7 @@
+package com.example.chatstorage.repository;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public record ArchiveCandidate(UUID sessionId, String userId, OffsetDateTime updatedAt) {
+}
@@ -0,0 +1,4 @@
+package com.example.chatstorage.repository;
+
+public record ArchiveLocation(String segment, long offset, int length, int messageCount) {
+}
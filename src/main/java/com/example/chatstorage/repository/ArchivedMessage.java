@@ -0,0 +1,7 @@
+package com.example.chatstorage.repository;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public record ArchivedMessage(UUID id, String sender, String content, byte[] contextHash, OffsetDateTime createdAt) {
+}
@@ -0,0 +1,95 @@
+package com.example.chatstorage.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+@Repository
+public class ChatMessageEmbeddingRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO chat_message_embeddings (message_id, session_id, user_id, created_at, vector)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+    private static final String FIND_BY_USER_SQL = """
+            SELECT e.message_id, e.session_id, e.user_id, e.created_at, e.vector
+            FROM chat_message_embeddings e
+            JOIN chat_sessions s ON s.id = e.session_id
+            WHERE e.user_id = ? AND e.created_at >= ? AND s.deleted_at IS NULL
+            ORDER BY e.created_at
+            """;
+    private static final String FIND_BY_MESSAGES_SQL = """
+            SELECT message_id, session_id, user_id, created_at, vector
+            FROM chat_message_embeddings
+            WHERE message_id = ANY (?)
+            """;
+    private static final String RECENT_USERS_SQL = """
+            SELECT user_id
+            FROM chat_message_embeddings
+            WHERE created_at >= ?
+            GROUP BY user_id
+            ORDER BY max(created_at) DESC
+            LIMIT ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ChatMessageEmbeddingRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertAll(List<EmbeddingRow> rows) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (statement, row) -> {
+            statement.setObject(1, row.messageId());
+            statement.setObject(2, row.sessionId());
+            statement.setString(3, row.userId());
+            statement.setObject(4, row.createdAt());
+            statement.setBytes(5, EmbeddingCodec.encode(row.vector()));
+        });
+    }
+
+    // Streams rows in created_at order; the fetch size only takes effect inside a transaction.
+    public void streamByUser(String userId, OffsetDateTime createdSince, Consumer<EmbeddingRow> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_BY_USER_SQL);
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setString(1, userId);
+            statement.setObject(2, createdSince);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> consumer.accept(mapRow(resultSet)));
+    }
+
+    public List<EmbeddingRow> findByMessageIds(List<UUID> messageIds) {
+        if (messageIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(FIND_BY_MESSAGES_SQL);
+            statement.setArray(1, connection.createArrayOf("uuid", messageIds.toArray()));
+            return statement;
+        }, (resultSet, row) -> mapRow(resultSet));
+    }
+
+    public List<String> findRecentlyActiveUsers(OffsetDateTime since, int limit) {
+        return jdbcTemplate.queryForList(RECENT_USERS_SQL, String.class, since, limit);
+    }
+
+    private static EmbeddingRow mapRow(ResultSet resultSet) throws SQLException {
+        return new EmbeddingRow(
+                resultSet.getObject(1, UUID.class),
+                resultSet.getObject(2, UUID.class),
+                resultSet.getString(3),
+                resultSet.getObject(4, OffsetDateTime.class),
+                EmbeddingCodec.decode(resultSet.getBytes(5)));
+    }
+}
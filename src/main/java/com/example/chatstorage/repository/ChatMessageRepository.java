@@ -1,17 +1,120 @@
 package com.example.chatstorage.repository;
 
 import com.example.chatstorage.domain.ChatMessage;
-import com.example.chatstorage.domain.ChatSession;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID> {
-    Page<ChatMessage> findBySessionOrderByCreatedAtAsc(ChatSession session, Pageable pageable);
+public interface ChatMessageRepository extends JpaRepository<ChatMessage, UUID>, ChatMessageRepositoryCustom {
+    Page<ChatMessage> findBySessionIdOrderByCreatedAtAsc(UUID sessionId, Pageable pageable);
 
-    void deleteBySession(ChatSession session);
+    @Query("select m from ChatMessage m where m.session.id = :sessionId order by m.createdAt asc, m.id asc")
+    List<ChatMessage> findHead(@Param("sessionId") UUID sessionId, Pageable pageable);
+
+    @Query("select m from ChatMessage m where m.session.id = :sessionId order by m.createdAt desc, m.id desc")
+    List<ChatMessage> findTail(@Param("sessionId") UUID sessionId, Pageable pageable);
+
+    @Query("select m from ChatMessage m where m.session.id = :sessionId"
+            + " and m.createdAt >= :createdAt and (m.createdAt > :createdAt or m.id > :id)"
+            + " order by m.createdAt asc, m.id asc")
+    List<ChatMessage> findAfter(@Param("sessionId") UUID sessionId,
+                                @Param("createdAt") OffsetDateTime createdAt,
+                                @Param("id") UUID id,
+                                Pageable pageable);
+
+    // Stream replay: messages numbered after seq, in commit order.
+    @Query("select m from ChatMessage m where m.session.id = :sessionId and m.seq > :seq order by m.seq asc")
+    List<ChatMessage> findAfterSeq(@Param("sessionId") UUID sessionId, @Param("seq") long seq, Pageable pageable);
+
+    // Stream replay of rows without a number, which predate numbering or were restored from the archive.
+    @Query("select m from ChatMessage m where m.session.id = :sessionId and m.seq is null"
+            + " and m.createdAt >= :createdAt and (m.createdAt > :createdAt or m.id > :id)"
+            + " order by m.createdAt asc, m.id asc")
+    List<ChatMessage> findUnsequencedAfter(@Param("sessionId") UUID sessionId,
+                                           @Param("createdAt") OffsetDateTime createdAt,
+                                           @Param("id") UUID id,
+                                           Pageable pageable);
+
+    @Query("select m.seq from ChatMessage m where m.session.id = :sessionId and m.id = :id"
+            + " and m.createdAt = :createdAt")
+    Optional<Long> findSeq(@Param("sessionId") UUID sessionId, @Param("id") UUID id,
+                           @Param("createdAt") OffsetDateTime createdAt);
+
+    @Query("select m from ChatMessage m where m.session.id = :sessionId"
+            + " and m.createdAt <= :createdAt and (m.createdAt < :createdAt or m.id < :id)"
+            + " order by m.createdAt desc, m.id desc")
+    List<ChatMessage> findBefore(@Param("sessionId") UUID sessionId,
+                                 @Param("createdAt") OffsetDateTime createdAt,
+                                 @Param("id") UUID id,
+                                 Pageable pageable);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select m from ChatMessage m where m.session.id = :sessionId order by m.createdAt asc, m.id asc")
+    Stream<ChatMessage> streamBySessionId(@Param("sessionId") UUID sessionId);
+
+    // Takes the messages' created_at values as well, so that only the partitions holding them are read. Ids are
+    // unique, so a row can only match together with its own created_at.
+    @Query("select m from ChatMessage m where m.id in :ids and m.createdAt in :createdAts"
+            + " and m.session.deletedAt is null")
+    List<ChatMessage> findLive(@Param("ids") Collection<UUID> ids,
+                               @Param("createdAts") Collection<OffsetDateTime> createdAts);
+
+    // Creates any missing monthly partitions up to monthsAhead months from now; returns how many were added.
+    @Transactional
+    @Query(value = "SELECT ensure_chat_message_partitions(:monthsAhead)", nativeQuery = true)
+    int ensurePartitions(@Param("monthsAhead") int monthsAhead);
+
+    // Numbers the messages one append inserted, in (createdAt, id) order, ending at lastSeq. They span
+    // [from, to] in createdAt, which keeps the lookup to their partition.
+    @Modifying
+    @Query(value = """
+            UPDATE chat_messages m SET seq = :lastSeq - appended.back + 1
+            FROM (SELECT id, created_at, row_number() OVER (ORDER BY created_at DESC, id DESC) AS back
+                  FROM chat_messages
+                  WHERE session_id = :sessionId AND id IN (:ids) AND created_at BETWEEN :from AND :to) appended
+            WHERE m.id = appended.id AND m.created_at = appended.created_at
+            """, nativeQuery = true)
+    int assignSeq(@Param("sessionId") UUID sessionId, @Param("ids") Collection<UUID> ids,
+                  @Param("from") OffsetDateTime from, @Param("to") OffsetDateTime to,
+                  @Param("lastSeq") long lastSeq);
+
+    @Query("select count(m) from ChatMessage m where m.session.id = :sessionId")
+    long countBySessionId(@Param("sessionId") UUID sessionId);
+
+    // Releases one context blob reference per deleted message. The batch is locked so that concurrent
+    // purges of the same session cannot release a reference twice.
+    @Modifying
+    @Query(value = """
+            WITH batch AS (
+                SELECT id, created_at, context_hash FROM chat_messages
+                WHERE session_id = :sessionId LIMIT :batchSize FOR UPDATE
+            ),
+            released AS (
+                UPDATE context_blobs b SET ref_count = b.ref_count - r.refs
+                FROM (SELECT context_hash, count(*) AS refs FROM batch WHERE context_hash IS NOT NULL
+                      GROUP BY context_hash) r
+                WHERE b.hash = r.context_hash
+            )
+            DELETE FROM chat_messages m USING batch WHERE m.id = batch.id AND m.created_at = batch.created_at
+            """, nativeQuery = true)
+    int deleteBatchBySessionId(@Param("sessionId") UUID sessionId, @Param("batchSize") int batchSize);
 }
@@ -0,0 +1,13 @@
+package com.example.chatstorage.repository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface ChatMessageRepositoryCustom {
+
+    List<SearchRow> search(String userId, String query, Float cursorScore, UUID cursorId, String headlineOptions,
+                           int limit);
+
+    // ts_headline of each text for the query, in the same order, for snippets PostgreSQL cannot build from the row.
+    List<String> headlines(List<String> texts, String query, String headlineOptions);
+}
@@ -0,0 +1,112 @@
+package com.example.chatstorage.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.query.NativeQuery;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.UUID;
+
+class ChatMessageRepositoryImpl implements ChatMessageRepositoryCustom {
+
+    // Ranks and pages on the indexed match first; ts_headline is only computed for the returned page. The
+    // (user_id, search_vector) index only yields this user's matches, so ranking never touches other users' rows.
+    // The page is joined back on the full key, so each hit reads only the partition that holds it. A message that
+    // matched only through its context gets no snippet here: PostgreSQL cannot read a compressed context.
+    private static final String SEARCH_SQL = """
+            WITH query AS (SELECT websearch_to_tsquery('english', :query) AS tsq),
+            hits AS (
+                SELECT * FROM (
+                    SELECT 'MESSAGE' AS kind, m.id, m.session_id, m.sender, m.created_at,
+                           ts_rank_cd(m.search_vector, query.tsq) AS score
+                    FROM chat_messages m
+                    JOIN chat_sessions s ON s.id = m.session_id
+                    CROSS JOIN query
+                    WHERE m.user_id = :userId AND m.search_vector @@ query.tsq AND s.deleted_at IS NULL
+                    UNION ALL
+                    SELECT 'SESSION', s.id, s.id, NULL, s.updated_at, word_similarity(:query, s.title)
+                    FROM chat_sessions s
+                    WHERE s.user_id = :userId AND s.deleted_at IS NULL AND :query <% s.title
+                ) ranked
+                {cursor}
+                ORDER BY score DESC, id DESC
+                LIMIT :limit
+            )
+            SELECT h.kind, h.id, h.session_id, s.title, h.sender, h.created_at, h.score,
+                   CASE
+                       WHEN h.kind = 'SESSION' THEN s.title
+                       WHEN to_tsvector('english', m.content) @@ query.tsq
+                           THEN ts_headline('english', m.content, query.tsq, :headlineOptions)
+                   END AS snippet
+            FROM hits h
+            JOIN chat_sessions s ON s.id = h.session_id
+            LEFT JOIN chat_messages m ON h.kind = 'MESSAGE' AND m.id = h.id AND m.created_at = h.created_at
+            CROSS JOIN query
+            ORDER BY h.score DESC, h.id DESC
+            """;
+    private static final String HEADLINES_SQL = """
+            WITH query AS (SELECT websearch_to_tsquery('english', :query) AS tsq)
+            SELECT ts_headline('english', t.text, query.tsq, :headlineOptions)
+            FROM (VALUES {texts}) AS t(position, text)
+            CROSS JOIN query
+            ORDER BY t.position
+            """;
+    private static final String AFTER_CURSOR =
+            "WHERE (score, id) < (CAST(:cursorScore AS real), CAST(:cursorId AS uuid))";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<SearchRow> search(String userId, String query, Float cursorScore, UUID cursorId,
+                                  String headlineOptions, int limit) {
+        boolean afterCursor = cursorScore != null;
+        NativeQuery<Object[]> search = entityManager
+                .createNativeQuery(SEARCH_SQL.replace("{cursor}", afterCursor ? AFTER_CURSOR : ""))
+                .unwrap(NativeQuery.class)
+                .addScalar("kind", String.class)
+                .addScalar("id", UUID.class)
+                .addScalar("session_id", UUID.class)
+                .addScalar("title", String.class)
+                .addScalar("sender", String.class)
+                .addScalar("created_at", OffsetDateTime.class)
+                .addScalar("score", Float.class)
+                .addScalar("snippet", String.class);
+        search.setParameter("query", query);
+        search.setParameter("userId", userId);
+        search.setParameter("headlineOptions", headlineOptions);
+        search.setParameter("limit", limit);
+        if (afterCursor) {
+            search.setParameter("cursorScore", cursorScore);
+            search.setParameter("cursorId", cursorId);
+        }
+        return search.setReadOnly(true).getResultList().stream()
+                .map(row -> new SearchRow((String) row[0], (UUID) row[1], (UUID) row[2], (String) row[3],
+                        (String) row[4], (OffsetDateTime) row[5], (Float) row[6], (String) row[7]))
+                .toList();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> headlines(List<String> texts, String query, String headlineOptions) {
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < texts.size(); i++) {
+            values.add("(" + i + ", CAST(:text" + i + " AS text))");
+        }
+        NativeQuery<String> headlines = entityManager
+                .createNativeQuery(HEADLINES_SQL.replace("{texts}", values.toString()), String.class)
+                .unwrap(NativeQuery.class);
+        headlines.setParameter("query", query);
+        headlines.setParameter("headlineOptions", headlineOptions);
+        for (int i = 0; i < texts.size(); i++) {
+            headlines.setParameter("text" + i, texts.get(i));
+        }
+        return headlines.setReadOnly(true).getResultList();
+    }
+}
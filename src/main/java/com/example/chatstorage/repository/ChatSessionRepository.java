@@ -1,16 +1,69 @@
 package com.example.chatstorage.repository;
 
 import com.example.chatstorage.domain.ChatSession;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface ChatSessionRepository extends JpaRepository<ChatSession, UUID> {
-    List<ChatSession> findByUserIdOrderByUpdatedAtDesc(String userId);
-
+public interface ChatSessionRepository extends JpaRepository<ChatSession, UUID>, ChatSessionRepositoryCustom {
     Optional<ChatSession> findByIdAndUserId(UUID id, String userId);
+
+    // For updates that derive updated_at from the stored one. touch does not bump version, so the optimistic
+    // check alone would let such an update overwrite a newer updated_at written by a concurrent append.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from ChatSession s where s.id = :id and s.userId = :userId")
+    Optional<ChatSession> findForUpdate(@Param("id") UUID id, @Param("userId") String userId);
+
+    @Query("select new com.example.chatstorage.repository.SessionVersion(s.updatedAt, s.version)"
+            + " from ChatSession s where s.id = :id and s.userId = :userId")
+    Optional<SessionVersion> findVersion(@Param("id") UUID id, @Param("userId") String userId);
+
+    // Records activity without touching version, so appends never conflict with each other or with a rename.
+    // updated_at moves strictly forward whatever order concurrent appends commit in, even if a replica's clock
+    // is behind, so it always identifies the session's latest state. Reserves the next `appended` message
+    // numbers and returns the last one; the row stays locked until commit, so numbers follow commit order.
+    // Empty when the session is gone or archived. Not @Modifying: that runs the statement through executeUpdate,
+    // which returns only the row count and drops the RETURNING value.
+    @Query(value = """
+            UPDATE chat_sessions SET updated_at = GREATEST(updated_at + INTERVAL '1 microsecond', :updatedAt),
+                                     message_seq = message_seq + :appended
+            WHERE id = :id AND user_id = :userId AND deleted_at IS NULL AND archived_at IS NULL
+            RETURNING message_seq
+            """, nativeQuery = true)
+    Optional<Long> touch(@Param("id") UUID id, @Param("userId") String userId,
+                         @Param("updatedAt") OffsetDateTime updatedAt, @Param("appended") int appended);
+
+    // The last message number handed out by a committed append. Every message numbered up to it is committed too.
+    @Query(value = "SELECT message_seq FROM chat_sessions WHERE id = :id", nativeQuery = true)
+    Optional<Long> findMessageSeq(@Param("id") UUID id);
+
+    // As findMessageSeq, but empty once the session is deleted.
+    @Query(value = "SELECT message_seq FROM chat_sessions WHERE id = :id AND deleted_at IS NULL", nativeQuery = true)
+    Optional<Long> findLiveMessageSeq(@Param("id") UUID id);
+
+    @Modifying
+    @Query("update ChatSession s set s.deletedAt = :deletedAt, s.version = s.version + 1"
+            + " where s.id = :id and s.userId = :userId and s.deletedAt is null")
+    int markDeleted(@Param("id") UUID id, @Param("userId") String userId, @Param("deletedAt") OffsetDateTime deletedAt);
+
+    @Query(value = "SELECT id FROM chat_sessions WHERE deleted_at IS NOT NULL ORDER BY deleted_at LIMIT :limit",
+            nativeQuery = true)
+    List<UUID> findPurgeCandidates(@Param("limit") int limit);
+
+    @Query(value = "SELECT count(*) FROM chat_sessions WHERE deleted_at IS NOT NULL", nativeQuery = true)
+    long countPendingPurge();
+
+    @Modifying
+    @Query(value = "DELETE FROM chat_sessions WHERE id = :id AND deleted_at IS NOT NULL", nativeQuery = true)
+    int deleteTombstone(@Param("id") UUID id);
 }
@@ -0,0 +1,17 @@
+package com.example.chatstorage.repository;
+
+import com.example.chatstorage.domain.ChatSession;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public interface ChatSessionRepositoryCustom {
+
+    List<ChatSession> findSessionsPage(String userId, Boolean favorite, OffsetDateTime updatedSince,
+                                       OffsetDateTime cursorUpdatedAt, UUID cursorId, boolean older, int limit);
+
+    long countSessions(String userId, Boolean favorite, OffsetDateTime updatedSince);
+
+    SessionListVersion findListVersion(String userId);
+}
@@ -0,0 +1,86 @@
+package com.example.chatstorage.repository;
+
+import com.example.chatstorage.domain.ChatSession;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.jpa.HibernateHints;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+class ChatSessionRepositoryImpl implements ChatSessionRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<ChatSession> findSessionsPage(String userId, Boolean favorite, OffsetDateTime updatedSince,
+                                              OffsetDateTime cursorUpdatedAt, UUID cursorId, boolean older,
+                                              int limit) {
+        StringBuilder jpql = new StringBuilder("select s from ChatSession s");
+        appendFilters(jpql, favorite, updatedSince);
+        if (cursorUpdatedAt != null) {
+            if (older) {
+                jpql.append(" and s.updatedAt <= :cursorUpdatedAt and (s.updatedAt < :cursorUpdatedAt or s.id < :cursorId)");
+            } else {
+                jpql.append(" and s.updatedAt >= :cursorUpdatedAt and (s.updatedAt > :cursorUpdatedAt or s.id > :cursorId)");
+            }
+        }
+        jpql.append(older ? " order by s.updatedAt desc, s.id desc" : " order by s.updatedAt asc, s.id asc");
+
+        TypedQuery<ChatSession> query = entityManager.createQuery(jpql.toString(), ChatSession.class);
+        bindFilters(query, userId, favorite, updatedSince);
+        if (cursorUpdatedAt != null) {
+            query.setParameter("cursorUpdatedAt", cursorUpdatedAt);
+            query.setParameter("cursorId", cursorId);
+        }
+        return query.setHint(HibernateHints.HINT_READ_ONLY, true)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public long countSessions(String userId, Boolean favorite, OffsetDateTime updatedSince) {
+        StringBuilder jpql = new StringBuilder("select count(s) from ChatSession s");
+        appendFilters(jpql, favorite, updatedSince);
+        TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class);
+        bindFilters(query, userId, favorite, updatedSince);
+        return query.getSingleResult();
+    }
+
+    // A range scan of idx_chat_sessions_user_updated_live, usually index-only.
+    @Override
+    public SessionListVersion findListVersion(String userId) {
+        Object[] row = (Object[]) entityManager.createNativeQuery("""
+                        SELECT count(*), (extract(epoch FROM max(updated_at)) * 1000000)::bigint,
+                               coalesce(sum((extract(epoch FROM updated_at) * 1000000)::bigint), 0)
+                        FROM chat_sessions WHERE user_id = :userId AND deleted_at IS NULL
+                        """)
+                .setParameter("userId", userId)
+                .getSingleResult();
+        return new SessionListVersion(((Number) row[0]).longValue(),
+                row[1] != null ? ((Number) row[1]).longValue() : 0, ((Number) row[2]).longValue());
+    }
+
+    private void appendFilters(StringBuilder jpql, Boolean favorite, OffsetDateTime updatedSince) {
+        jpql.append(" where s.userId = :userId");
+        if (favorite != null) {
+            jpql.append(" and s.favorite = :favorite");
+        }
+        if (updatedSince != null) {
+            jpql.append(" and s.updatedAt >= :updatedSince");
+        }
+    }
+
+    private void bindFilters(TypedQuery<?> query, String userId, Boolean favorite, OffsetDateTime updatedSince) {
+        query.setParameter("userId", userId);
+        if (favorite != null) {
+            query.setParameter("favorite", favorite);
+        }
+        if (updatedSince != null) {
+            query.setParameter("updatedSince", updatedSince);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.example.chatstorage.repository;
+
+public record ContextBlob(byte[] hash, String text, int references) {
+}
@@ -0,0 +1,56 @@
+package com.example.chatstorage.repository;
+
+import com.example.chatstorage.domain.CompressedText;
+import com.example.chatstorage.domain.CompressedTextConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collections;
+import java.util.List;
+
+@Repository
+public class ContextBlobRepository {
+
+    private static final String ACQUIRE_SQL = """
+            INSERT INTO context_blobs (hash, data, ref_count, search_vector)
+            VALUES (?, ?, ?, setweight(to_tsvector('english', ?), 'B'))
+            ON CONFLICT (hash) DO UPDATE SET ref_count = context_blobs.ref_count + EXCLUDED.ref_count
+            """;
+    private static final String FIND_SQL = "SELECT hash, data, ref_count FROM context_blobs WHERE hash IN (%s)";
+    private static final String DELETE_ORPHANS_SQL = "DELETE FROM context_blobs WHERE ref_count <= 0";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CompressedTextConverter converter;
+
+    public ContextBlobRepository(JdbcTemplate jdbcTemplate, CompressedTextConverter converter) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.converter = converter;
+    }
+
+    // Adds each blob's references, creating the blob and its search vector on first use. Callers pass blobs in hash order so that
+    // concurrent writers sharing blobs lock them in the same order.
+    public void acquireAll(List<ContextBlob> blobs) {
+        jdbcTemplate.batchUpdate(ACQUIRE_SQL, blobs, blobs.size(), (statement, blob) -> {
+            statement.setBytes(1, blob.hash());
+            statement.setBytes(2, converter.convertToDatabaseColumn(CompressedText.of(blob.text())));
+            statement.setInt(3, blob.references());
+            statement.setString(4, blob.text());
+        });
+    }
+
+    public List<ContextBlob> findAll(List<byte[]> hashes) {
+        if (hashes.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(FIND_SQL.formatted(String.join(",", Collections.nCopies(hashes.size(), "?"))),
+                (resultSet, row) -> new ContextBlob(resultSet.getBytes(1),
+                        converter.convertToEntityAttribute(resultSet.getBytes(2)).text(), resultSet.getInt(3)),
+                hashes.toArray());
+    }
+
+    // References are released by the message purge; a blob re-acquired concurrently is re-checked under its
+    // row lock and kept.
+    public int deleteOrphans() {
+        return jdbcTemplate.update(DELETE_ORPHANS_SQL);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.chatstorage.repository;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+public record EmbeddingRow(UUID messageId, UUID sessionId, String userId, OffsetDateTime createdAt, float[] vector) {
+}
@@ -0,0 +1,10 @@
+package com.example.chatstorage.repository;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+// A search hit is either a message (kind MESSAGE) or a session whose title matched (kind SESSION, id = sessionId).
+// snippet is null for a message that matched only through its context.
+public record SearchRow(String kind, UUID id, UUID sessionId, String sessionTitle, String sender,
+                        OffsetDateTime createdAt, float score, String snippet) {
+}
@@ -0,0 +1,88 @@
+package com.example.chatstorage.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public class SessionArchiveRepository {
+
+    private static final String FIND_SQL = """
+            SELECT segment, record_offset, record_length, message_count FROM session_archives WHERE session_id = ?
+            """;
+    private static final String CANDIDATES_SQL = """
+            SELECT id, user_id, updated_at FROM chat_sessions
+            WHERE deleted_at IS NULL AND archived_at IS NULL AND updated_at < ?
+            ORDER BY updated_at
+            LIMIT ?
+            """;
+    private static final String MARK_ARCHIVED_SQL = """
+            UPDATE chat_sessions SET archived_at = ?
+            WHERE id = ? AND updated_at = ? AND deleted_at IS NULL AND archived_at IS NULL
+            """;
+    private static final String INSERT_LOCATION_SQL = """
+            INSERT INTO session_archives (session_id, segment, record_offset, record_length, message_count, archived_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+    private static final String UNMARK_ARCHIVED_SQL = """
+            UPDATE chat_sessions SET archived_at = NULL
+            WHERE id = ? AND user_id = ? AND deleted_at IS NULL AND archived_at IS NOT NULL
+            """;
+    private static final String DELETE_LOCATION_SQL = "DELETE FROM session_archives WHERE session_id = ?";
+    private static final String INSERT_MESSAGE_SQL = """
+            INSERT INTO chat_messages (id, session_id, sender, content, context_hash, created_at)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SessionArchiveRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Optional<ArchiveLocation> find(UUID sessionId) {
+        return jdbcTemplate.query(FIND_SQL, (resultSet, row) -> new ArchiveLocation(resultSet.getString(1),
+                        resultSet.getLong(2), resultSet.getInt(3), resultSet.getInt(4)), sessionId)
+                .stream().findFirst();
+    }
+
+    public List<ArchiveCandidate> findCandidates(OffsetDateTime idleBefore, int limit) {
+        return jdbcTemplate.query(CANDIDATES_SQL, (resultSet, row) -> new ArchiveCandidate(
+                resultSet.getObject(1, UUID.class), resultSet.getString(2), resultSet.getObject(3, OffsetDateTime.class)),
+                idleBefore, limit);
+    }
+
+    // Only succeeds while the session is unchanged since it was read for archiving: any append bumps updated_at.
+    public boolean markArchived(ArchiveCandidate candidate, ArchiveLocation location, OffsetDateTime archivedAt) {
+        if (jdbcTemplate.update(MARK_ARCHIVED_SQL, archivedAt, candidate.sessionId(), candidate.updatedAt()) == 0) {
+            return false;
+        }
+        jdbcTemplate.update(INSERT_LOCATION_SQL, candidate.sessionId(), location.segment(), location.offset(),
+                location.length(), location.messageCount(), archivedAt);
+        return true;
+    }
+
+    // Clears the archived flag; returns false if the session is not archived or not owned by userId.
+    public boolean unmarkArchived(UUID sessionId, String userId) {
+        return jdbcTemplate.update(UNMARK_ARCHIVED_SQL, sessionId, userId) > 0;
+    }
+
+    public void deleteLocation(UUID sessionId) {
+        jdbcTemplate.update(DELETE_LOCATION_SQL, sessionId);
+    }
+
+    public void insertMessages(UUID sessionId, List<ArchivedMessage> messages) {
+        jdbcTemplate.batchUpdate(INSERT_MESSAGE_SQL, messages, 500, (statement, message) -> {
+            statement.setObject(1, message.id());
+            statement.setObject(2, sessionId);
+            statement.setString(3, message.sender());
+            statement.setString(4, message.content());
+            statement.setBytes(5, message.contextHash());
+            statement.setObject(6, message.createdAt());
+        });
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.chatstorage.repository;
+
+// Changes whenever a live session of the user is created, deleted or updated. Creates and updates stamp
+// updated_at with the current time, so the latest update moves forward; deletes change the count. The sum of
+// updated_at covers writes from a node whose clock is behind the latest update: it only stays put if a create
+// and a delete in between cancel out to the microsecond.
+public record SessionListVersion(long sessions, long latestUpdate, long updatedAtSum) {
+}
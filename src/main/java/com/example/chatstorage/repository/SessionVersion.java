@@ -0,0 +1,6 @@
+package com.example.chatstorage.repository;
+
+import java.time.OffsetDateTime;
+
+public record SessionVersion(OffsetDateTime updatedAt, Long version) {
+}
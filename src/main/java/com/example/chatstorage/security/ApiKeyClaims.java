@@ -0,0 +1,4 @@
+package com.example.chatstorage.security;
+
+record ApiKeyClaims(long keyId, ApiKeyTier tier, long issuedAt, long expiresAt) {
+}
@@ -0,0 +1,139 @@
+package com.example.chatstorage.security;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Token layout (URL-safe Base64, no padding):
+// version(1) | tier(1) | keyId(8) | issuedAt(8) | expiresAt(8) | HMAC-SHA256(previous bytes) truncated to 16 bytes
+final class ApiKeyCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    private static final int PAYLOAD_LENGTH = 1 + 1 + Long.BYTES * 3;
+    private static final int TAG_LENGTH = 16;
+    private static final int TOKEN_BYTES = PAYLOAD_LENGTH + TAG_LENGTH;
+    private static final int TOKEN_CHARS = (TOKEN_BYTES * 8 + 5) / 6;
+
+    private final SecretKeySpec key;
+    // Striped pool rather than a ThreadLocal: with virtual threads every request runs on a fresh thread,
+    // so a ThreadLocal would build a new Mac per request.
+    private final AtomicReferenceArray<Scratch> pool;
+
+    ApiKeyCodec(String secret) {
+        this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        int slots = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;
+        this.pool = new AtomicReferenceArray<>(slots);
+    }
+
+    String encode(ApiKeyClaims claims) {
+        byte[] token = new byte[TOKEN_BYTES];
+        token[0] = VERSION;
+        token[1] = (byte) claims.tier().code();
+        putLong(token, 2, claims.keyId());
+        putLong(token, 10, claims.issuedAt());
+        putLong(token, 18, claims.expiresAt());
+        Scratch local = acquire();
+        sign(local, token);
+        System.arraycopy(local.tag, 0, token, PAYLOAD_LENGTH, TAG_LENGTH);
+        release(local);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    ApiKeyClaims decode(String encoded) {
+        if (encoded.length() != TOKEN_CHARS) {
+            return null;
+        }
+        Scratch local = acquire();
+        try {
+            return decode(encoded, local);
+        } finally {
+            release(local);
+        }
+    }
+
+    private static ApiKeyClaims decode(String encoded, Scratch local) {
+        byte[] token = local.token;
+        try {
+            if (Base64.getUrlDecoder().decode(encoded.getBytes(StandardCharsets.ISO_8859_1), token) != TOKEN_BYTES) {
+                return null;
+            }
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+        sign(local, token);
+        int diff = 0;
+        for (int i = 0; i < TAG_LENGTH; i++) {
+            diff |= local.tag[i] ^ token[PAYLOAD_LENGTH + i];
+        }
+        if (diff != 0 || token[0] != VERSION) {
+            return null;
+        }
+        ApiKeyTier tier = ApiKeyTier.fromCode(token[1]);
+        if (tier == null) {
+            return null;
+        }
+        return new ApiKeyClaims(getLong(token, 2), tier, getLong(token, 10), getLong(token, 18));
+    }
+
+    private Scratch acquire() {
+        Scratch local = pool.getAndSet(slot(), null);
+        return local != null ? local : new Scratch(newMac(key));
+    }
+
+    private void release(Scratch local) {
+        pool.compareAndSet(slot(), null, local);
+    }
+
+    private int slot() {
+        return (int) Thread.currentThread().threadId() & (pool.length() - 1);
+    }
+
+    private static void sign(Scratch local, byte[] token) {
+        try {
+            local.mac.update(token, 0, PAYLOAD_LENGTH);
+            local.mac.doFinal(local.tag, 0);
+        } catch (ShortBufferException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static Mac newMac(SecretKeySpec key) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 is not available", ex);
+        }
+    }
+
+    private static void putLong(byte[] target, int offset, long value) {
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            target[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] source, int offset) {
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (source[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static final class Scratch {
+        private final Mac mac;
+        private final byte[] token = new byte[TOKEN_BYTES];
+        private final byte[] tag = new byte[32];
+
+        private Scratch(Mac mac) {
+            this.mac = mac;
+        }
+    }
+}
@@ -7,124 +7,116 @@ import com.example.chatstorage.security.exception.ApiKeyExpiredException;
 import com.example.chatstorage.security.exception.ApiKeyRateLimitExceededException;
 import com.example.chatstorage.security.exception.InvalidApiKeyException;
 import com.example.chatstorage.security.exception.MissingApiKeyException;
+import com.example.chatstorage.security.ratelimit.RateLimitStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Clock;
 import java.time.Instant;
-import java.util.Base64;
+import java.util.EnumMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ApiKeyService {
 
     private static final String API_KEY_HEADER = "X-API-KEY";
 
-    private final String secret;
+    // Rejections are control flow, not failures: share stackless instances instead of allocating per request.
+    private static final MissingApiKeyException MISSING_KEY = new MissingApiKeyException(
+            "Missing API key header '" + API_KEY_HEADER + "'. Generate a new key to proceed.", API_KEY_HEADER);
+    private static final InvalidApiKeyException INVALID_KEY =
+            new InvalidApiKeyException("Invalid API key. Generate a new key to proceed.");
+    private static final ApiKeyExpiredException EXPIRED_KEY =
+            new ApiKeyExpiredException("API key expired. Generate a new key to proceed.");
+    private static final ApiKeyRateLimitExceededException RATE_LIMITED =
+            new ApiKeyRateLimitExceededException("Rate limit exceeded. Retry after the current one-minute window.");
+
+    private final ApiKeyCodec codec;
     private final long expirationMs;
-    private final int requestLimit;
-    private final Map<String, ApiKeyMetadata> activeKeys = new ConcurrentHashMap<>();
+    private final Map<ApiKeyTier, Integer> tierLimits = new EnumMap<>(ApiKeyTier.class);
+    private final Clock clock;
+    private final SecureRandom keyIds = new SecureRandom();
+    private final RateLimitStore rateLimitStore;
+    private final Counter missingKeyRejections;
+    private final Counter invalidKeyRejections;
+    private final Counter expiredKeyRejections;
+    private final Counter rateLimitedRejections;
+
+    @Autowired
+    public ApiKeyService(SecurityProperties securityProperties, RateLimitProperties rateLimitProperties,
+                         RateLimitStore rateLimitStore, MeterRegistry meterRegistry) {
+        this(securityProperties, rateLimitProperties, rateLimitStore, meterRegistry, Clock.systemUTC());
+    }
 
-    public ApiKeyService(SecurityProperties securityProperties, RateLimitProperties rateLimitProperties) {
+    ApiKeyService(SecurityProperties securityProperties, RateLimitProperties rateLimitProperties,
+                  RateLimitStore rateLimitStore, MeterRegistry meterRegistry, Clock clock) {
         if (securityProperties.getApiKeySecret() == null || securityProperties.getApiKeySecret().isBlank()) {
             throw new IllegalStateException("security.api-key-secret must be configured");
         }
         if (securityProperties.getKeyExpirationMs() <= 0) {
             throw new IllegalStateException("KEY_EXPIRATION_MS must be greater than zero");
         }
-        if (rateLimitProperties.getRequestsPerMinute() <= 0) {
+        if (rateLimitProperties.getRequestsPerMinute() <= 0 || rateLimitProperties.getPremiumRequestsPerMinute() <= 0) {
             throw new IllegalStateException("RATE_LIMIT_REQUESTS_PER_MINUTE must be greater than zero");
         }
-        this.secret = securityProperties.getApiKeySecret();
+        this.codec = new ApiKeyCodec(securityProperties.getApiKeySecret());
         this.expirationMs = securityProperties.getKeyExpirationMs();
-        this.requestLimit = rateLimitProperties.getRequestsPerMinute();
+        this.tierLimits.put(ApiKeyTier.STANDARD, rateLimitProperties.getRequestsPerMinute());
+        this.tierLimits.put(ApiKeyTier.PREMIUM, rateLimitProperties.getPremiumRequestsPerMinute());
+        this.rateLimitStore = rateLimitStore;
+        this.clock = clock;
+        this.missingKeyRejections = rejections(meterRegistry, "missing");
+        this.invalidKeyRejections = rejections(meterRegistry, "invalid");
+        this.expiredKeyRejections = rejections(meterRegistry, "expired");
+        this.rateLimitedRejections = rejections(meterRegistry, "rate_limited");
+        // Keys are stateless, so the rate limiter's per-key counters are the only record of keys in use.
+        Gauge.builder("chatstorage.apikey.tracked", rateLimitStore, RateLimitStore::trackedKeys)
+                .description("API keys with a live rate-limit counter")
+                .register(meterRegistry);
     }
 
     public ApiKeyResponse generateApiKey() {
-        long issuedAt = System.currentTimeMillis();
+        return generateApiKey(ApiKeyTier.STANDARD);
+    }
+
+    public ApiKeyResponse generateApiKey(ApiKeyTier tier) {
+        long issuedAt = clock.millis();
         long expiresAt = issuedAt + expirationMs;
-        String rawKey = issuedAt + ":" + secret;
-        String encoded = Base64.getEncoder().encodeToString(rawKey.getBytes(StandardCharsets.UTF_8));
-        ApiKeyMetadata metadata = new ApiKeyMetadata(issuedAt, expiresAt);
-        activeKeys.put(encoded, metadata);
+        String encoded = codec.encode(new ApiKeyClaims(keyIds.nextLong(), tier, issuedAt, expiresAt));
         return new ApiKeyResponse(encoded, Instant.ofEpochMilli(expiresAt));
     }
 
     public void validateAndRecordUsage(String encodedKey) {
         String sanitizedKey = (encodedKey != null) ? encodedKey.trim() : null;
         if (sanitizedKey == null || sanitizedKey.isEmpty()) {
-            throw new MissingApiKeyException("Missing API key header '" + API_KEY_HEADER + "'. Generate a new key to proceed.", API_KEY_HEADER);
+            missingKeyRejections.increment();
+            throw MISSING_KEY;
         }
 
-        DecodedApiKey decoded = decodeApiKey(sanitizedKey);
-        if (!secret.equals(decoded.secret())) {
-            throw new InvalidApiKeyException("Invalid API key. Generate a new key to proceed.");
+        ApiKeyClaims claims = codec.decode(sanitizedKey);
+        if (claims == null) {
+            invalidKeyRejections.increment();
+            throw INVALID_KEY;
         }
-
-        ApiKeyMetadata metadata = activeKeys.get(sanitizedKey);
-        if (metadata == null || metadata.getIssuedAt() != decoded.issuedAt()) {
-            throw new InvalidApiKeyException("Invalid API key. Generate a new key to proceed.");
+        long now = clock.millis();
+        if (now >= claims.expiresAt()) {
+            expiredKeyRejections.increment();
+            throw EXPIRED_KEY;
         }
-
-        long now = System.currentTimeMillis();
-        synchronized (metadata) {
-            if (now >= metadata.getExpiresAt()) {
-                activeKeys.remove(sanitizedKey);
-                throw new ApiKeyExpiredException("API key expired. Generate a new key to proceed.");
-            }
-
-            if (metadata.getRequestCount() >= requestLimit) {
-                activeKeys.remove(sanitizedKey);
-                throw new ApiKeyRateLimitExceededException("Rate limit exceeded. Generate a new key to proceed.");
-            }
-
-            metadata.incrementRequestCount();
+        if (!rateLimitStore.tryAcquire(claims.keyId(), claims.expiresAt(), tierLimits.get(claims.tier()), now)) {
+            rateLimitedRejections.increment();
+            throw RATE_LIMITED;
         }
     }
 
-    private DecodedApiKey decodeApiKey(String encodedKey) {
-        try {
-            byte[] decodedBytes = Base64.getDecoder().decode(encodedKey);
-            String decoded = new String(decodedBytes, StandardCharsets.UTF_8);
-            String[] parts = decoded.split(":", 2);
-            if (parts.length != 2) {
-                throw new IllegalArgumentException("Invalid format");
-            }
-            long issuedAt = Long.parseLong(parts[0]);
-            return new DecodedApiKey(issuedAt, parts[1]);
-        } catch (IllegalArgumentException ex) {
-            throw new InvalidApiKeyException("Invalid API key. Generate a new key to proceed.");
-        }
-    }
-
-    private record DecodedApiKey(long issuedAt, String secret) {
-    }
-
-    private static final class ApiKeyMetadata {
-        private final long issuedAt;
-        private final long expiresAt;
-        private int requestCount;
-
-        private ApiKeyMetadata(long issuedAt, long expiresAt) {
-            this.issuedAt = issuedAt;
-            this.expiresAt = expiresAt;
-            this.requestCount = 0;
-        }
-
-        private long getIssuedAt() {
-            return issuedAt;
-        }
-
-        private long getExpiresAt() {
-            return expiresAt;
-        }
-
-        private int getRequestCount() {
-            return requestCount;
-        }
-
-        private void incrementRequestCount() {
-            requestCount++;
-        }
+    private static Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("chatstorage.apikey.rejections")
+                .description("Requests rejected by API key validation")
+                .tag("reason", reason)
+                .register(meterRegistry);
     }
 }
@@ -0,0 +1,16 @@
+package com.example.chatstorage.security;
+
+public enum ApiKeyTier {
+    STANDARD,
+    PREMIUM;
+
+    private static final ApiKeyTier[] VALUES = values();
+
+    static ApiKeyTier fromCode(int code) {
+        return (code >= 0 && code < VALUES.length) ? VALUES[code] : null;
+    }
+
+    int code() {
+        return ordinal();
+    }
+}
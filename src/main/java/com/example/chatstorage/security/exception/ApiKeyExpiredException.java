@@ -2,6 +2,6 @@ package com.example.chatstorage.security.exception;
 
 public class ApiKeyExpiredException extends RuntimeException {
     public ApiKeyExpiredException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -2,6 +2,6 @@ package com.example.chatstorage.security.exception;
 
 public class ApiKeyRateLimitExceededException extends RuntimeException {
     public ApiKeyRateLimitExceededException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -2,6 +2,6 @@ package com.example.chatstorage.security.exception;
 
 public class InvalidApiKeyException extends RuntimeException {
     public InvalidApiKeyException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -5,7 +5,7 @@ public class MissingApiKeyException extends RuntimeException {
     private final String headerName;
 
     public MissingApiKeyException(String message, String headerName) {
-        super(message);
+        super(message, null, false, false);
         this.headerName = headerName;
     }
 
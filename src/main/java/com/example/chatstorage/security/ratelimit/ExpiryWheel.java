@@ -0,0 +1,61 @@
+package com.example.chatstorage.security.ratelimit;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+public final class ExpiryWheel<K> {
+
+    private final long tickMs;
+    private final Queue<Entry<K>>[] buckets;
+    private long lastTick;
+
+    @SuppressWarnings("unchecked")
+    public ExpiryWheel(long tickMs, int bucketCount, long startMs) {
+        if (tickMs <= 0 || bucketCount <= 0) {
+            throw new IllegalArgumentException("tickMs and bucketCount must be greater than zero");
+        }
+        this.tickMs = tickMs;
+        this.buckets = new Queue[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.lastTick = startMs / tickMs;
+    }
+
+    public void schedule(K key, long expiresAtMs) {
+        bucketFor(expiresAtMs / tickMs).add(new Entry<>(key, expiresAtMs));
+    }
+
+    // Single-threaded: called only by the sweeper. Entries more than one revolution away are put back.
+    public synchronized int advance(long nowMs, Consumer<K> onExpired) {
+        long currentTick = nowMs / tickMs;
+        int expired = 0;
+        long ticks = Math.min(currentTick - lastTick, buckets.length);
+        for (long i = 0; i < ticks; i++) {
+            Queue<Entry<K>> bucket = bucketFor(currentTick - ticks + 1 + i);
+            int pending = bucket.size();
+            for (int j = 0; j < pending; j++) {
+                Entry<K> entry = bucket.poll();
+                if (entry == null) {
+                    break;
+                }
+                if (entry.expiresAtMs() <= nowMs) {
+                    onExpired.accept(entry.key());
+                    expired++;
+                } else {
+                    bucket.add(entry);
+                }
+            }
+        }
+        lastTick = Math.max(lastTick, currentTick);
+        return expired;
+    }
+
+    private Queue<Entry<K>> bucketFor(long tick) {
+        return buckets[(int) Math.floorMod(tick, (long) buckets.length)];
+    }
+
+    private record Entry<K>(K key, long expiresAtMs) {
+    }
+}
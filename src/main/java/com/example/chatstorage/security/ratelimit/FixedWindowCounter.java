@@ -0,0 +1,56 @@
+package com.example.chatstorage.security.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class FixedWindowCounter {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long MAX_LIMIT = COUNT_MASK;
+
+    private final long windowMs;
+    // High bits hold the window index, low bits the number of permits taken in that window.
+    private final AtomicLong state = new AtomicLong();
+
+    public FixedWindowCounter(long windowMs) {
+        if (windowMs <= 0) {
+            throw new IllegalArgumentException("windowMs must be greater than zero");
+        }
+        this.windowMs = windowMs;
+    }
+
+    public boolean tryAcquire(long nowMs, int limit) {
+        if (limit <= 0) {
+            return false;
+        }
+        long cappedLimit = Math.min(limit, MAX_LIMIT);
+        long window = nowMs / windowMs;
+        while (true) {
+            long current = state.get();
+            long currentWindow = current >>> COUNT_BITS;
+            long next;
+            if (currentWindow == window) {
+                if ((current & COUNT_MASK) >= cappedLimit) {
+                    return false;
+                }
+                next = current + 1;
+            } else if (currentWindow < window) {
+                next = (window << COUNT_BITS) | 1;
+            } else {
+                // A caller with an older clock reading raced past a window rollover; count it in the newer window.
+                if ((current & COUNT_MASK) >= cappedLimit) {
+                    return false;
+                }
+                next = current + 1;
+            }
+            if (state.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    public int used(long nowMs) {
+        long current = state.get();
+        return (current >>> COUNT_BITS) == nowMs / windowMs ? (int) (current & COUNT_MASK) : 0;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.chatstorage.security.ratelimit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+@ConditionalOnProperty(prefix = "ratelimit", name = "store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    public static final long WINDOW_MS = 60_000;
+    private static final long SWEEP_TICK_MS = 1_000;
+    private static final int SWEEP_BUCKETS = 512;
+
+    private final Clock clock;
+    private final Map<Long, FixedWindowCounter> counters = new ConcurrentHashMap<>();
+    private final ExpiryWheel<Long> expiryWheel;
+
+    @Autowired
+    public InMemoryRateLimitStore() {
+        this(Clock.systemUTC());
+    }
+
+    public InMemoryRateLimitStore(Clock clock) {
+        this.clock = clock;
+        this.expiryWheel = new ExpiryWheel<>(SWEEP_TICK_MS, SWEEP_BUCKETS, clock.millis());
+    }
+
+    @Override
+    public boolean tryAcquire(long keyId, long keyExpiresAt, int limit, long nowMs) {
+        FixedWindowCounter counter = counters.get(keyId);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(keyId, id -> {
+                expiryWheel.schedule(id, keyExpiresAt);
+                return new FixedWindowCounter(WINDOW_MS);
+            });
+        }
+        return counter.tryAcquire(nowMs, limit);
+    }
+
+    @Override
+    public int trackedKeys() {
+        return counters.size();
+    }
+
+    @Scheduled(fixedRate = SWEEP_TICK_MS)
+    public void sweepExpired() {
+        expiryWheel.advance(clock.millis(), counters::remove);
+    }
+}
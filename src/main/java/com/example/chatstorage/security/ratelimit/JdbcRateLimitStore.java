@@ -0,0 +1,146 @@
+package com.example.chatstorage.security.ratelimit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@ConditionalOnProperty(prefix = "ratelimit", name = "store", havingValue = "jdbc")
+public class JdbcRateLimitStore implements RateLimitStore {
+
+    private static final Logger logger = LogManager.getLogger(JdbcRateLimitStore.class);
+
+    private static final String SYNC_SQL = """
+            INSERT INTO rate_limit_counters (key_id, window_start, request_count)
+            SELECT * FROM unnest(?::bigint[], ?::bigint[], ?::bigint[])
+            ON CONFLICT (key_id, window_start)
+                DO UPDATE SET request_count = rate_limit_counters.request_count + EXCLUDED.request_count
+            RETURNING key_id, window_start, request_count
+            """;
+    private static final String CLEANUP_SQL = "DELETE FROM rate_limit_counters WHERE window_start < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Clock clock;
+    private final Map<Long, LocalWindow> windows = new ConcurrentHashMap<>();
+
+    public JdbcRateLimitStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.clock = Clock.systemUTC();
+    }
+
+    @Override
+    public boolean tryAcquire(long keyId, long keyExpiresAt, int limit, long nowMs) {
+        long windowStart = nowMs - Math.floorMod(nowMs, InMemoryRateLimitStore.WINDOW_MS);
+        LocalWindow window = windows.get(keyId);
+        if (window == null || window.windowStart < windowStart) {
+            LocalWindow fresh = new LocalWindow(windowStart, keyExpiresAt);
+            window = windows.merge(keyId, fresh,
+                    (existing, candidate) -> existing.windowStart < candidate.windowStart ? candidate : existing);
+        }
+        return window.tryAcquire(limit);
+    }
+
+    @Override
+    public int trackedKeys() {
+        return windows.size();
+    }
+
+    @Scheduled(fixedDelayString = "${ratelimit.sync-interval-ms:250}")
+    public void sync() {
+        List<LocalWindow> dirty = new ArrayList<>();
+        List<Long> keyIds = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        for (Map.Entry<Long, LocalWindow> entry : windows.entrySet()) {
+            LocalWindow window = entry.getValue();
+            long delta = window.admitted.get() - window.flushed;
+            if (delta > 0) {
+                dirty.add(window);
+                keyIds.add(entry.getKey());
+                deltas.add(delta);
+            }
+        }
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        Long[] windowStarts = dirty.stream().map(window -> window.windowStart).toArray(Long[]::new);
+        Map<WindowKey, Long> totals = new HashMap<>();
+        try {
+            jdbcTemplate.query(SYNC_SQL,
+                    ps -> {
+                        ps.setArray(1, ps.getConnection().createArrayOf("bigint", keyIds.toArray()));
+                        ps.setArray(2, ps.getConnection().createArrayOf("bigint", windowStarts));
+                        ps.setArray(3, ps.getConnection().createArrayOf("bigint", deltas.toArray()));
+                    },
+                    (RowCallbackHandler) rs -> totals.put(new WindowKey(rs.getLong(1), rs.getLong(2)), rs.getLong(3)));
+        } catch (DataAccessException ex) {
+            logger.warn("Rate limit counter sync failed, keeping local counts: {}", ex.getMessage());
+            return;
+        }
+
+        for (int i = 0; i < dirty.size(); i++) {
+            LocalWindow window = dirty.get(i);
+            Long total = totals.get(new WindowKey(keyIds.get(i), window.windowStart));
+            if (total != null) {
+                window.flushed += deltas.get(i);
+                window.others.set(total - window.flushed);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelay = InMemoryRateLimitStore.WINDOW_MS)
+    public void cleanup() {
+        long now = clock.millis();
+        long currentWindow = now - Math.floorMod(now, InMemoryRateLimitStore.WINDOW_MS);
+        windows.entrySet().removeIf(entry -> entry.getValue().windowStart < currentWindow
+                && entry.getValue().admitted.get() == entry.getValue().flushed);
+        windows.values().removeIf(window -> window.keyExpiresAt <= now && window.admitted.get() == window.flushed);
+        try {
+            jdbcTemplate.update(CLEANUP_SQL, currentWindow - InMemoryRateLimitStore.WINDOW_MS);
+        } catch (DataAccessException ex) {
+            logger.warn("Rate limit counter cleanup failed: {}", ex.getMessage());
+        }
+    }
+
+    private record WindowKey(long keyId, long windowStart) {
+    }
+
+    private static final class LocalWindow {
+        private final long windowStart;
+        private final long keyExpiresAt;
+        private final AtomicLong admitted = new AtomicLong();
+        // Requests admitted by other replicas, as of the last sync.
+        private final AtomicLong others = new AtomicLong();
+        private volatile long flushed;
+
+        private LocalWindow(long windowStart, long keyExpiresAt) {
+            this.windowStart = windowStart;
+            this.keyExpiresAt = keyExpiresAt;
+        }
+
+        private boolean tryAcquire(int limit) {
+            while (true) {
+                long current = admitted.get();
+                if (others.get() + current >= limit) {
+                    return false;
+                }
+                if (admitted.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
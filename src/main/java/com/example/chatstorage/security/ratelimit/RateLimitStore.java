@@ -0,0 +1,8 @@
+package com.example.chatstorage.security.ratelimit;
+
+public interface RateLimitStore {
+
+    boolean tryAcquire(long keyId, long keyExpiresAt, int limit, long nowMs);
+
+    int trackedKeys();
+}
@@ -0,0 +1,238 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.ArchiveProperties;
+import com.example.chatstorage.domain.SenderType;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.repository.ArchiveLocation;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+// Immutable segment files holding archived sessions. A segment is written once, synced and moved into place
+// atomically, then only ever read through a read-only memory mapping, so cold reads come from the page cache.
+//
+// Layout: the magic "CSA1", then one record per session: raw length, CRC32 of the raw bytes and compressed
+// length (ints), followed by an LZ4 block. The raw bytes are the message count and, per message, the id,
+// sender, created_at in epoch microseconds, content and context (length-prefixed UTF-8, -1 for no context),
+// then the embedding count and, per embedding, the message id and its vector (dimension count and floats).
+// Records written before embeddings were archived end after the messages and read back with none.
+@Component
+public class ArchiveSegments {
+
+    private static final int MAGIC = 0x43534131;
+    private static final int RECORD_HEADER_BYTES = 3 * Integer.BYTES;
+    private static final String SUFFIX = ".seg";
+
+    private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+    private static final LZ4FastDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().fastDecompressor();
+
+    private final Path directory;
+    private final Cache<String, MappedByteBuffer> segments;
+
+    public ArchiveSegments(ArchiveProperties properties) {
+        this.directory = properties.getDirectory();
+        this.segments = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxOpenSegments())
+                .build();
+    }
+
+    SegmentWriter create() throws IOException {
+        Files.createDirectories(directory);
+        String name = "segment-" + Instant.now().toEpochMilli() + "-" + UUID.randomUUID() + SUFFIX;
+        return new SegmentWriter(name);
+    }
+
+    List<ChatMessageResponse> read(ArchiveLocation location) {
+        return readSession(location).messages();
+    }
+
+    ArchivedSession readSession(ArchiveLocation location) {
+        MappedByteBuffer segment = segments.getIfPresent(location.segment());
+        if (segment == null) {
+            // Mapped outside the cache's compute lock; a duplicate mapping is harmless.
+            MappedByteBuffer mapped = map(location.segment());
+            segment = segments.asMap().putIfAbsent(location.segment(), mapped);
+            segment = segment != null ? segment : mapped;
+        }
+        ByteBuffer record = segment.slice(Math.toIntExact(location.offset()), location.length());
+        int rawLength = record.getInt();
+        int checksum = record.getInt();
+        int compressedLength = record.getInt();
+        if (RECORD_HEADER_BYTES + compressedLength != location.length()) {
+            throw new IllegalStateException("Archive record length mismatch in " + location.segment());
+        }
+        ByteBuffer raw = ByteBuffer.allocate(rawLength);
+        DECOMPRESSOR.decompress(record, RECORD_HEADER_BYTES, raw, 0, rawLength);
+        CRC32 crc = new CRC32();
+        crc.update(raw.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IllegalStateException("Archive record checksum mismatch in " + location.segment());
+        }
+        return decode(raw);
+    }
+
+    private MappedByteBuffer map(String segment) {
+        try (FileChannel channel = FileChannel.open(directory.resolve(segment), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Archive segment " + segment + " is not readable", ex);
+        }
+    }
+
+    private static byte[] encode(ArchivedSession session) throws IOException {
+        List<ChatMessageResponse> messages = session.messages();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(messages.size());
+        for (ChatMessageResponse message : messages) {
+            out.writeLong(message.getId().getMostSignificantBits());
+            out.writeLong(message.getId().getLeastSignificantBits());
+            writeString(out, message.getSender().name());
+            out.writeLong(ChronoUnit.MICROS.between(Instant.EPOCH, message.getCreatedAt().toInstant()));
+            writeString(out, message.getContent());
+            writeString(out, message.getContext());
+        }
+        out.writeInt(session.embeddings().size());
+        for (Map.Entry<UUID, float[]> embedding : session.embeddings().entrySet()) {
+            out.writeLong(embedding.getKey().getMostSignificantBits());
+            out.writeLong(embedding.getKey().getLeastSignificantBits());
+            out.writeInt(embedding.getValue().length);
+            for (float value : embedding.getValue()) {
+                out.writeFloat(value);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ArchivedSession decode(ByteBuffer raw) {
+        int count = raw.getInt();
+        List<ChatMessageResponse> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ChatMessageResponse message = new ChatMessageResponse();
+            message.setId(new UUID(raw.getLong(), raw.getLong()));
+            message.setSender(SenderType.valueOf(readString(raw)));
+            message.setCreatedAt(Instant.EPOCH.plus(raw.getLong(), ChronoUnit.MICROS).atOffset(ZoneOffset.UTC));
+            message.setContent(readString(raw));
+            message.setContext(readString(raw));
+            messages.add(message);
+        }
+        Map<UUID, float[]> embeddings = new LinkedHashMap<>();
+        int embeddingCount = raw.hasRemaining() ? raw.getInt() : 0;
+        for (int i = 0; i < embeddingCount; i++) {
+            UUID messageId = new UUID(raw.getLong(), raw.getLong());
+            float[] vector = new float[raw.getInt()];
+            for (int d = 0; d < vector.length; d++) {
+                vector[d] = raw.getFloat();
+            }
+            embeddings.put(messageId, vector);
+        }
+        return new ArchivedSession(messages, embeddings);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readString(ByteBuffer raw) {
+        int length = raw.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(raw.array(), raw.arrayOffset() + raw.position(), length, StandardCharsets.UTF_8);
+        raw.position(raw.position() + length);
+        return value;
+    }
+
+    // A session's messages in (created_at, id) order and the embeddings stored for them, keyed by message id.
+    record ArchivedSession(List<ChatMessageResponse> messages, Map<UUID, float[]> embeddings) {
+    }
+
+    // Records become readable only once commit() has moved the finished segment into place.
+    final class SegmentWriter implements AutoCloseable {
+
+        private final String name;
+        private final Path temporary;
+        private final FileChannel channel;
+        private long offset;
+        private boolean committed;
+
+        private SegmentWriter(String name) throws IOException {
+            this.name = name;
+            this.temporary = directory.resolve(name + ".tmp");
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            writeFully(ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC).flip());
+            this.offset = Integer.BYTES;
+        }
+
+        ArchiveLocation append(ArchivedSession session) throws IOException {
+            byte[] raw = encode(session);
+            CRC32 crc = new CRC32();
+            crc.update(raw);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + COMPRESSOR.maxCompressedLength(raw.length));
+            int compressedLength = COMPRESSOR.compress(ByteBuffer.wrap(raw), 0, raw.length, record,
+                    RECORD_HEADER_BYTES, record.capacity() - RECORD_HEADER_BYTES);
+            record.putInt(raw.length).putInt((int) crc.getValue()).putInt(compressedLength);
+            record.position(0).limit(RECORD_HEADER_BYTES + compressedLength);
+            int length = record.remaining();
+            if (offset + length > Integer.MAX_VALUE) {
+                throw new IOException("Archive segment " + name + " would exceed 2GB");
+            }
+            writeFully(record);
+            ArchiveLocation location = new ArchiveLocation(name, offset, length, session.messages().size());
+            offset += length;
+            return location;
+        }
+
+        void commit() throws IOException {
+            channel.force(true);
+            channel.close();
+            Files.move(temporary, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        private void writeFully(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+}
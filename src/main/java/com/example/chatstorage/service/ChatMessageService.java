@@ -4,46 +4,156 @@ import com.example.chatstorage.domain.ChatMessage;
 import com.example.chatstorage.domain.ChatSession;
 import com.example.chatstorage.dto.ChatMessageCreateRequest;
 import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.dto.CursorDirection;
+import com.example.chatstorage.dto.CursorPagedResponse;
 import com.example.chatstorage.dto.PagedResponse;
+import com.example.chatstorage.dto.SimilarMessageResponse;
 import com.example.chatstorage.mapper.ChatMessageMapper;
 import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.repository.SessionVersion;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class ChatMessageService {
 
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+    // Contexts are resolved a chunk at a time so uncached blobs cost one query per chunk, not per message.
+    private static final int EXPORT_CHUNK_SIZE = 500;
+
     private final ChatMessageRepository chatMessageRepository;
     private final ChatSessionService chatSessionService;
     private final ChatMessageMapper chatMessageMapper;
+    private final ObjectMapper objectMapper;
+    private final MessageTailCache messageTailCache;
+    private final EmbeddingService embeddingService;
+    private final ContextBlobStore contextBlobStore;
+    private final MessageArchive messageArchive;
+    private final MessageStreamHub messageStreamHub;
+    private final MessageStreamRelay messageStreamRelay;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     public ChatMessageService(ChatMessageRepository chatMessageRepository,
                               ChatSessionService chatSessionService,
-                              ChatMessageMapper chatMessageMapper) {
+                              ChatMessageMapper chatMessageMapper,
+                              ObjectMapper objectMapper,
+                              MessageTailCache messageTailCache,
+                              EmbeddingService embeddingService,
+                              ContextBlobStore contextBlobStore,
+                              MessageArchive messageArchive,
+                              MessageStreamHub messageStreamHub,
+                              MessageStreamRelay messageStreamRelay) {
         this.chatMessageRepository = chatMessageRepository;
         this.chatSessionService = chatSessionService;
         this.chatMessageMapper = chatMessageMapper;
+        this.objectMapper = objectMapper;
+        this.messageTailCache = messageTailCache;
+        this.embeddingService = embeddingService;
+        this.contextBlobStore = contextBlobStore;
+        this.messageArchive = messageArchive;
+        this.messageStreamHub = messageStreamHub;
+        this.messageStreamRelay = messageStreamRelay;
     }
 
+    // The session row is locked by touchSession until commit, so it comes after the inserts: concurrent appends
+    // to one session only queue for the last two statements and the commit. Numbering the messages under that
+    // lock makes their numbers follow commit order, which stream resumption relies on.
     @Transactional
     public ChatMessageResponse addMessage(UUID sessionId, String userId, ChatMessageCreateRequest request) {
-        ChatSession session = chatSessionService.getSession(sessionId, userId);
+        embeddingService.validate(List.of(request));
+        ChatSession session = chatSessionService.getSessionReference(sessionId, userId);
         ChatMessage message = chatMessageMapper.toEntity(request);
         message.setSession(session);
-        message.setCreatedAt(OffsetDateTime.now());
-        ChatMessage saved = chatMessageRepository.save(message);
-        session.setUpdatedAt(OffsetDateTime.now());
-        return chatMessageMapper.toResponse(saved);
+        message.setCreatedAt(now());
+        contextBlobStore.attach(List.of(message), Collections.singletonList(request.getContext()));
+        ChatMessage saved = chatMessageRepository.saveAndFlush(message);
+        embeddingService.store(userId, sessionId, List.of(saved), List.of(request));
+        long lastSeq = chatSessionService.touchSession(sessionId, userId, 1);
+        assignSeq(sessionId, List.of(saved), lastSeq);
+        ChatMessageResponse response = chatMessageMapper.toResponse(saved);
+        messageTailCache.append(sessionId, lastSeq, List.of(response));
+        messageStreamRelay.publish(sessionId, lastSeq, List.of(response));
+        return response;
+    }
+
+    @Transactional
+    public List<ChatMessageResponse> addMessages(UUID sessionId, String userId, List<ChatMessageCreateRequest> requests) {
+        embeddingService.validate(requests);
+        ChatSession session = chatSessionService.getSessionReference(sessionId, userId);
+        OffsetDateTime base = now();
+        List<ChatMessage> messages = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            ChatMessage message = chatMessageMapper.toEntity(requests.get(i));
+            message.setSession(session);
+            // Spread the batch over distinct microseconds so (createdAt, id) ordering keeps request order.
+            message.setCreatedAt(base.plus(i, ChronoUnit.MICROS));
+            messages.add(message);
+        }
+        contextBlobStore.attach(messages, requests.stream().map(ChatMessageCreateRequest::getContext).toList());
+        List<ChatMessage> saved = chatMessageRepository.saveAllAndFlush(messages);
+        embeddingService.store(userId, sessionId, saved, requests);
+        long lastSeq = chatSessionService.touchSession(sessionId, userId, saved.size());
+        assignSeq(sessionId, saved, lastSeq);
+        List<ChatMessageResponse> responses = saved.stream().map(chatMessageMapper::toResponse).toList();
+        messageTailCache.append(sessionId, lastSeq, responses);
+        messageStreamRelay.publish(sessionId, lastSeq, responses);
+        return responses;
+    }
+
+    // One primary-key lookup, so an unchanged poll is answered before any message is read. Every append moves
+    // the session's updated_at forward.
+    @Transactional(readOnly = true)
+    public String messagesETag(UUID sessionId, String userId) {
+        SessionVersion version = chatSessionService.getSessionVersion(sessionId, userId);
+        return ETags.of("messages", sessionId, version.updatedAt().toInstant(), version.version());
+    }
+
+    // The latest page can come from this node's tail cache, which may lag the session's version (see
+    // MessageTailCache), so its validator is derived from the messages actually served instead.
+    public boolean servesLatestFromTailCache(String cursor, CursorDirection direction, int size, boolean includeTotal) {
+        return (cursor == null || cursor.isBlank()) && servesLatestFromTailCache(direction, size, includeTotal);
+    }
+
+    public String latestPageETag(UUID sessionId, CursorPagedResponse<ChatMessageResponse> page) {
+        return ETags.of("latest-messages", sessionId, page.isHasPrevious(),
+                page.getData().stream().map(ChatMessageResponse::getId).toList());
+    }
+
+    private boolean servesLatestFromTailCache(CursorDirection direction, int size, boolean includeTotal) {
+        return direction == CursorDirection.PREVIOUS && !includeTotal && messageTailCache.canServe(size);
     }
 
     @Transactional(readOnly = true)
     public PagedResponse<ChatMessageResponse> getMessages(UUID sessionId, String userId, int page, int size) {
-        ChatSession session = chatSessionService.getSession(sessionId, userId);
+        SessionSnapshot session = chatSessionService.getOwnedSession(sessionId, userId);
         if (page < 0) {
             throw new IllegalArgumentException("Page index must be greater than or equal to zero");
         }
@@ -51,7 +161,14 @@ public class ChatMessageService {
             throw new IllegalArgumentException("Page size must be between 1 and 100");
         }
         PageRequest pageable = PageRequest.of(page, size);
-        Page<ChatMessage> result = chatMessageRepository.findBySessionOrderByCreatedAtAsc(session, pageable);
+        Page<ChatMessage> result = chatMessageRepository.findBySessionIdOrderByCreatedAtAsc(session.id(), pageable);
+        if (result.getTotalElements() == 0) {
+            Optional<List<ChatMessageResponse>> archived = messageArchive.find(session.id());
+            if (archived.isPresent()) {
+                return archivedPage(archived.get(), page, size);
+            }
+        }
+        contextBlobStore.resolve(result.getContent());
         return new PagedResponse<>(
                 result.getContent().stream().map(chatMessageMapper::toResponse).toList(),
                 result.getNumber(),
@@ -62,8 +179,179 @@ public class ChatMessageService {
         );
     }
 
-    @Transactional
-    public void deleteMessagesForSession(ChatSession session) {
-        chatMessageRepository.deleteBySession(session);
+    @Transactional(readOnly = true)
+    public CursorPagedResponse<ChatMessageResponse> getMessagesByCursor(UUID sessionId, String userId, String cursor,
+                                                                        CursorDirection direction, int size,
+                                                                        boolean includeTotal) {
+        SessionSnapshot session = chatSessionService.getOwnedSession(sessionId, userId);
+        CursorPages.validateSize(size);
+        KeysetCursor position = CursorPages.decode(cursor);
+        if (position == null && servesLatestFromTailCache(direction, size, includeTotal)) {
+            return CursorPages.toResponse(latestMessages(session.id(), userId, size), size, null, direction,
+                    ChatMessageService::keyOf, Function.identity(), null);
+        }
+        PageRequest limit = PageRequest.of(0, size + 1);
+
+        List<ChatMessage> rows;
+        if (direction == CursorDirection.PREVIOUS) {
+            rows = position == null
+                    ? chatMessageRepository.findTail(session.id(), limit)
+                    : chatMessageRepository.findBefore(session.id(), position.timestamp(), position.id(), limit);
+        } else {
+            rows = position == null
+                    ? chatMessageRepository.findHead(session.id(), limit)
+                    : chatMessageRepository.findAfter(session.id(), position.timestamp(), position.id(), limit);
+        }
+        if (rows.isEmpty()) {
+            Optional<List<ChatMessageResponse>> archived = messageArchive.find(session.id());
+            if (archived.isPresent()) {
+                return CursorPages.toResponse(archivedRows(archived.get(), position, direction, size), size, cursor,
+                        direction, ChatMessageService::keyOf, Function.identity(),
+                        includeTotal ? (long) archived.get().size() : null);
+            }
+        }
+        contextBlobStore.resolve(rows);
+        Long total = includeTotal ? chatMessageRepository.countBySessionId(session.id()) : null;
+        return CursorPages.toResponse(rows, size, cursor, direction,
+                message -> new KeysetCursor(message.getCreatedAt(), message.getId()),
+                chatMessageMapper::toResponse, total);
+    }
+
+    // The session row is read on every call, so a tail cached on this node is never served once another node has
+    // appended to the session or deleted it.
+    private List<ChatMessageResponse> latestMessages(UUID sessionId, String userId, int size) {
+        long epoch = messageTailCache.epoch(sessionId);
+        long seq = chatSessionService.getCommittedMessageSeq(sessionId, userId);
+        List<ChatMessageResponse> cached = messageTailCache.latest(sessionId, seq, size);
+        if (cached != null) {
+            return cached;
+        }
+        List<ChatMessage> tail = chatMessageRepository
+                .findTail(sessionId, PageRequest.of(0, messageTailCache.loadSize()));
+        if (tail.isEmpty()) {
+            Optional<List<ChatMessageResponse>> archived = messageArchive.find(sessionId);
+            if (archived.isPresent()) {
+                return archivedRows(archived.get(), null, CursorDirection.PREVIOUS, size);
+            }
+        }
+        contextBlobStore.resolve(tail);
+        List<ChatMessageResponse> rows = tail.stream().map(chatMessageMapper::toResponse).toList();
+        messageTailCache.populate(sessionId, epoch, seq, rows);
+        return rows.subList(0, Math.min(size + 1, rows.size()));
+    }
+
+    // Event ids are keyset cursors, so a client can also resume from the nextCursor of a cursor page.
+    public SseEmitter streamMessages(UUID sessionId, String userId, String lastEventId) {
+        KeysetCursor resumeAfter = CursorPages.decode(lastEventId);
+        SessionSnapshot session = chatSessionService.getOwnedSession(sessionId, userId);
+        return messageStreamHub.subscribe(session.id(), resumeAfter);
+    }
+
+    // Messages of sessions deleted through another replica may still be in the local index; they are dropped here.
+    @Transactional(readOnly = true)
+    public List<SimilarMessageResponse> findSimilar(String userId, UUID sessionId, float[] vector, int k) {
+        if (sessionId != null) {
+            chatSessionService.getOwnedSession(sessionId, userId);
+        }
+        List<HnswIndex.Match> matches = embeddingService.findSimilar(userId, sessionId, vector, k);
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+        Map<UUID, ChatMessage> messages = new HashMap<>();
+        chatMessageRepository.findLive(matches.stream().map(HnswIndex.Match::messageId).toList(),
+                        matches.stream().map(HnswIndex.Match::createdAt).collect(Collectors.toSet()))
+                .forEach(message -> messages.put(message.getId(), message));
+        contextBlobStore.resolve(messages.values());
+        List<SimilarMessageResponse> results = new ArrayList<>(matches.size());
+        for (HnswIndex.Match match : matches) {
+            ChatMessage message = messages.get(match.messageId());
+            if (message != null) {
+                results.add(new SimilarMessageResponse(match.sessionId(), match.score(),
+                        chatMessageMapper.toResponse(message)));
+            }
+        }
+        return results;
+    }
+
+    static KeysetCursor keyOf(ChatMessageResponse message) {
+        return new KeysetCursor(message.getCreatedAt(), message.getId());
+    }
+
+    private static PagedResponse<ChatMessageResponse> archivedPage(List<ChatMessageResponse> archived, int page,
+                                                                   int size) {
+        int from = (int) Math.min((long) page * size, archived.size());
+        int to = Math.min(from + size, archived.size());
+        int totalPages = (archived.size() + size - 1) / size;
+        return new PagedResponse<>(archived.subList(from, to), page, size, archived.size(), totalPages,
+                page + 1 >= totalPages);
+    }
+
+    // Rows in the order the keyset queries return them. The cursor's message is located by id: ties on createdAt
+    // are in the database's uuid order, which UUID.compareTo does not follow.
+    private static List<ChatMessageResponse> archivedRows(List<ChatMessageResponse> archived, KeysetCursor position,
+                                                          CursorDirection direction, int size) {
+        int at = -1;
+        if (position != null) {
+            for (int i = 0; i < archived.size() && at < 0; i++) {
+                if (archived.get(i).getId().equals(position.id())) {
+                    at = i;
+                }
+            }
+            if (at < 0) {
+                throw new IllegalArgumentException("Cursor does not belong to this session");
+            }
+        }
+        if (direction == CursorDirection.PREVIOUS) {
+            int end = position == null ? archived.size() : at;
+            return archived.subList(Math.max(0, end - size - 1), end).reversed();
+        }
+        int start = at + 1;
+        return archived.subList(start, Math.min(archived.size(), start + size + 1));
+    }
+
+    @Transactional(readOnly = true)
+    public void exportMessages(UUID sessionId, String userId, OutputStream outputStream) throws IOException {
+        SessionSnapshot session = chatSessionService.getOwnedSession(sessionId, userId);
+        OutputStream buffered = new BufferedOutputStream(outputStream, EXPORT_BUFFER_SIZE);
+        try (Stream<ChatMessage> messages = chatMessageRepository.streamBySessionId(session.id());
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(buffered)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            ObjectWriter writer = objectMapper.writerFor(ChatMessageResponse.class)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            Iterator<ChatMessage> iterator = messages.iterator();
+            if (!iterator.hasNext()) {
+                for (ChatMessageResponse message : messageArchive.find(session.id()).orElse(List.of())) {
+                    writer.writeValue(generator, message);
+                    generator.writeRaw('\n');
+                }
+            }
+            List<ChatMessage> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() < EXPORT_CHUNK_SIZE && iterator.hasNext()) {
+                    continue;
+                }
+                contextBlobStore.resolve(chunk);
+                for (ChatMessage message : chunk) {
+                    writer.writeValue(generator, chatMessageMapper.toResponse(message));
+                    generator.writeRaw('\n');
+                    entityManager.detach(message);
+                }
+                chunk.clear();
+            }
+        }
+        buffered.flush();
+    }
+
+    private void assignSeq(UUID sessionId, List<ChatMessage> saved, long lastSeq) {
+        if (saved.isEmpty()) {
+            return;
+        }
+        chatMessageRepository.assignSeq(sessionId, saved.stream().map(ChatMessage::getId).toList(),
+                saved.get(0).getCreatedAt(), saved.get(saved.size() - 1).getCreatedAt(), lastSeq);
+    }
+
+    private static OffsetDateTime now() {
+        return OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS);
     }
 }
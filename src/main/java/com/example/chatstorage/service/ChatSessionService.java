@@ -1,15 +1,22 @@
 package com.example.chatstorage.service;
 
+import com.example.chatstorage.datasource.ReadYourWrites;
 import com.example.chatstorage.domain.ChatSession;
 import com.example.chatstorage.dto.ChatSessionCreateRequest;
 import com.example.chatstorage.dto.ChatSessionResponse;
+import com.example.chatstorage.dto.CursorDirection;
+import com.example.chatstorage.dto.CursorPagedResponse;
 import com.example.chatstorage.mapper.ChatSessionMapper;
 import com.example.chatstorage.repository.ChatSessionRepository;
+import com.example.chatstorage.repository.SessionListVersion;
+import com.example.chatstorage.repository.SessionVersion;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
@@ -17,10 +24,23 @@ public class ChatSessionService {
 
     private final ChatSessionRepository chatSessionRepository;
     private final ChatSessionMapper chatSessionMapper;
+    private final SessionOwnershipCache sessionOwnershipCache;
+    private final MessageTailCache messageTailCache;
+    private final EmbeddingIndex embeddingIndex;
+    private final MessageArchive messageArchive;
+    private final ReadYourWrites readYourWrites;
 
-    public ChatSessionService(ChatSessionRepository chatSessionRepository, ChatSessionMapper chatSessionMapper) {
+    public ChatSessionService(ChatSessionRepository chatSessionRepository, ChatSessionMapper chatSessionMapper,
+                              SessionOwnershipCache sessionOwnershipCache, MessageTailCache messageTailCache,
+                              EmbeddingIndex embeddingIndex, MessageArchive messageArchive,
+                              ReadYourWrites readYourWrites) {
         this.chatSessionRepository = chatSessionRepository;
         this.chatSessionMapper = chatSessionMapper;
+        this.sessionOwnershipCache = sessionOwnershipCache;
+        this.messageTailCache = messageTailCache;
+        this.embeddingIndex = embeddingIndex;
+        this.messageArchive = messageArchive;
+        this.readYourWrites = readYourWrites;
     }
 
     @Transactional
@@ -30,36 +50,66 @@ public class ChatSessionService {
         session.setCreatedAt(now);
         session.setUpdatedAt(now);
         ChatSession saved = chatSessionRepository.save(session);
+        readYourWrites.recordWrite(saved.getUserId());
         return chatSessionMapper.toResponse(saved);
     }
 
     @Transactional(readOnly = true)
-    public List<ChatSessionResponse> listSessions(String userId) {
-        return chatSessionRepository.findByUserIdOrderByUpdatedAtDesc(userId).stream()
-                .map(chatSessionMapper::toResponse)
-                .toList();
+    public CursorPagedResponse<ChatSessionResponse> listSessions(String userId, Boolean favorite,
+                                                                 OffsetDateTime updatedSince, String cursor,
+                                                                 CursorDirection direction, int size,
+                                                                 boolean includeTotal) {
+        CursorPages.validateSize(size);
+        KeysetCursor position = CursorPages.decode(cursor);
+        boolean older = direction != CursorDirection.PREVIOUS;
+        List<ChatSession> rows = chatSessionRepository.findSessionsPage(userId, favorite, updatedSince,
+                position != null ? position.timestamp() : null,
+                position != null ? position.id() : null,
+                older,
+                size + 1);
+        Long total = includeTotal ? chatSessionRepository.countSessions(userId, favorite, updatedSince) : null;
+        return CursorPages.toResponse(rows, size, cursor, direction,
+                session -> new KeysetCursor(session.getUpdatedAt(), session.getId()),
+                chatSessionMapper::toResponse, total);
     }
 
     @Transactional
     public ChatSessionResponse renameSession(UUID sessionId, String userId, String title) {
-        ChatSession session = getSession(sessionId, userId);
+        ChatSession session = lockSession(sessionId, userId);
         session.setTitle(title);
-        session.setUpdatedAt(OffsetDateTime.now());
+        session.setUpdatedAt(nextUpdatedAt(session));
+        sessionOwnershipCache.invalidate(sessionId, userId);
+        readYourWrites.recordWrite(userId);
         return chatSessionMapper.toResponse(session);
     }
 
     @Transactional
     public ChatSessionResponse updateFavorite(UUID sessionId, String userId, boolean favorite) {
-        ChatSession session = getSession(sessionId, userId);
+        ChatSession session = lockSession(sessionId, userId);
         session.setFavorite(favorite);
-        session.setUpdatedAt(OffsetDateTime.now());
+        session.setUpdatedAt(nextUpdatedAt(session));
+        sessionOwnershipCache.invalidate(sessionId, userId);
+        readYourWrites.recordWrite(userId);
         return chatSessionMapper.toResponse(session);
     }
 
+    // Validator for the user's session list, whatever the filters and page.
+    @Transactional(readOnly = true)
+    public String sessionListETag(String userId) {
+        SessionListVersion version = chatSessionRepository.findListVersion(userId);
+        return ETags.of("sessions", userId, version.sessions(), version.latestUpdate(), version.updatedAtSum());
+    }
+
     @Transactional
     public void deleteSession(UUID sessionId, String userId) {
-        ChatSession session = getSession(sessionId, userId);
-        chatSessionRepository.delete(session);
+        sessionOwnershipCache.invalidate(sessionId, userId);
+        messageTailCache.invalidate(sessionId);
+        int updated = chatSessionRepository.markDeleted(sessionId, userId, OffsetDateTime.now());
+        if (updated == 0) {
+            throw new ResourceNotFoundException("Session not found");
+        }
+        embeddingIndex.removeSession(userId, sessionId);
+        readYourWrites.recordWrite(userId);
     }
 
     @Transactional(readOnly = true)
@@ -67,4 +117,71 @@ public class ChatSessionService {
         return chatSessionRepository.findByIdAndUserId(sessionId, userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Session not found"));
     }
+
+    @Transactional(readOnly = true)
+    public SessionVersion getSessionVersion(UUID sessionId, String userId) {
+        return chatSessionRepository.findVersion(sessionId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Session not found"));
+    }
+
+    @Transactional(readOnly = true)
+    public SessionSnapshot getOwnedSession(UUID sessionId, String userId) {
+        SessionSnapshot snapshot = sessionOwnershipCache.get(sessionId, userId,
+                () -> chatSessionRepository.findByIdAndUserId(sessionId, userId).map(SessionSnapshot::of).orElse(null));
+        if (snapshot == null) {
+            throw new ResourceNotFoundException("Session not found");
+        }
+        return snapshot;
+    }
+
+    @Transactional(readOnly = true)
+    public ChatSession getSessionReference(UUID sessionId, String userId) {
+        return chatSessionRepository.getReferenceById(getOwnedSession(sessionId, userId).id());
+    }
+
+    // The last message number committed to a live session, read from the row rather than a cache so that appends
+    // and deletes made through other replicas are seen.
+    @Transactional(readOnly = true)
+    public long getCommittedMessageSeq(UUID sessionId, String userId) {
+        Optional<Long> seq = chatSessionRepository.findLiveMessageSeq(sessionId);
+        if (seq.isEmpty()) {
+            sessionOwnershipCache.invalidate(sessionId, userId);
+            messageTailCache.invalidate(sessionId);
+            throw new ResourceNotFoundException("Session not found");
+        }
+        return seq.get();
+    }
+
+    // Archived sessions are not touched; appending to one first moves its messages back into chat_messages.
+    // Returns the last of the `appended` message numbers reserved for the caller.
+    @Transactional
+    public long touchSession(UUID sessionId, String userId, int appended) {
+        Optional<Long> lastSeq = chatSessionRepository.touch(sessionId, userId, OffsetDateTime.now(), appended);
+        if (lastSeq.isEmpty()) {
+            // Touched again even if the restore found nothing to do: a concurrent append may have restored the
+            // session first, and its commit is visible to the next statement.
+            messageArchive.restore(sessionId, userId);
+            lastSeq = chatSessionRepository.touch(sessionId, userId, OffsetDateTime.now(), appended);
+        }
+        if (lastSeq.isEmpty()) {
+            sessionOwnershipCache.invalidate(sessionId, userId);
+            messageTailCache.invalidate(sessionId);
+            throw new ResourceNotFoundException("Session not found");
+        }
+        readYourWrites.recordWrite(userId);
+        return lastSeq.get();
+    }
+
+    // Like touch, moves updated_at strictly forward so that the session's validators change.
+    // Waits for any append holding the row, so nextUpdatedAt starts from the updated_at it committed.
+    private ChatSession lockSession(UUID sessionId, String userId) {
+        return chatSessionRepository.findForUpdate(sessionId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Session not found"));
+    }
+
+    private static OffsetDateTime nextUpdatedAt(ChatSession session) {
+        OffsetDateTime now = OffsetDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        OffsetDateTime next = session.getUpdatedAt().plus(1, ChronoUnit.MICROS);
+        return now.isAfter(next) ? now : next;
+    }
 }
@@ -0,0 +1,122 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.ContextBlobCacheProperties;
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.repository.ContextBlob;
+import com.example.chatstorage.repository.ContextBlobRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Message contexts are stored once per distinct text in context_blobs, keyed by the SHA-256 of the text.
+// Blobs are immutable, so the cache never needs invalidating; a blob dropped by the purge can only be
+// requested again by a message that re-created it.
+@Component
+public class ContextBlobStore {
+
+    static final String CACHE_NAME = "context-blobs";
+
+    private static final HexFormat HEX = HexFormat.of();
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private final ContextBlobRepository contextBlobRepository;
+    private final Cache<String, String> blobs;
+
+    public ContextBlobStore(ContextBlobRepository contextBlobRepository, ContextBlobCacheProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.contextBlobRepository = contextBlobRepository;
+        this.blobs = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumSize().toBytes())
+                .weigher((String hash, String text) -> ENTRY_OVERHEAD_BYTES + 2 * text.length())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, blobs, CACHE_NAME);
+    }
+
+    // Runs in the writing transaction so the references commit or roll back with the messages.
+    void attach(List<ChatMessage> messages, List<String> contexts) {
+        List<byte[]> hashes = acquire(contexts);
+        for (int i = 0; i < messages.size(); i++) {
+            if (hashes.get(i) != null) {
+                messages.get(i).setContext(hashes.get(i), contexts.get(i));
+            }
+        }
+    }
+
+    // Takes one reference per non-null context and returns the hashes in the same order, null for no context.
+    List<byte[]> acquire(List<String> contexts) {
+        List<byte[]> hashes = new ArrayList<>(contexts.size());
+        Map<String, ContextBlob> acquired = new TreeMap<>();
+        for (String context : contexts) {
+            if (context == null) {
+                hashes.add(null);
+                continue;
+            }
+            byte[] hash = hash(context);
+            hashes.add(hash);
+            acquired.merge(HEX.formatHex(hash), new ContextBlob(hash, context, 1),
+                    (existing, added) -> new ContextBlob(hash, context, existing.references() + 1));
+        }
+        if (!acquired.isEmpty()) {
+            contextBlobRepository.acquireAll(new ArrayList<>(acquired.values()));
+            acquired.forEach((key, blob) -> blobs.put(key, blob.text()));
+        }
+        return hashes;
+    }
+
+    void resolve(Collection<ChatMessage> messages) {
+        Map<String, List<ChatMessage>> missing = new HashMap<>();
+        List<byte[]> missingHashes = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            byte[] hash = message.getContextHash();
+            if (hash == null) {
+                continue;
+            }
+            String key = HEX.formatHex(hash);
+            String text = blobs.getIfPresent(key);
+            if (text != null) {
+                message.resolveContext(text);
+            } else {
+                missing.computeIfAbsent(key, k -> {
+                    missingHashes.add(hash);
+                    return new ArrayList<>();
+                }).add(message);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        for (ContextBlob blob : contextBlobRepository.findAll(missingHashes)) {
+            String key = HEX.formatHex(blob.hash());
+            blobs.put(key, blob.text());
+            List<ChatMessage> waiting = missing.remove(key);
+            if (waiting != null) {
+                waiting.forEach(message -> message.resolveContext(blob.text()));
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Context blobs not found: " + missing.keySet());
+        }
+    }
+
+    static byte[] hash(String context) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(context.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+    }
+}
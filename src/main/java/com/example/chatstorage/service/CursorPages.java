@@ -0,0 +1,62 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.dto.CursorDirection;
+import com.example.chatstorage.dto.CursorPagedResponse;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+final class CursorPages {
+
+    private CursorPages() {
+    }
+
+    static KeysetCursor decode(String cursor) {
+        return (cursor != null && !cursor.isBlank()) ? KeysetCursor.decode(cursor) : null;
+    }
+
+    static void validateSize(int size) {
+        if (size <= 0 || size > 100) {
+            throw new IllegalArgumentException("Page size must be between 1 and 100");
+        }
+    }
+
+    static <E, R> CursorPagedResponse<R> toResponse(List<E> rows, int size, String cursor, CursorDirection direction,
+                                                    Function<E, KeysetCursor> keyOf, Function<E, R> mapper,
+                                                    Long total) {
+        boolean hasPosition = cursor != null && !cursor.isBlank();
+        boolean hasMore = rows.size() > size;
+        List<E> page = new ArrayList<>(hasMore ? rows.subList(0, size) : rows);
+        boolean hasNext;
+        boolean hasPrevious;
+        if (direction == CursorDirection.PREVIOUS) {
+            Collections.reverse(page);
+            hasPrevious = hasMore;
+            hasNext = hasPosition;
+        } else {
+            hasNext = hasMore;
+            hasPrevious = hasPosition;
+        }
+
+        String nextCursor;
+        String previousCursor;
+        if (page.isEmpty()) {
+            nextCursor = direction == CursorDirection.NEXT && hasPosition ? cursor : null;
+            previousCursor = direction == CursorDirection.PREVIOUS && hasPosition ? cursor : null;
+        } else {
+            nextCursor = keyOf.apply(page.get(page.size() - 1)).encode();
+            previousCursor = keyOf.apply(page.get(0)).encode();
+        }
+        return new CursorPagedResponse<>(
+                page.stream().map(mapper).toList(),
+                size,
+                nextCursor,
+                previousCursor,
+                hasNext,
+                hasPrevious,
+                total
+        );
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.EmbeddingProperties;
+import com.example.chatstorage.repository.ChatMessageEmbeddingRepository;
+import com.example.chatstorage.repository.EmbeddingRow;
+import com.example.chatstorage.transaction.AfterCommit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Per-user HNSW indexes, built from the database on first use (or at startup for recently active users)
+// and kept current by local appends plus a periodic catch-up for rows written through other replicas.
+@Component
+public class EmbeddingIndex {
+
+    static final String CACHE_NAME = "embedding-index";
+
+    private static final Logger logger = LogManager.getLogger(EmbeddingIndex.class);
+    // Rows committed out of created_at order can land behind the watermark; re-reading a short overlap
+    // catches them and already-indexed messages are skipped.
+    private static final Duration CATCH_UP_OVERLAP = Duration.ofSeconds(5);
+    private static final OffsetDateTime EPOCH = OffsetDateTime.of(1970, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+
+    private final EmbeddingProperties properties;
+    private final ChatMessageEmbeddingRepository embeddingRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Cache<String, UserIndex> indexes;
+    private final long refreshIntervalNanos;
+
+    public EmbeddingIndex(EmbeddingProperties properties, ChatMessageEmbeddingRepository embeddingRepository,
+                          TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        if (properties.getDimensions() <= 0) {
+            throw new IllegalStateException("embeddings.dimensions must be greater than zero");
+        }
+        this.properties = properties;
+        this.embeddingRepository = embeddingRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.readOnlyTransaction.setReadOnly(true);
+        this.refreshIntervalNanos = properties.getRefreshInterval().toNanos();
+        this.indexes = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumSize().toBytes())
+                .weigher((String userId, UserIndex index) -> (int) Math.min(Integer.MAX_VALUE, index.weight))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, indexes, CACHE_NAME);
+        Gauge.builder("chatstorage.embedding.index.bytes", this, EmbeddingIndex::weightedBytes)
+                .description("Estimated memory held by in-process embedding indexes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    List<HnswIndex.Match> search(String userId, UUID sessionId, float[] vector, int k) {
+        UserIndex index = indexFor(userId);
+        index.catchUpIfDue();
+        List<HnswIndex.Match> matches = sessionId != null
+                ? index.graph.searchSession(sessionId, vector, k)
+                : index.graph.search(vector, k, properties.getEfSearch());
+        reweigh(userId, index);
+        return matches;
+    }
+
+    // Called after commit; users without a resident index pick the rows up when their index is built.
+    public void add(String userId, List<EmbeddingRow> rows) {
+        UserIndex index = indexes.getIfPresent(userId);
+        if (index != null) {
+            rows.forEach(index::add);
+            reweigh(userId, index);
+        }
+    }
+
+    public void removeSession(String userId, UUID sessionId) {
+        AfterCommit.run(() -> removeSessionNow(userId, sessionId));
+    }
+
+    private void removeSessionNow(String userId, UUID sessionId) {
+        UserIndex index = indexes.getIfPresent(userId);
+        if (index != null) {
+            index.graph.removeSession(sessionId);
+        }
+    }
+
+    // Called after commit with the session's embeddings as written back; the index may still hold them from
+    // before the session was removed.
+    public void restoreSession(String userId, UUID sessionId, List<EmbeddingRow> rows) {
+        UserIndex index = indexes.getIfPresent(userId);
+        if (index != null) {
+            index.graph.restoreSession(sessionId);
+            rows.forEach(index::add);
+            reweigh(userId, index);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (!properties.isEnabled() || properties.getPreloadUsers() <= 0) {
+            return;
+        }
+        Thread.ofPlatform().name("embedding-preload").daemon().start(() -> {
+            try {
+                OffsetDateTime since = OffsetDateTime.now(ZoneOffset.UTC).minus(properties.getPreloadWindow());
+                List<String> users = embeddingRepository.findRecentlyActiveUsers(since, properties.getPreloadUsers());
+                for (String userId : users) {
+                    indexFor(userId);
+                }
+                logger.info("Preloaded embedding indexes for {} users", users.size());
+            } catch (DataAccessException ex) {
+                logger.warn("Embedding index preload failed, indexes will be built on first use: {}", ex.getMessage());
+            }
+        });
+    }
+
+    private UserIndex indexFor(String userId) {
+        UserIndex index = indexes.getIfPresent(userId);
+        if (index != null) {
+            return index;
+        }
+        // Built outside the cache's compute lock so a slow load never blocks other users' lookups.
+        UserIndex loaded = new UserIndex(userId);
+        loaded.catchUp();
+        UserIndex existing = indexes.asMap().putIfAbsent(userId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private void reweigh(String userId, UserIndex index) {
+        long weight = index.graph.estimatedBytes();
+        if (weight != index.weight) {
+            index.weight = weight;
+            indexes.asMap().replace(userId, index, index);
+        }
+    }
+
+    private double weightedBytes() {
+        return indexes.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L);
+    }
+
+    private final class UserIndex {
+
+        private final String userId;
+        private final HnswIndex graph;
+        private final ReentrantLock catchUpLock = new ReentrantLock();
+        private volatile OffsetDateTime watermark = EPOCH;
+        private volatile long caughtUpAt;
+        private volatile long weight;
+
+        private UserIndex(String userId) {
+            this.userId = userId;
+            this.graph = new HnswIndex(properties.getDimensions(), properties.getM(), properties.getEfConstruction());
+            this.weight = graph.estimatedBytes();
+        }
+
+        private void add(EmbeddingRow row) {
+            graph.add(row.messageId(), row.sessionId(), row.createdAt(), row.vector());
+        }
+
+        private void catchUpIfDue() {
+            if (System.nanoTime() - caughtUpAt >= refreshIntervalNanos && catchUpLock.tryLock()) {
+                try {
+                    catchUp();
+                } finally {
+                    catchUpLock.unlock();
+                }
+            }
+        }
+
+        private void catchUp() {
+            long started = System.nanoTime();
+            OffsetDateTime since = watermark == EPOCH ? EPOCH : watermark.minus(CATCH_UP_OVERLAP);
+            readOnlyTransaction.executeWithoutResult(status -> embeddingRepository.streamByUser(userId, since, row -> {
+                if (row.vector().length == graph.dimensions() && !graph.contains(row.messageId())) {
+                    add(row);
+                }
+                if (row.createdAt().isAfter(watermark)) {
+                    watermark = row.createdAt();
+                }
+            }));
+            caughtUpAt = started;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.EmbeddingProperties;
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.dto.ChatMessageCreateRequest;
+import com.example.chatstorage.repository.ChatMessageEmbeddingRepository;
+import com.example.chatstorage.repository.EmbeddingRow;
+import com.example.chatstorage.transaction.AfterCommit;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+@Service
+public class EmbeddingService {
+
+    private final EmbeddingProperties properties;
+    private final ChatMessageEmbeddingRepository embeddingRepository;
+    private final EmbeddingIndex embeddingIndex;
+
+    public EmbeddingService(EmbeddingProperties properties, ChatMessageEmbeddingRepository embeddingRepository,
+                            EmbeddingIndex embeddingIndex) {
+        this.properties = properties;
+        this.embeddingRepository = embeddingRepository;
+        this.embeddingIndex = embeddingIndex;
+    }
+
+    public void validate(List<ChatMessageCreateRequest> requests) {
+        for (ChatMessageCreateRequest request : requests) {
+            if (request.getEmbedding() != null) {
+                validateVector(request.getEmbedding());
+            }
+        }
+    }
+
+    // Must run inside the transaction that saved the messages; the index only sees them after commit.
+    public void store(String userId, UUID sessionId, List<ChatMessage> messages,
+                      List<ChatMessageCreateRequest> requests) {
+        List<EmbeddingRow> rows = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            float[] embedding = requests.get(i).getEmbedding();
+            if (embedding != null) {
+                ChatMessage message = messages.get(i);
+                rows.add(new EmbeddingRow(message.getId(), sessionId, userId, message.getCreatedAt(), embedding));
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+        embeddingRepository.insertAll(rows);
+        AfterCommit.run(() -> embeddingIndex.add(userId, rows));
+    }
+
+    public List<HnswIndex.Match> findSimilar(String userId, UUID sessionId, float[] vector, int k) {
+        validateVector(vector);
+        if (k <= 0 || k > properties.getMaxResults()) {
+            throw new IllegalArgumentException("k must be between 1 and " + properties.getMaxResults());
+        }
+        return embeddingIndex.search(userId, sessionId, vector, k);
+    }
+
+    private void validateVector(float[] vector) {
+        if (!properties.isEnabled()) {
+            throw new IllegalArgumentException("Embeddings are disabled");
+        }
+        if (vector.length != properties.getDimensions()) {
+            throw new IllegalArgumentException("Embedding must have " + properties.getDimensions() + " dimensions");
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0 || !Double.isFinite(norm)) {
+            throw new IllegalArgumentException("Embedding must be finite and non-zero");
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.example.chatstorage.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Hierarchical navigable small world graph over unit-normalised vectors, scored by cosine similarity.
+// Vectors live in a direct buffer so large indexes stay off the Java heap; the graph itself is on-heap.
+// Deleted sessions are filtered out of results but their nodes keep serving as routing points.
+final class HnswIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NODE_OVERHEAD_BYTES = 160;
+
+    private static final Comparator<Candidate> NEAREST_FIRST = Comparator.comparingDouble(Candidate::distance);
+    private static final Comparator<Candidate> FURTHEST_FIRST = NEAREST_FIRST.reversed();
+
+    private final int dimensions;
+    private final int m;
+    private final int maxConnectionsLayer0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private FloatBuffer vectors;
+    // links[node][layer] holds the neighbour count at index 0 followed by the neighbour node ids.
+    private int[][][] links;
+    private UUID[] messageIds;
+    private UUID[] sessionIds;
+    private OffsetDateTime[] createdAts;
+    private final Map<UUID, Integer> nodesByMessage = new HashMap<>();
+    private final Map<UUID, List<Integer>> nodesBySession = new HashMap<>();
+    private final Set<UUID> deletedSessions = new HashSet<>();
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    // createdAt is the message's, which locates its partition.
+    record Match(UUID messageId, UUID sessionId, OffsetDateTime createdAt, float score) {
+    }
+
+    private record Candidate(int node, double distance) {
+    }
+
+    HnswIndex(int dimensions, int m, int efConstruction) {
+        if (dimensions <= 0 || m < 2 || efConstruction < m) {
+            throw new IllegalArgumentException("dimensions must be positive, m at least 2 and efConstruction at least m");
+        }
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxConnectionsLayer0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        allocate(INITIAL_CAPACITY);
+    }
+
+    boolean add(UUID messageId, UUID sessionId, OffsetDateTime createdAt, float[] vector) {
+        float[] query = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            if (nodesByMessage.containsKey(messageId)) {
+                return false;
+            }
+            if (size == messageIds.length) {
+                allocate(size * 2);
+            }
+            int node = size++;
+            vectors.put(node * dimensions, query);
+            messageIds[node] = messageId;
+            sessionIds[node] = sessionId;
+            createdAts[node] = createdAt;
+            nodesByMessage.put(messageId, node);
+            nodesBySession.computeIfAbsent(sessionId, id -> new ArrayList<>()).add(node);
+
+            int level = randomLevel();
+            links[node] = new int[level + 1][];
+            for (int layer = 0; layer <= level; layer++) {
+                links[node][layer] = new int[maxConnections(layer) + 1];
+            }
+            if (entryPoint < 0) {
+                entryPoint = node;
+                maxLevel = level;
+                return true;
+            }
+
+            int nearest = entryPoint;
+            for (int layer = maxLevel; layer > level; layer--) {
+                nearest = greedyClosest(query, nearest, layer);
+            }
+            for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+                List<Candidate> found = sortedNearestFirst(searchLayer(query, nearest, efConstruction, layer));
+                for (Candidate neighbour : found.subList(0, Math.min(m, found.size()))) {
+                    connect(node, neighbour.node(), layer);
+                    connect(neighbour.node(), node, layer);
+                }
+                nearest = found.get(0).node();
+            }
+            if (level > maxLevel) {
+                maxLevel = level;
+                entryPoint = node;
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<Match> search(float[] vector, int k, int ef) {
+        float[] query = normalize(vector);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return List.of();
+            }
+            int nearest = entryPoint;
+            for (int layer = maxLevel; layer > 0; layer--) {
+                nearest = greedyClosest(query, nearest, layer);
+            }
+            // Widen the beam when tombstoned nodes may crowd out live ones.
+            int beam = Math.max(ef, k) * (deletedSessions.isEmpty() ? 1 : 2);
+            List<Match> matches = new ArrayList<>(k);
+            for (Candidate candidate : sortedNearestFirst(searchLayer(query, nearest, beam, 0))) {
+                if (!deletedSessions.contains(sessionIds[candidate.node()])) {
+                    matches.add(toMatch(candidate));
+                    if (matches.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A session holds few enough messages that an exact scan is both faster and exact.
+    List<Match> searchSession(UUID sessionId, float[] vector, int k) {
+        float[] query = normalize(vector);
+        lock.readLock().lock();
+        try {
+            List<Integer> nodes = nodesBySession.get(sessionId);
+            if (nodes == null || deletedSessions.contains(sessionId)) {
+                return List.of();
+            }
+            PriorityQueue<Candidate> best = new PriorityQueue<>(k + 1, FURTHEST_FIRST);
+            for (int node : nodes) {
+                best.add(new Candidate(node, distance(query, node)));
+                if (best.size() > k) {
+                    best.poll();
+                }
+            }
+            return sortedNearestFirst(best).stream().map(this::toMatch).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void removeSession(UUID sessionId) {
+        lock.writeLock().lock();
+        try {
+            deletedSessions.add(sessionId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Lifts removeSession for a session whose messages came back, e.g. from the archive. Their nodes are still in
+    // the graph, so adding them again would be a no-op.
+    void restoreSession(UUID sessionId) {
+        lock.writeLock().lock();
+        try {
+            deletedSessions.remove(sessionId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean contains(UUID messageId) {
+        lock.readLock().lock();
+        try {
+            return nodesByMessage.containsKey(messageId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long vectorBytes = (long) messageIds.length * dimensions * Float.BYTES;
+            long linkBytes = (long) size * (maxConnectionsLayer0 + 1) * Integer.BYTES * 2;
+            return vectorBytes + linkBytes + (long) size * NODE_OVERHEAD_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    private PriorityQueue<Candidate> searchLayer(float[] query, int start, int ef, int layer) {
+        BitSet visited = new BitSet(size);
+        visited.set(start);
+        Candidate first = new Candidate(start, distance(query, start));
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(ef + 1, FURTHEST_FIRST);
+        candidates.add(first);
+        results.add(first);
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.distance() > results.peek().distance()) {
+                break;
+            }
+            int[] neighbours = links[current.node()][layer];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                double distance = distance(query, neighbour);
+                if (results.size() < ef || distance < results.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbour, distance);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    private int greedyClosest(float[] query, int start, int layer) {
+        int current = start;
+        double currentDistance = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[current][layer];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                double distance = distance(query, neighbours[i]);
+                if (distance < currentDistance) {
+                    current = neighbours[i];
+                    currentDistance = distance;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    private void connect(int from, int to, int layer) {
+        int[] neighbours = links[from][layer];
+        int count = neighbours[0];
+        if (count < neighbours.length - 1) {
+            neighbours[count + 1] = to;
+            neighbours[0] = count + 1;
+            return;
+        }
+        // Full: keep the closest neighbours, which may or may not include the new one.
+        Candidate[] all = new Candidate[count + 1];
+        for (int i = 0; i < count; i++) {
+            all[i] = new Candidate(neighbours[i + 1], distance(from, neighbours[i + 1]));
+        }
+        all[count] = new Candidate(to, distance(from, to));
+        Arrays.sort(all, NEAREST_FIRST);
+        for (int i = 0; i < count; i++) {
+            neighbours[i + 1] = all[i].node();
+        }
+    }
+
+    private double distance(float[] query, int node) {
+        int base = node * dimensions;
+        double dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += query[i] * vectors.get(base + i);
+        }
+        return 1 - dot;
+    }
+
+    private double distance(int a, int b) {
+        int baseA = a * dimensions;
+        int baseB = b * dimensions;
+        double dot = 0;
+        for (int i = 0; i < dimensions; i++) {
+            dot += vectors.get(baseA + i) * vectors.get(baseB + i);
+        }
+        return 1 - dot;
+    }
+
+    private Match toMatch(Candidate candidate) {
+        return new Match(messageIds[candidate.node()], sessionIds[candidate.node()], createdAts[candidate.node()],
+                (float) (1 - candidate.distance()));
+    }
+
+    private int maxConnections(int layer) {
+        return layer == 0 ? maxConnectionsLayer0 : m;
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier);
+    }
+
+    private void allocate(int capacity) {
+        FloatBuffer grown = ByteBuffer.allocateDirect(capacity * dimensions * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        if (vectors != null) {
+            grown.put(0, vectors, 0, size * dimensions);
+        }
+        vectors = grown;
+        links = links == null ? new int[capacity][][] : Arrays.copyOf(links, capacity);
+        messageIds = messageIds == null ? new UUID[capacity] : Arrays.copyOf(messageIds, capacity);
+        sessionIds = sessionIds == null ? new UUID[capacity] : Arrays.copyOf(sessionIds, capacity);
+        createdAts = createdAts == null ? new OffsetDateTime[capacity] : Arrays.copyOf(createdAts, capacity);
+    }
+
+    private float[] normalize(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Embedding must have " + dimensions + " dimensions");
+        }
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm == 0 || !Double.isFinite(norm)) {
+            throw new IllegalArgumentException("Embedding must be finite and non-zero");
+        }
+        double scale = 1 / Math.sqrt(norm);
+        float[] normalized = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            normalized[i] = (float) (vector[i] * scale);
+        }
+        return normalized;
+    }
+
+    private static List<Candidate> sortedNearestFirst(PriorityQueue<Candidate> queue) {
+        List<Candidate> sorted = new ArrayList<>(queue);
+        sorted.sort(NEAREST_FIRST);
+        return sorted;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.chatstorage.service;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.UUID;
+
+public record KeysetCursor(OffsetDateTime timestamp, UUID id) {
+
+    // PostgreSQL orders uuid as unsigned bytes; UUID.compareTo compares signed longs and disagrees with it
+    // whenever the top bit of either half differs.
+    public static final Comparator<UUID> ID_ORDER = (left, right) -> {
+        int byHigh = Long.compareUnsigned(left.getMostSignificantBits(), right.getMostSignificantBits());
+        return byHigh != 0 ? byHigh
+                : Long.compareUnsigned(left.getLeastSignificantBits(), right.getLeastSignificantBits());
+    };
+
+    private static final int ENCODED_LENGTH = Long.BYTES + Integer.BYTES + Long.BYTES * 2;
+
+    public String encode() {
+        Instant instant = timestamp.toInstant();
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_LENGTH)
+                .putLong(instant.getEpochSecond())
+                .putInt(instant.getNano())
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static KeysetCursor decode(String token) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Cursor is malformed");
+        }
+        if (bytes.length != ENCODED_LENGTH) {
+            throw new IllegalArgumentException("Cursor is malformed");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long seconds = buffer.getLong();
+        int nanos = buffer.getInt();
+        if (nanos < 0 || nanos > 999_999_999) {
+            throw new IllegalArgumentException("Cursor is malformed");
+        }
+        OffsetDateTime timestamp = OffsetDateTime.ofInstant(Instant.ofEpochSecond(seconds, nanos), ZoneOffset.UTC);
+        return new KeysetCursor(timestamp, new UUID(buffer.getLong(), buffer.getLong()));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.repository.ArchiveLocation;
+import com.example.chatstorage.repository.ArchivedMessage;
+import com.example.chatstorage.repository.ChatMessageEmbeddingRepository;
+import com.example.chatstorage.repository.EmbeddingRow;
+import com.example.chatstorage.repository.SessionArchiveRepository;
+import com.example.chatstorage.transaction.AfterCommit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+// Read and restore side of the archive. Archived sessions have no rows in chat_messages; their messages are
+// served from the session's segment record, and written back to the table, embeddings included, when the
+// session is appended to.
+@Component
+public class MessageArchive {
+
+    private static final Logger logger = LogManager.getLogger(MessageArchive.class);
+
+    private final SessionArchiveRepository sessionArchiveRepository;
+    private final ArchiveSegments archiveSegments;
+    private final ContextBlobStore contextBlobStore;
+    private final MessageTailCache messageTailCache;
+    private final ChatMessageEmbeddingRepository embeddingRepository;
+    private final EmbeddingIndex embeddingIndex;
+
+    public MessageArchive(SessionArchiveRepository sessionArchiveRepository, ArchiveSegments archiveSegments,
+                          ContextBlobStore contextBlobStore, MessageTailCache messageTailCache,
+                          ChatMessageEmbeddingRepository embeddingRepository, EmbeddingIndex embeddingIndex) {
+        this.sessionArchiveRepository = sessionArchiveRepository;
+        this.archiveSegments = archiveSegments;
+        this.contextBlobStore = contextBlobStore;
+        this.messageTailCache = messageTailCache;
+        this.embeddingRepository = embeddingRepository;
+        this.embeddingIndex = embeddingIndex;
+    }
+
+    // The session's messages in (created_at, id) order, or empty if the session is not archived.
+    Optional<List<ChatMessageResponse>> find(UUID sessionId) {
+        return sessionArchiveRepository.find(sessionId).map(archiveSegments::read);
+    }
+
+    // Runs in the writing transaction, so a failed append leaves the session archived.
+    boolean restore(UUID sessionId, String userId) {
+        if (!sessionArchiveRepository.unmarkArchived(sessionId, userId)) {
+            return false;
+        }
+        Optional<ArchiveLocation> location = sessionArchiveRepository.find(sessionId);
+        if (location.isPresent()) {
+            ArchiveSegments.ArchivedSession session = archiveSegments.readSession(location.get());
+            List<ChatMessageResponse> messages = session.messages();
+            List<byte[]> hashes = contextBlobStore.acquire(messages.stream().map(ChatMessageResponse::getContext).toList());
+            List<ArchivedMessage> rows = new ArrayList<>(messages.size());
+            for (int i = 0; i < messages.size(); i++) {
+                ChatMessageResponse message = messages.get(i);
+                rows.add(new ArchivedMessage(message.getId(), message.getSender().name(), message.getContent(),
+                        hashes.get(i), message.getCreatedAt()));
+            }
+            sessionArchiveRepository.insertMessages(sessionId, rows);
+            restoreEmbeddings(sessionId, userId, messages, session.embeddings());
+            sessionArchiveRepository.deleteLocation(sessionId);
+            logger.info("Restored archived session {} ({} messages)", sessionId, rows.size());
+        }
+        messageTailCache.invalidate(sessionId);
+        return true;
+    }
+
+    private void restoreEmbeddings(UUID sessionId, String userId, List<ChatMessageResponse> messages,
+                                   Map<UUID, float[]> embeddings) {
+        List<EmbeddingRow> rows = new ArrayList<>();
+        for (ChatMessageResponse message : messages) {
+            float[] vector = embeddings.get(message.getId());
+            if (vector != null) {
+                rows.add(new EmbeddingRow(message.getId(), sessionId, userId, message.getCreatedAt(), vector));
+            }
+        }
+        if (!rows.isEmpty()) {
+            embeddingRepository.insertAll(rows);
+        }
+        AfterCommit.run(() -> embeddingIndex.restoreSession(userId, sessionId, rows));
+    }
+}
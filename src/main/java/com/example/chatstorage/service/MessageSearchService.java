@@ -0,0 +1,119 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.domain.SenderType;
+import com.example.chatstorage.dto.CursorPagedResponse;
+import com.example.chatstorage.dto.SearchHitResponse;
+import com.example.chatstorage.dto.SearchHitType;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.repository.SearchRow;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Service
+public class MessageSearchService {
+
+    static final int MAX_QUERY_LENGTH = 256;
+
+    // Private-use characters survive HTML escaping, so only the highlight markers become markup.
+    private static final String START_SEL = "\uE000";
+    private static final String STOP_SEL = "\uE001";
+    private static final String HEADLINE_OPTIONS = "StartSel=" + START_SEL + ", StopSel=" + STOP_SEL
+            + ", MaxWords=35, MinWords=15, MaxFragments=2, FragmentDelimiter=\" ... \"";
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ContextBlobStore contextBlobStore;
+
+    public MessageSearchService(ChatMessageRepository chatMessageRepository, ContextBlobStore contextBlobStore) {
+        this.chatMessageRepository = chatMessageRepository;
+        this.contextBlobStore = contextBlobStore;
+    }
+
+    @Transactional(readOnly = true)
+    public CursorPagedResponse<SearchHitResponse> search(String userId, String query, String cursor, int size) {
+        String trimmed = query != null ? query.strip() : "";
+        if (trimmed.isEmpty()) {
+            throw new IllegalArgumentException("Search query must not be blank");
+        }
+        if (trimmed.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Search query must be at most " + MAX_QUERY_LENGTH + " characters");
+        }
+        CursorPages.validateSize(size);
+        SearchCursor position = (cursor != null && !cursor.isBlank()) ? SearchCursor.decode(cursor) : null;
+
+        List<SearchRow> rows = chatMessageRepository.search(userId, trimmed,
+                position != null ? position.score() : null, position != null ? position.id() : null,
+                HEADLINE_OPTIONS, size + 1);
+        boolean hasNext = rows.size() > size;
+        List<SearchRow> page = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = page.isEmpty()
+                ? cursor
+                : new SearchCursor(page.get(page.size() - 1).score(), page.get(page.size() - 1).id()).encode();
+        Map<UUID, String> contextSnippets = contextSnippets(page, trimmed);
+        return new CursorPagedResponse<>(
+                page.stream()
+                        .map(row -> toResponse(row, contextSnippets.getOrDefault(row.id(), row.snippet())))
+                        .toList(),
+                size,
+                nextCursor,
+                null,
+                hasNext,
+                position != null,
+                null
+        );
+    }
+
+    // Hits that matched only through their context have no snippet yet. The context may be compressed or in a
+    // blob, so it is resolved here and highlighted as text; a message without one falls back to its content.
+    private Map<UUID, String> contextSnippets(List<SearchRow> page, String query) {
+        List<SearchRow> contextHits = page.stream()
+                .filter(row -> row.snippet() == null && SearchHitType.valueOf(row.kind()) == SearchHitType.MESSAGE)
+                .toList();
+        if (contextHits.isEmpty()) {
+            return Map.of();
+        }
+        List<ChatMessage> messages = chatMessageRepository.findLive(contextHits.stream().map(SearchRow::id).toList(),
+                contextHits.stream().map(SearchRow::createdAt).collect(Collectors.toSet()));
+        contextBlobStore.resolve(messages);
+        List<String> headlines = chatMessageRepository.headlines(messages.stream()
+                .map(message -> message.getContext() != null ? message.getContext() : message.getContent())
+                .toList(), query, HEADLINE_OPTIONS);
+        Map<UUID, String> snippets = new HashMap<>();
+        for (int i = 0; i < messages.size(); i++) {
+            snippets.put(messages.get(i).getId(), headlines.get(i));
+        }
+        return snippets;
+    }
+
+    private static SearchHitResponse toResponse(SearchRow row, String snippet) {
+        SearchHitResponse response = new SearchHitResponse();
+        SearchHitType type = SearchHitType.valueOf(row.kind());
+        response.setType(type);
+        response.setSessionId(row.sessionId());
+        response.setSessionTitle(row.sessionTitle());
+        if (type == SearchHitType.MESSAGE) {
+            response.setMessageId(row.id());
+            response.setSender(SenderType.valueOf(row.sender()));
+        }
+        response.setCreatedAt(row.createdAt());
+        response.setScore(row.score());
+        response.setSnippet(highlight(snippet));
+        return response;
+    }
+
+    static String highlight(String headline) {
+        if (headline == null) {
+            return null;
+        }
+        return HtmlUtils.htmlEscape(headline)
+                .replace(START_SEL, "<mark>")
+                .replace(STOP_SEL, "</mark>");
+    }
+}
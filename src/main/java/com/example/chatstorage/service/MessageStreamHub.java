@@ -0,0 +1,523 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.MessageStreamProperties;
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.mapper.ChatMessageMapper;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.repository.ChatSessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Fans committed messages out to the SSE subscribers of their session. An idle subscription is an emitter and an
+// empty queue: nothing runs for it until a message or heartbeat arrives. A subscriber is drained by at most one
+// dispatcher thread at a time, and one whose queue fills up is disconnected rather than allowed to hold back the
+// others; the client reconnects and resumes from its Last-Event-ID. A write that blocks for longer than
+// message-stream.send-timeout drops the subscriber too, and a replacement dispatcher thread is started so the
+// remaining subscribers keep their share until the stalled write fails. Replays read the database on their own
+// threads and hand their messages to the dispatcher. Live messages are sent in the order of their per-session
+// numbers, whatever order they arrive in, so a client that reconnects after any message has received all before it.
+@Component
+public class MessageStreamHub implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(MessageStreamHub.class);
+    private static final int REPLAY_BATCH_SIZE = 100;
+    private static final long STALL_CHECK_INTERVAL_MS = 1_000;
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatSessionRepository chatSessionRepository;
+    private final ContextBlobStore contextBlobStore;
+    private final ChatMessageMapper chatMessageMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageStreamProperties properties;
+    private final Map<UUID, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    // Subscribers with a write in progress, watched for stalls whether or not they are still registered.
+    private final Set<Subscriber> writing = ConcurrentHashMap.newKeySet();
+    // Platform threads: SseEmitter sends while holding its monitor, which would pin a virtual thread for as long
+    // as a slow client's socket stays full.
+    private final ThreadPoolExecutor dispatcher;
+    private final ExecutorService replayer;
+    private final long sendTimeoutNanos;
+    private final Counter eventsSent;
+    private final Counter slowSubscribersDropped;
+
+    public MessageStreamHub(ChatMessageRepository chatMessageRepository,
+                            ChatSessionRepository chatSessionRepository,
+                            ContextBlobStore contextBlobStore,
+                            ChatMessageMapper chatMessageMapper,
+                            TransactionTemplate transactionTemplate,
+                            MessageStreamProperties properties,
+                            MeterRegistry meterRegistry) {
+        if (properties.getBufferSize() <= 0 || properties.getResumeLimit() <= 0
+                || properties.getDispatchThreads() <= 0 || properties.getReplayThreads() <= 0
+                || !properties.getSendTimeout().isPositive()) {
+            throw new IllegalStateException("message-stream.buffer-size, message-stream.resume-limit,"
+                    + " message-stream.dispatch-threads, message-stream.replay-threads and"
+                    + " message-stream.send-timeout must be greater than zero");
+        }
+        this.chatMessageRepository = chatMessageRepository;
+        this.chatSessionRepository = chatSessionRepository;
+        this.contextBlobStore = contextBlobStore;
+        this.chatMessageMapper = chatMessageMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.dispatcher = new ThreadPoolExecutor(properties.getDispatchThreads(), properties.getDispatchThreads(),
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                Thread.ofPlatform().name("message-stream-", 0).daemon().factory());
+        this.replayer = Executors.newFixedThreadPool(properties.getReplayThreads(),
+                Thread.ofPlatform().name("message-stream-replay-", 0).daemon().factory());
+        this.sendTimeoutNanos = properties.getSendTimeout().toNanos();
+        Gauge.builder("chatstorage.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open message stream subscriptions on this node")
+                .register(meterRegistry);
+        this.eventsSent = Counter.builder("chatstorage.stream.events.sent")
+                .description("Messages written to stream subscribers")
+                .register(meterRegistry);
+        this.slowSubscribersDropped = Counter.builder("chatstorage.stream.subscribers.dropped")
+                .description("Stream subscribers disconnected because their buffer filled up or a write stalled")
+                .register(meterRegistry);
+    }
+
+    // Messages after resumeAfter are replayed from the database before any live message is sent. Without it, the
+    // stream starts after the session's last committed message.
+    public SseEmitter subscribe(UUID sessionId, KeysetCursor resumeAfter) {
+        SseEmitter emitter = new SseEmitter(properties.getTimeout().toMillis());
+        subscribe(sessionId, resumeAfter, emitter);
+        return emitter;
+    }
+
+    void subscribe(UUID sessionId, KeysetCursor resumeAfter, SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(sessionId, emitter);
+        emitter.onCompletion(() -> unregister(subscriber));
+        emitter.onError(error -> unregister(subscriber));
+        emitter.onTimeout(subscriber::complete);
+        subscribers.compute(sessionId, (key, watching) -> {
+            Set<Subscriber> updated = watching != null ? watching : ConcurrentHashMap.newKeySet();
+            updated.add(subscriber);
+            return updated;
+        });
+        subscriberCount.incrementAndGet();
+        subscriber.schedule();
+        try {
+            replayer.execute(() -> subscriber.replay(resumeAfter));
+        } catch (RejectedExecutionException ex) {
+            disconnect(subscriber);
+        }
+    }
+
+    // Never blocks: messages are queued and written by the dispatcher.
+    public void publish(UUID sessionId, List<SequencedMessage> messages) {
+        Set<Subscriber> watching = subscribers.get(sessionId);
+        if (watching == null || messages.isEmpty()) {
+            return;
+        }
+        for (Subscriber subscriber : watching) {
+            subscriber.offer(messages);
+        }
+    }
+
+    public boolean hasSubscribers(UUID sessionId) {
+        return subscribers.containsKey(sessionId);
+    }
+
+    // Heartbeats keep proxies from closing idle streams and reveal clients that went away without closing theirs.
+    @Scheduled(fixedDelayString = "${message-stream.heartbeat-interval-ms:30000}")
+    public void sendHeartbeats() {
+        for (Set<Subscriber> watching : subscribers.values()) {
+            for (Subscriber subscriber : watching) {
+                subscriber.heartbeatDue = true;
+                subscriber.schedule();
+            }
+        }
+    }
+
+    // The stalled write itself only returns when the client reads again or the container's write timeout fails it.
+    @Scheduled(fixedDelay = STALL_CHECK_INTERVAL_MS)
+    public void dropStalledSubscribers() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : writing) {
+            if (subscriber.markStalled(now) && unregister(subscriber)) {
+                slowSubscribersDropped.increment();
+            }
+        }
+    }
+
+    // Graceful shutdown would otherwise wait for every open stream.
+    @EventListener(ContextClosedEvent.class)
+    public void disconnectAll() {
+        for (Set<Subscriber> watching : subscribers.values()) {
+            watching.forEach(this::disconnect);
+        }
+    }
+
+    @Override
+    public void close() {
+        dispatcher.shutdownNow();
+        replayer.shutdownNow();
+    }
+
+    private void disconnect(Subscriber subscriber) {
+        if (unregister(subscriber)) {
+            execute(subscriber::complete);
+        }
+    }
+
+    private boolean unregister(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        subscribers.computeIfPresent(subscriber.sessionId, (key, watching) -> {
+            watching.remove(subscriber);
+            return watching.isEmpty() ? null : watching;
+        });
+        subscriberCount.decrementAndGet();
+        return true;
+    }
+
+    private void resizeDispatcher(int delta) {
+        synchronized (dispatcher) {
+            if (delta > 0) {
+                dispatcher.setMaximumPoolSize(dispatcher.getMaximumPoolSize() + delta);
+                dispatcher.setCorePoolSize(dispatcher.getCorePoolSize() + delta);
+            } else {
+                dispatcher.setCorePoolSize(dispatcher.getCorePoolSize() + delta);
+                dispatcher.setMaximumPoolSize(dispatcher.getMaximumPoolSize() + delta);
+            }
+        }
+    }
+
+    private void execute(Runnable task) {
+        try {
+            dispatcher.execute(task);
+        } catch (RejectedExecutionException ex) {
+            // Shutting down; the container closes the connection.
+        }
+    }
+
+    // Reads the primary (the template is not read-only): a lagging replica could miss messages that committed
+    // just before the subscription, and the live feed will not deliver those either.
+    private <T> T read(Supplier<T> query) {
+        return transactionTemplate.execute(status -> query.get());
+    }
+
+    private List<ChatMessage> resolved(List<ChatMessage> rows) {
+        contextBlobStore.resolve(rows);
+        return rows;
+    }
+
+    private final class Subscriber {
+
+        private final UUID sessionId;
+        private final SseEmitter emitter;
+        private final Queue<SequencedMessage> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final Queue<ChatMessageResponse> replayQueue = new ConcurrentLinkedQueue<>();
+        private final Queue<SequencedMessage> fillQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // The first heartbeat commits the response headers, so the client sees the stream open right away.
+        private volatile boolean heartbeatDue = true;
+        // Live messages wait while the replay is loading; they are sent once it has been.
+        private volatile boolean replaying = true;
+        private volatile boolean disconnectAfterReplay;
+        // The number live messages continue from once the replay is done.
+        private volatile long replayedThrough;
+        // A read of missing numbers is in progress. filledThrough, the last number it covered, is set before
+        // filling is cleared.
+        private volatile boolean filling;
+        private volatile long filledThrough;
+        // Guarded by this subscriber's monitor, not the emitter's: the stall check must not wait on the write.
+        private long sendingSince;
+        private boolean stalled;
+        private boolean completeAfterWrite;
+        private boolean completing;
+        // Only touched by the thread draining this subscriber.
+        private boolean replayPending = true;
+        private long lastSeq;
+        private final NavigableMap<Long, ChatMessageResponse> ahead = new TreeMap<>();
+
+        private Subscriber(UUID sessionId, SseEmitter emitter) {
+            this.sessionId = sessionId;
+            this.emitter = emitter;
+        }
+
+        private void offer(List<SequencedMessage> messages) {
+            if (closed.get()) {
+                return;
+            }
+            if (queued.addAndGet(messages.size()) > properties.getBufferSize()) {
+                slowSubscribersDropped.increment();
+                disconnect(this);
+                return;
+            }
+            queue.addAll(messages);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!closed.get() && scheduled.compareAndSet(false, true)) {
+                execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                if (heartbeatDue) {
+                    heartbeatDue = false;
+                    write(SseEmitter.event().comment(""));
+                }
+                sendReplayed();
+                if (!replaying) {
+                    // Read after the replay finished, so this sees every page it queued.
+                    sendReplayed();
+                    if (replayPending) {
+                        replayPending = false;
+                        lastSeq = replayedThrough;
+                        if (disconnectAfterReplay) {
+                            disconnect(this);
+                        }
+                    }
+                    sendLive();
+                }
+            } catch (IOException | IllegalStateException ex) {
+                // The client went away; the container completes the emitter.
+                unregister(this);
+            } finally {
+                scheduled.set(false);
+            }
+            if (heartbeatDue || !replayQueue.isEmpty() || (!replaying
+                    && (replayPending || !queue.isEmpty() || (!filling && filledThrough > lastSeq)))) {
+                schedule();
+            }
+        }
+
+        private void sendReplayed() throws IOException {
+            ChatMessageResponse message;
+            while (!closed.get() && (message = replayQueue.poll()) != null) {
+                send(message);
+            }
+        }
+
+        // After-commit callbacks of concurrent appends race, and messages relayed from other nodes arrive up to
+        // notify-interval-ms late, so live messages can arrive out of order. They are held until every lower
+        // number has been sent. A missing number is read from the database instead of waited for: a message is
+        // only numbered while its append holds the session row, so every lower number committed before it.
+        private void sendLive() throws IOException {
+            SequencedMessage message;
+            while ((message = queue.poll()) != null) {
+                queued.decrementAndGet();
+                // Lower numbers were sent by the replay or a fill.
+                if (message.seq() > lastSeq) {
+                    ahead.putIfAbsent(message.seq(), message.message());
+                }
+            }
+            if (filling) {
+                return;
+            }
+            while ((message = fillQueue.poll()) != null) {
+                if (message.seq() > lastSeq) {
+                    ahead.putIfAbsent(message.seq(), message.message());
+                }
+            }
+            // A number the fill did not find belongs to a message deleted since, and is skipped.
+            long through = filledThrough;
+            while (!closed.get() && !ahead.isEmpty()
+                    && (ahead.firstKey() == lastSeq + 1 || ahead.firstKey() <= through)) {
+                Map.Entry<Long, ChatMessageResponse> next = ahead.pollFirstEntry();
+                send(next.getValue());
+                lastSeq = next.getKey();
+            }
+            lastSeq = Math.max(lastSeq, through);
+            if (closed.get() || ahead.isEmpty()) {
+                return;
+            }
+            long after = lastSeq;
+            long missing = ahead.firstKey() - after - 1;
+            if (ahead.size() + missing > properties.getBufferSize()) {
+                // As far behind as a full buffer: the client resumes from its Last-Event-ID instead.
+                slowSubscribersDropped.increment();
+                disconnect(this);
+                return;
+            }
+            filling = true;
+            try {
+                replayer.execute(() -> fill(after, (int) missing));
+            } catch (RejectedExecutionException ex) {
+                disconnect(this);
+            }
+        }
+
+        // Runs on a replay thread.
+        private void fill(long after, int count) {
+            try {
+                List<ChatMessage> page = read(() -> resolved(chatMessageRepository.findAfterSeq(sessionId, after,
+                        PageRequest.of(0, count))));
+                for (ChatMessage message : page) {
+                    fillQueue.add(new SequencedMessage(message.getSeq(), chatMessageMapper.toResponse(message)));
+                }
+            } catch (DataAccessException ex) {
+                logger.warn("Reading missed messages of session {} for a stream subscriber failed: {}",
+                        sessionId, ex.getMessage());
+                disconnect(this);
+                return;
+            }
+            filledThrough = after + count;
+            filling = false;
+            schedule();
+        }
+
+        // Runs on a replay thread. Reads the session's last committed number first; live messages continue after
+        // it, as every message numbered up to it is either replayed or was sent before the client reconnected.
+        // Resumes after the number of the client's last message, so a message that committed after it is
+        // replayed even when its createdAt is earlier. If that message has no number, the unnumbered messages
+        // after it go first, then every numbered one. Replays at most resume-limit messages per connection; a
+        // subscriber further behind is disconnected once it has them and picks up the rest when it reconnects
+        // with the last id it received.
+        private void replay(KeysetCursor resumeAfter) {
+            int remaining = properties.getResumeLimit();
+            long seqAfter = 0;
+            try {
+                long committed = read(() -> chatSessionRepository.findMessageSeq(sessionId)).orElse(0L);
+                if (resumeAfter != null) {
+                    seqAfter = read(() -> chatMessageRepository.findSeq(sessionId, resumeAfter.id(),
+                            resumeAfter.timestamp())).orElse(0L);
+                    KeysetCursor unsequencedAfter = seqAfter == 0 ? resumeAfter : null;
+                    boolean more;
+                    do {
+                        PageRequest limit = PageRequest.of(0, Math.min(REPLAY_BATCH_SIZE, remaining));
+                        List<ChatMessage> page;
+                        if (unsequencedAfter != null) {
+                            KeysetCursor after = unsequencedAfter;
+                            page = read(() -> resolved(chatMessageRepository.findUnsequencedAfter(sessionId,
+                                    after.timestamp(), after.id(), limit)));
+                            ChatMessage last = page.isEmpty() ? null : page.get(page.size() - 1);
+                            unsequencedAfter = page.size() == limit.getPageSize()
+                                    ? new KeysetCursor(last.getCreatedAt(), last.getId()) : null;
+                            more = true;
+                        } else {
+                            long after = seqAfter;
+                            page = read(() -> resolved(chatMessageRepository.findAfterSeq(sessionId, after, limit)));
+                            if (!page.isEmpty()) {
+                                seqAfter = page.get(page.size() - 1).getSeq();
+                            }
+                            more = page.size() == limit.getPageSize();
+                        }
+                        for (ChatMessage message : page) {
+                            replayQueue.add(chatMessageMapper.toResponse(message));
+                        }
+                        remaining -= page.size();
+                        schedule();
+                    } while (more && remaining > 0 && !closed.get());
+                }
+                replayedThrough = Math.max(seqAfter, committed);
+            } catch (DataAccessException ex) {
+                logger.warn("Replaying session {} to a stream subscriber failed: {}", sessionId, ex.getMessage());
+                disconnect(this);
+                return;
+            }
+            disconnectAfterReplay = remaining == 0;
+            replaying = false;
+            schedule();
+        }
+
+        private void send(ChatMessageResponse message) throws IOException {
+            write(SseEmitter.event()
+                    .id(ChatMessageService.keyOf(message).encode())
+                    .name("message")
+                    .data(message, MediaType.APPLICATION_JSON));
+            eventsSent.increment();
+        }
+
+        private void write(SseEmitter.SseEventBuilder event) throws IOException {
+            synchronized (this) {
+                if (completing) {
+                    throw new IllegalStateException("Stream subscriber already completed");
+                }
+                sendingSince = System.nanoTime();
+            }
+            writing.add(this);
+            try {
+                emitter.send(event);
+            } finally {
+                writing.remove(this);
+                boolean wasStalled;
+                boolean complete;
+                synchronized (this) {
+                    sendingSince = 0;
+                    wasStalled = stalled;
+                    stalled = false;
+                    complete = completeAfterWrite;
+                }
+                if (wasStalled) {
+                    resizeDispatcher(-1);
+                }
+                if (wasStalled || complete) {
+                    complete();
+                }
+            }
+        }
+
+        // Starts a replacement dispatcher thread for the one blocked in this subscriber's write; the write hands
+        // it back when it returns.
+        private synchronized boolean markStalled(long now) {
+            if (stalled || sendingSince == 0 || now - sendingSince <= sendTimeoutNanos) {
+                return false;
+            }
+            stalled = true;
+            resizeDispatcher(1);
+            return true;
+        }
+
+        // Never waits on a write in progress: that write completes the emitter when it returns.
+        private void complete() {
+            synchronized (this) {
+                if (sendingSince != 0) {
+                    completeAfterWrite = true;
+                    return;
+                }
+                if (completing) {
+                    return;
+                }
+                completing = true;
+            }
+            try {
+                emitter.complete();
+            } catch (RuntimeException ex) {
+                // Already completed by the container.
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.MessageStreamProperties;
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.mapper.ChatMessageMapper;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.transaction.AfterCommit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Hands appended messages to the local MessageStreamHub once their transaction commits and, with
+// message-stream.notify-enabled, to the other nodes through Postgres LISTEN/NOTIFY. Notifications carry only keys,
+// as a payload is limited to 8000 bytes, and are batched every notify-interval-ms outside the append's transaction,
+// so appends never wait for the database-wide lock NOTIFY takes at commit. A node loads only the messages of
+// sessions it has subscribers for. Delivery between nodes is best effort: when the listener has to reconnect,
+// this node's subscribers are disconnected so they resume from their Last-Event-ID.
+@Component
+public class MessageStreamRelay {
+
+    static final String CHANNEL = "chat_messages";
+
+    private static final Logger logger = LogManager.getLogger(MessageStreamRelay.class);
+    private static final String NOTIFY_SQL = "SELECT pg_notify(?, ?)";
+    private static final int MAX_PAYLOAD_LENGTH = 7_900;
+    private static final int POLL_TIMEOUT_MS = 1_000;
+    private static final long MAX_RECONNECT_DELAY_MS = 30_000;
+
+    private final MessageStreamHub messageStreamHub;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ContextBlobStore contextBlobStore;
+    private final ChatMessageMapper chatMessageMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final boolean notifyEnabled;
+    private final String nodeId = UUID.randomUUID().toString();
+    // "sessionId:messageId:createdAt" entries waiting for the next flush; createdAt locates the message's partition.
+    private final Queue<String> outbound = new ConcurrentLinkedQueue<>();
+    private volatile boolean listening;
+
+    public MessageStreamRelay(MessageStreamHub messageStreamHub,
+                              ChatMessageRepository chatMessageRepository,
+                              ContextBlobStore contextBlobStore,
+                              ChatMessageMapper chatMessageMapper,
+                              TransactionTemplate transactionTemplate,
+                              JdbcTemplate jdbcTemplate,
+                              DataSourceProperties dataSourceProperties,
+                              MessageStreamProperties properties) {
+        this.messageStreamHub = messageStreamHub;
+        this.chatMessageRepository = chatMessageRepository;
+        this.contextBlobStore = contextBlobStore;
+        this.chatMessageMapper = chatMessageMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.notifyEnabled = properties.isNotifyEnabled();
+    }
+
+    // The messages of one append, numbered consecutively up to lastSeq in list order.
+    public void publish(UUID sessionId, long lastSeq, List<ChatMessageResponse> messages) {
+        List<SequencedMessage> sequenced = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            sequenced.add(new SequencedMessage(lastSeq - messages.size() + 1 + i, messages.get(i)));
+        }
+        AfterCommit.run(() -> {
+            messageStreamHub.publish(sessionId, sequenced);
+            if (notifyEnabled) {
+                for (ChatMessageResponse message : messages) {
+                    outbound.add(sessionId + ":" + message.getId() + ":" + message.getCreatedAt().toInstant());
+                }
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${message-stream.notify-interval-ms:50}")
+    public void flush() {
+        if (outbound.isEmpty()) {
+            return;
+        }
+        StringBuilder payload = new StringBuilder(MAX_PAYLOAD_LENGTH).append(nodeId);
+        String entry;
+        while ((entry = outbound.poll()) != null) {
+            if (payload.length() + 1 + entry.length() > MAX_PAYLOAD_LENGTH) {
+                notifyPeers(payload.toString());
+                payload.setLength(0);
+                payload.append(nodeId);
+            }
+            payload.append(' ').append(entry);
+        }
+        notifyPeers(payload.toString());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startListening() {
+        if (!notifyEnabled) {
+            return;
+        }
+        listening = true;
+        Thread.ofPlatform().name("message-stream-listener").daemon().start(this::listen);
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void stopListening() {
+        listening = false;
+    }
+
+    private void notifyPeers(String payload) {
+        try {
+            jdbcTemplate.execute(NOTIFY_SQL, (PreparedStatementCallback<Boolean>) statement -> {
+                statement.setString(1, CHANNEL);
+                statement.setString(2, payload);
+                return statement.execute();
+            });
+        } catch (DataAccessException ex) {
+            logger.warn("Message notification could not be sent, other nodes' subscribers will miss it: {}",
+                    ex.getMessage());
+        }
+    }
+
+    // A dedicated connection outside the pool: it stays open for the life of the node and must be a direct
+    // session on the primary, since LISTEN does not survive transaction pooling.
+    private void listen() {
+        long reconnectDelay = POLL_TIMEOUT_MS;
+        boolean missedNotifications = false;
+        while (listening) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                if (missedNotifications) {
+                    messageStreamHub.disconnectAll();
+                    missedNotifications = false;
+                }
+                reconnectDelay = POLL_TIMEOUT_MS;
+                PGConnection notifications = connection.unwrap(PGConnection.class);
+                while (listening) {
+                    PGNotification[] received = notifications.getNotifications(POLL_TIMEOUT_MS);
+                    if (received != null && received.length > 0) {
+                        receive(received);
+                    }
+                }
+            } catch (SQLException ex) {
+                if (!listening) {
+                    return;
+                }
+                missedNotifications = true;
+                logger.warn("Listening for message notifications failed, reconnecting in {} ms: {}",
+                        reconnectDelay, ex.getMessage());
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MS);
+            }
+        }
+    }
+
+    void receive(PGNotification[] notifications) {
+        List<UUID> messageIds = new ArrayList<>();
+        Set<OffsetDateTime> createdAts = new HashSet<>();
+        for (PGNotification notification : notifications) {
+            String[] entries = notification.getParameter().split(" ");
+            if (entries[0].equals(nodeId)) {
+                continue;
+            }
+            for (int i = 1; i < entries.length; i++) {
+                String[] key = entries[i].split(":", 3);
+                if (messageStreamHub.hasSubscribers(UUID.fromString(key[0]))) {
+                    messageIds.add(UUID.fromString(key[1]));
+                    createdAts.add(OffsetDateTime.ofInstant(Instant.parse(key[2]), ZoneOffset.UTC));
+                }
+            }
+        }
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        Map<UUID, List<SequencedMessage>> bySession;
+        try {
+            bySession = transactionTemplate.execute(status -> load(messageIds, createdAts));
+        } catch (DataAccessException ex) {
+            logger.warn("Notified messages could not be loaded, subscribers will miss them: {}", ex.getMessage());
+            return;
+        }
+        if (bySession != null) {
+            bySession.forEach(messageStreamHub::publish);
+        }
+    }
+
+    // Reads the primary, where the notified messages are known to be committed. A message without a number was
+    // archived and restored since it was appended; subscribers get it from a replay instead.
+    private Map<UUID, List<SequencedMessage>> load(List<UUID> messageIds, Set<OffsetDateTime> createdAts) {
+        List<ChatMessage> messages = new ArrayList<>(chatMessageRepository.findLive(messageIds, createdAts));
+        messages.removeIf(message -> message.getSeq() == null);
+        messages.sort(Comparator.comparing(ChatMessage::getSeq));
+        contextBlobStore.resolve(messages);
+        Map<UUID, List<SequencedMessage>> bySession = new LinkedHashMap<>();
+        for (ChatMessage message : messages) {
+            bySession.computeIfAbsent(message.getSession().getId(), key -> new ArrayList<>())
+                    .add(new SequencedMessage(message.getSeq(), chatMessageMapper.toResponse(message)));
+        }
+        return bySession;
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.MessageTailCacheProperties;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.transaction.AfterCommit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Each node caches the tails it reads and applies the appends it commits itself. A tail is tagged with the session's
+// message_seq it was loaded at and is only served while the session still has that number, which the caller reads
+// from chat_sessions on every request. Appends committed through another node bump it, so they are never missed.
+@Component
+public class MessageTailCache {
+
+    static final String CACHE_NAME = "message-tail";
+
+    private static final int EPOCH_STRIPES = 256;
+    private static final int MESSAGE_OVERHEAD_BYTES = 192;
+    // The keyset queries' order, so cached pages and cursors line up with findBefore/findAfter on createdAt ties.
+    private static final Comparator<ChatMessageResponse> ORDER = Comparator.comparing(ChatMessageResponse::getCreatedAt)
+            .thenComparing(ChatMessageResponse::getId, KeysetCursor.ID_ORDER);
+
+    private final boolean enabled;
+    private final int capacity;
+    private final Cache<UUID, SessionTail> cache;
+    // Bumped before every committed append or invalidation so a concurrent load from the database
+    // can tell that its rows may already be stale and skip caching them.
+    private final AtomicLongArray epochs = new AtomicLongArray(EPOCH_STRIPES);
+
+    public MessageTailCache(MessageTailCacheProperties properties, MeterRegistry meterRegistry) {
+        if (properties.getMessagesPerSession() < 1 || properties.getMessagesPerSession() > 100) {
+            throw new IllegalStateException("message-tail-cache.messages-per-session must be between 1 and 100");
+        }
+        this.enabled = properties.isEnabled();
+        this.capacity = properties.getMessagesPerSession();
+        long expireAfterLoadNanos = properties.getExpireAfterLoad().toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumSize().toBytes())
+                .weigher((UUID sessionId, SessionTail tail) -> tail.bytes)
+                .expireAfter(new Expiry<UUID, SessionTail>() {
+                    @Override
+                    public long expireAfterCreate(UUID key, SessionTail value, long currentTime) {
+                        return expireAfterLoadNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID key, SessionTail value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID key, SessionTail value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        Gauge.builder("chatstorage.message.tail.bytes", this, MessageTailCache::weightedBytes)
+                .description("Estimated heap held by cached session tails")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean canServe(int size) {
+        return enabled && size <= capacity;
+    }
+
+    public int loadSize() {
+        return capacity + 1;
+    }
+
+    // Newest first, at most size + 1 messages so the caller can tell whether older ones exist; null on a miss or
+    // when the cached tail predates seq, the session's committed message_seq.
+    public List<ChatMessageResponse> latest(UUID sessionId, long seq, int size) {
+        SessionTail tail = cache.getIfPresent(sessionId);
+        return tail != null && tail.seq == seq ? tail.newestFirst(size + 1) : null;
+    }
+
+    public long epoch(UUID sessionId) {
+        return epochs.get(stripe(sessionId));
+    }
+
+    // rows are the newest loadSize() messages, newest first, as read after epoch and then seq were sampled. They may
+    // include later appends too; the tail is then replaced on the next read, which sees a higher seq.
+    public void populate(UUID sessionId, long epoch, long seq, List<ChatMessageResponse> rows) {
+        if (!enabled) {
+            return;
+        }
+        List<ChatMessageResponse> ascending = new ArrayList<>(rows);
+        ascending.sort(ORDER);
+        SessionTail loaded = new SessionTail(ascending.toArray(ChatMessageResponse[]::new), rows.size() < loadSize(),
+                seq);
+        cache.asMap().compute(sessionId, (key, existing) -> {
+            if (existing != null && existing.seq >= seq) {
+                return existing;
+            }
+            return epoch(sessionId) == epoch ? loaded : null;
+        });
+    }
+
+    // lastSeq is the number the append reserved for its last message. A tail that is missing earlier numbers, from
+    // appends through other nodes or commit callbacks running out of order, is dropped rather than patched.
+    public void append(UUID sessionId, long lastSeq, List<ChatMessageResponse> messages) {
+        if (!enabled) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            epochs.incrementAndGet(stripe(sessionId));
+            cache.asMap().computeIfPresent(sessionId, (key, tail) -> tail.seq == lastSeq - messages.size()
+                    ? tail.append(messages, loadSize(), lastSeq)
+                    : null);
+        });
+    }
+
+    public void invalidate(UUID sessionId) {
+        epochs.incrementAndGet(stripe(sessionId));
+        cache.invalidate(sessionId);
+        AfterCommit.run(() -> {
+            epochs.incrementAndGet(stripe(sessionId));
+            cache.invalidate(sessionId);
+        });
+    }
+
+    private long weightedBytes() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    private static int stripe(UUID sessionId) {
+        int hash = sessionId.hashCode();
+        return (hash ^ (hash >>> 16)) & (EPOCH_STRIPES - 1);
+    }
+
+    private static final class SessionTail {
+
+        // Ascending by (createdAt, id). When complete is false this holds exactly loadSize() messages
+        // and older ones exist only in the database.
+        private final ChatMessageResponse[] messages;
+        private final boolean complete;
+        private final long seq;
+        private final int bytes;
+
+        private SessionTail(ChatMessageResponse[] messages, boolean complete, long seq) {
+            this.messages = messages;
+            this.complete = complete;
+            this.seq = seq;
+            long total = 64;
+            for (ChatMessageResponse message : messages) {
+                total += estimateBytes(message);
+            }
+            this.bytes = (int) Math.min(Integer.MAX_VALUE, total);
+        }
+
+        private List<ChatMessageResponse> newestFirst(int limit) {
+            int count = Math.min(limit, messages.length);
+            List<ChatMessageResponse> result = new ArrayList<>(count);
+            for (int i = messages.length - 1; i >= messages.length - count; i--) {
+                result.add(messages[i]);
+            }
+            return result;
+        }
+
+        private SessionTail append(List<ChatMessageResponse> added, int loadSize, long lastSeq) {
+            Set<UUID> present = new HashSet<>();
+            for (ChatMessageResponse message : messages) {
+                present.add(message.getId());
+            }
+            List<ChatMessageResponse> merged = new ArrayList<>(messages.length + added.size());
+            merged.addAll(Arrays.asList(messages));
+            for (ChatMessageResponse message : added) {
+                if (present.add(message.getId())) {
+                    merged.add(message);
+                }
+            }
+            // Appends from concurrent transactions can commit out of createdAt order.
+            merged.sort(ORDER);
+            int from = Math.max(0, merged.size() - loadSize);
+            return new SessionTail(merged.subList(from, merged.size()).toArray(ChatMessageResponse[]::new),
+                    complete && from == 0, lastSeq);
+        }
+
+        private static long estimateBytes(ChatMessageResponse message) {
+            long chars = length(message.getContent()) + length(message.getContext());
+            return MESSAGE_OVERHEAD_BYTES + 2 * chars;
+        }
+
+        private static int length(String value) {
+            return value != null ? value.length() : 0;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.PartitionProperties;
+import com.example.chatstorage.config.SchedulingConfig;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// chat_messages is partitioned by month; inserts past the last partition would fail, so partitions are kept
+// a few months ahead. Creating one that already exists is a no-op, so every replica can run this.
+@Component
+public class PartitionMaintainer {
+
+    private static final Logger logger = LogManager.getLogger(PartitionMaintainer.class);
+
+    private final ChatMessageRepository chatMessageRepository;
+    private final PartitionProperties properties;
+
+    public PartitionMaintainer(ChatMessageRepository chatMessageRepository, PartitionProperties properties) {
+        if (properties.getMonthsAhead() < 1) {
+            throw new IllegalStateException("partitions.months-ahead must be at least 1");
+        }
+        this.chatMessageRepository = chatMessageRepository;
+        this.properties = properties;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${partitions.maintenance-cron:0 15 3 * * *}", zone = "UTC",
+            scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void ensurePartitions() {
+        try {
+            int created = chatMessageRepository.ensurePartitions(properties.getMonthsAhead());
+            if (created > 0) {
+                logger.info("Created {} chat_messages partitions", created);
+            }
+        } catch (DataAccessException ex) {
+            logger.warn("Partition maintenance failed, will retry on the next run: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.chatstorage.service;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.UUID;
+
+public record SearchCursor(float score, UUID id) {
+
+    private static final int ENCODED_LENGTH = Float.BYTES + Long.BYTES * 2;
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_LENGTH)
+                .putFloat(score)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static SearchCursor decode(String token) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Cursor is malformed");
+        }
+        if (bytes.length != ENCODED_LENGTH) {
+            throw new IllegalArgumentException("Cursor is malformed");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        float score = buffer.getFloat();
+        if (!Float.isFinite(score)) {
+            throw new IllegalArgumentException("Cursor is malformed");
+        }
+        return new SearchCursor(score, new UUID(buffer.getLong(), buffer.getLong()));
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.dto.ChatMessageResponse;
+
+// A streamed message with its per-session number, which subscribers use to send messages in commit order.
+public record SequencedMessage(long seq, ChatMessageResponse message) {
+}
@@ -0,0 +1,153 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.ArchiveProperties;
+import com.example.chatstorage.config.SchedulingConfig;
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.mapper.ChatMessageMapper;
+import com.example.chatstorage.repository.ArchiveCandidate;
+import com.example.chatstorage.repository.ArchiveLocation;
+import com.example.chatstorage.repository.ChatMessageEmbeddingRepository;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.repository.ContextBlobRepository;
+import com.example.chatstorage.repository.SessionArchiveRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Moves sessions idle for archive.idle-after out of chat_messages into one segment file per run. The segment is
+// written and synced before any session is marked archived; a session appended to after it was read is skipped
+// and its record in the segment is simply never referenced.
+@Component
+@ConditionalOnProperty(prefix = "archive", name = "enabled", havingValue = "true")
+public class SessionArchiver {
+
+    private static final Logger logger = LogManager.getLogger(SessionArchiver.class);
+    private static final int DELETE_BATCH_SIZE = 1_000;
+
+    private final SessionArchiveRepository sessionArchiveRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ChatMessageEmbeddingRepository embeddingRepository;
+    private final ContextBlobRepository contextBlobRepository;
+    private final ContextBlobStore contextBlobStore;
+    private final ChatMessageMapper chatMessageMapper;
+    private final ArchiveSegments archiveSegments;
+    private final MessageTailCache messageTailCache;
+    private final EmbeddingIndex embeddingIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final ArchiveProperties properties;
+    private final Counter sessionsArchived;
+    private final Counter messagesArchived;
+
+    public SessionArchiver(SessionArchiveRepository sessionArchiveRepository,
+                           ChatMessageRepository chatMessageRepository,
+                           ChatMessageEmbeddingRepository embeddingRepository,
+                           ContextBlobRepository contextBlobRepository,
+                           ContextBlobStore contextBlobStore,
+                           ChatMessageMapper chatMessageMapper,
+                           ArchiveSegments archiveSegments,
+                           MessageTailCache messageTailCache,
+                           EmbeddingIndex embeddingIndex,
+                           TransactionTemplate transactionTemplate,
+                           ArchiveProperties properties,
+                           MeterRegistry meterRegistry) {
+        if (properties.getSessionsPerRun() <= 0 || properties.getIdleAfter().isNegative()) {
+            throw new IllegalStateException("archive.sessions-per-run must be greater than zero"
+                    + " and archive.idle-after must not be negative");
+        }
+        this.sessionArchiveRepository = sessionArchiveRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.embeddingRepository = embeddingRepository;
+        this.contextBlobRepository = contextBlobRepository;
+        this.contextBlobStore = contextBlobStore;
+        this.chatMessageMapper = chatMessageMapper;
+        this.archiveSegments = archiveSegments;
+        this.messageTailCache = messageTailCache;
+        this.embeddingIndex = embeddingIndex;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.sessionsArchived = Counter.builder("chatstorage.archive.sessions.archived")
+                .description("Idle sessions moved to archive segments")
+                .register(meterRegistry);
+        this.messagesArchived = Counter.builder("chatstorage.archive.messages.archived")
+                .description("Messages moved to archive segments")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${archive.interval-ms:3600000}", initialDelayString = "${archive.interval-ms:3600000}",
+            scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void archiveIdleSessions() {
+        OffsetDateTime idleBefore = OffsetDateTime.now().minus(properties.getIdleAfter());
+        List<ArchiveCandidate> candidates = transactionTemplate.execute(status ->
+                sessionArchiveRepository.findCandidates(idleBefore, properties.getSessionsPerRun()));
+        if (candidates == null || candidates.isEmpty()) {
+            return;
+        }
+        Map<ArchiveCandidate, ArchiveLocation> written = new LinkedHashMap<>();
+        try (ArchiveSegments.SegmentWriter segment = archiveSegments.create()) {
+            for (ArchiveCandidate candidate : candidates) {
+                written.put(candidate, segment.append(loadSession(candidate)));
+            }
+            segment.commit();
+        } catch (IOException | DataAccessException ex) {
+            logger.warn("Archive segment could not be written, will retry on the next run: {}", ex.getMessage());
+            return;
+        }
+        written.forEach((candidate, location) -> {
+            try {
+                archive(candidate, location);
+            } catch (DataAccessException ex) {
+                logger.warn("Archiving session {} failed, will retry on the next run: {}",
+                        candidate.sessionId(), ex.getMessage());
+            }
+        });
+    }
+
+    // Embeddings go into the record too: deleting the messages cascades to them.
+    private ArchiveSegments.ArchivedSession loadSession(ArchiveCandidate candidate) {
+        return transactionTemplate.execute(status -> {
+            List<ChatMessage> messages = chatMessageRepository.findHead(candidate.sessionId(), Pageable.unpaged());
+            contextBlobStore.resolve(messages);
+            Map<UUID, float[]> embeddings = new LinkedHashMap<>();
+            embeddingRepository.findByMessageIds(messages.stream().map(ChatMessage::getId).toList())
+                    .forEach(row -> embeddings.put(row.messageId(), row.vector()));
+            return new ArchiveSegments.ArchivedSession(
+                    new ArrayList<>(messages.stream().map(chatMessageMapper::toResponse).toList()), embeddings);
+        });
+    }
+
+    private void archive(ArchiveCandidate candidate, ArchiveLocation location) {
+        Boolean archived = transactionTemplate.execute(status -> {
+            if (!sessionArchiveRepository.markArchived(candidate, location, OffsetDateTime.now())) {
+                return false;
+            }
+            int deleted;
+            do {
+                deleted = chatMessageRepository.deleteBatchBySessionId(candidate.sessionId(), DELETE_BATCH_SIZE);
+            } while (deleted == DELETE_BATCH_SIZE);
+            contextBlobRepository.deleteOrphans();
+            // The deleted embeddings would otherwise stay in the similarity index until the user's index is rebuilt.
+            embeddingIndex.removeSession(candidate.userId(), candidate.sessionId());
+            return true;
+        });
+        if (Boolean.TRUE.equals(archived)) {
+            messageTailCache.invalidate(candidate.sessionId());
+            sessionsArchived.increment();
+            messagesArchived.increment(location.messageCount());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.SessionCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+import java.util.function.Supplier;
+
+@Component
+public class SessionOwnershipCache {
+
+    static final String CACHE_NAME = "session-ownership";
+
+    private final Cache<Key, SessionSnapshot> cache;
+
+    public SessionOwnershipCache(SessionCacheProperties properties, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    // A null from the loader is not cached, so a missing session is looked up again on the next request.
+    public SessionSnapshot get(UUID sessionId, String userId, Supplier<SessionSnapshot> loader) {
+        return cache.get(new Key(sessionId, userId), key -> loader.get());
+    }
+
+    public void invalidate(UUID sessionId, String userId) {
+        Key key = new Key(sessionId, userId);
+        cache.invalidate(key);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // A concurrent request may reload the pre-commit row before this transaction commits.
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(key);
+                }
+            });
+        }
+    }
+
+    private record Key(UUID sessionId, String userId) {
+    }
+}
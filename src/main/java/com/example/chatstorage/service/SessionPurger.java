@@ -0,0 +1,124 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.PurgeProperties;
+import com.example.chatstorage.config.SchedulingConfig;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.repository.ChatSessionRepository;
+import com.example.chatstorage.repository.ContextBlobRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+@ConditionalOnProperty(prefix = "purge", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class SessionPurger {
+
+    private static final Logger logger = LogManager.getLogger(SessionPurger.class);
+
+    private final ChatSessionRepository chatSessionRepository;
+    private final ChatMessageRepository chatMessageRepository;
+    private final ContextBlobRepository contextBlobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final PurgeProperties properties;
+    private final Counter messagesDeleted;
+    private final Counter sessionsPurged;
+    private final Timer batchTimer;
+    private final AtomicLong pendingSessions = new AtomicLong();
+
+    public SessionPurger(ChatSessionRepository chatSessionRepository,
+                         ChatMessageRepository chatMessageRepository,
+                         ContextBlobRepository contextBlobRepository,
+                         TransactionTemplate transactionTemplate,
+                         PurgeProperties properties,
+                         MeterRegistry meterRegistry) {
+        if (properties.getBatchSize() <= 0 || properties.getSessionsPerRun() <= 0) {
+            throw new IllegalStateException("purge.batch-size and purge.sessions-per-run must be greater than zero");
+        }
+        this.chatSessionRepository = chatSessionRepository;
+        this.chatMessageRepository = chatMessageRepository;
+        this.contextBlobRepository = contextBlobRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.messagesDeleted = Counter.builder("chatstorage.purge.messages.deleted")
+                .description("Messages removed from tombstoned sessions")
+                .register(meterRegistry);
+        this.sessionsPurged = Counter.builder("chatstorage.purge.sessions.purged")
+                .description("Tombstoned sessions fully removed")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("chatstorage.purge.batch")
+                .description("Duration of a single message delete batch")
+                .register(meterRegistry);
+        Gauge.builder("chatstorage.purge.sessions.pending", pendingSessions, AtomicLong::get)
+                .description("Tombstoned sessions waiting to be purged")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${purge.interval-ms:5000}", initialDelayString = "${purge.interval-ms:5000}",
+            scheduler = SchedulingConfig.MAINTENANCE_SCHEDULER)
+    public void purgeDeletedSessions() {
+        List<UUID> candidates = transactionTemplate.execute(status ->
+                chatSessionRepository.findPurgeCandidates(properties.getSessionsPerRun()));
+        if (candidates == null || candidates.isEmpty()) {
+            pendingSessions.set(0);
+            return;
+        }
+        for (UUID sessionId : candidates) {
+            try {
+                purgeSession(sessionId);
+            } catch (DataAccessException ex) {
+                logger.warn("Purge of session {} failed, will retry on the next run: {}", sessionId, ex.getMessage());
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+        Long pending = transactionTemplate.execute(status -> chatSessionRepository.countPendingPurge());
+        pendingSessions.set(pending != null ? pending : 0);
+    }
+
+    void purgeSession(UUID sessionId) {
+        long total = 0;
+        int deleted;
+        do {
+            deleted = batchTimer.record(() -> transactionTemplate.execute(status -> {
+                int count = chatMessageRepository.deleteBatchBySessionId(sessionId, properties.getBatchSize());
+                contextBlobRepository.deleteOrphans();
+                return count;
+            }));
+            total += deleted;
+            messagesDeleted.increment(deleted);
+            if (deleted == properties.getBatchSize() && !pause()) {
+                return;
+            }
+        } while (deleted == properties.getBatchSize());
+
+        transactionTemplate.executeWithoutResult(status -> chatSessionRepository.deleteTombstone(sessionId));
+        sessionsPurged.increment();
+        logger.info("Purged session {} ({} messages)", sessionId, total);
+    }
+
+    private boolean pause() {
+        if (properties.getPauseMs() <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(properties.getPauseMs());
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
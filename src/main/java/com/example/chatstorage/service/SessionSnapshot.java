@@ -0,0 +1,12 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.domain.ChatSession;
+
+import java.util.UUID;
+
+public record SessionSnapshot(UUID id, String userId) {
+
+    static SessionSnapshot of(ChatSession session) {
+        return new SessionSnapshot(session.getId(), session.getUserId());
+    }
+}
@@ -0,0 +1,77 @@
+-- Context is encoded by the application (plain UTF-8 or LZ4, see TextCodec). Existing rows convert to plain
+-- UTF-8 and keep reading as before. The column is swapped rather than retyped in place, and backfilled in short
+-- batches, so chat_messages is never rewritten under an ACCESS EXCLUSIVE lock; this migration therefore runs
+-- outside a transaction (see the .conf file next to it).
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS context_encoded BYTEA;
+-- Already compressed where it pays off, so skip pglz and only move large values out of line.
+ALTER TABLE chat_messages ALTER COLUMN context_encoded SET STORAGE EXTERNAL;
+
+-- Keeps rows written while the backfill runs in step with the old column.
+CREATE OR REPLACE FUNCTION chat_messages_encode_context() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.context_encoded := convert_to(NEW.context, 'UTF8');
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS chat_messages_encode_context ON chat_messages;
+CREATE TRIGGER chat_messages_encode_context
+    BEFORE INSERT OR UPDATE OF context ON chat_messages
+    FOR EACH ROW EXECUTE FUNCTION chat_messages_encode_context();
+
+-- Each batch commits on its own, so row locks are held only briefly and vacuum can reclaim the old versions.
+DO $$
+DECLARE
+    last_id   UUID := '00000000-0000-0000-0000-000000000000';
+    batch_end UUID;
+BEGIN
+    LOOP
+        SELECT max(id) INTO batch_end
+        FROM (SELECT id FROM chat_messages WHERE id > last_id ORDER BY id LIMIT 10000) batch;
+        EXIT WHEN batch_end IS NULL;
+        UPDATE chat_messages SET context_encoded = convert_to(context, 'UTF8')
+        WHERE id > last_id AND id <= batch_end AND context IS NOT NULL AND context_encoded IS NULL;
+        last_id := batch_end;
+        COMMIT;
+    END LOOP;
+END;
+$$;
+
+-- The search vector stays, and with it V8's index. PostgreSQL cannot tokenise a compressed context, so instead
+-- of generating it from the columns, a trigger builds it on insert (content weighted A, context B). Existing rows
+-- keep the vector V7 generated for them. Contexts the application stores inline are only indexed when they are
+-- plain UTF-8; V12 moves contexts to blobs, whose vectors are built from the text the application supplies.
+CREATE OR REPLACE FUNCTION chat_messages_search_vector() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.search_vector := setweight(to_tsvector('english', NEW.content), 'A');
+    IF NEW.context IS NOT NULL AND substring(NEW.context FROM 1 FOR 1) <> '\xfe'::bytea THEN
+        NEW.search_vector := NEW.search_vector
+            || setweight(to_tsvector('english', convert_from(NEW.context, 'UTF8')), 'B');
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- The swap itself only touches the catalog.
+DO $$
+BEGIN
+    ALTER TABLE chat_messages ALTER COLUMN search_vector DROP EXPRESSION;
+    DROP TRIGGER chat_messages_encode_context ON chat_messages;
+    ALTER TABLE chat_messages DROP COLUMN context;
+    ALTER TABLE chat_messages RENAME COLUMN context_encoded TO context;
+    CREATE TRIGGER chat_messages_search_vector
+        BEFORE INSERT ON chat_messages
+        FOR EACH ROW EXECUTE FUNCTION chat_messages_search_vector();
+END;
+$$;
+DROP FUNCTION IF EXISTS chat_messages_encode_context();
+
+-- Long assistant answers are compressed by TOAST; LZ4 is cheaper to decompress than the pglz default. It needs
+-- PostgreSQL 14 or later built with lz4; elsewhere content keeps the server's default compression.
+DO $$
+BEGIN
+    EXECUTE 'ALTER TABLE chat_messages ALTER COLUMN content SET COMPRESSION lz4';
+EXCEPTION WHEN feature_not_supported OR syntax_error THEN
+    RAISE NOTICE 'lz4 compression is not available, chat_messages.content keeps the default compression';
+END;
+$$;
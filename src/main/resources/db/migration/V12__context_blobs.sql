@@ -0,0 +1,67 @@
+-- One row per distinct context, keyed by the SHA-256 of its UTF-8 text. data uses the same encoding as
+-- chat_messages.context (plain UTF-8 or LZ4, see TextCodec). ref_count is the number of messages pointing at
+-- the blob; the purge releases references and deletes blobs that reach zero. search_vector is built from the
+-- text the application passes in (weighted B), since PostgreSQL cannot read a compressed blob.
+CREATE TABLE IF NOT EXISTS context_blobs (
+    hash BYTEA PRIMARY KEY,
+    data BYTEA NOT NULL,
+    ref_count BIGINT NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+    search_vector TSVECTOR NOT NULL
+);
+ALTER TABLE context_blobs ALTER COLUMN data SET STORAGE EXTERNAL;
+CREATE INDEX IF NOT EXISTS idx_context_blobs_orphans ON context_blobs (hash) WHERE ref_count <= 0;
+
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS context_hash BYTEA;
+
+-- Move existing plain UTF-8 contexts into blobs; their stored bytes are the text, so the hash matches what the
+-- application computes. LZ4-encoded contexts written since V10 stay inline and keep reading as before. Each batch
+-- locks its rows, moves them and commits, so the backfill never holds chat_messages for long; this migration
+-- therefore runs outside a transaction (see the .conf file next to it).
+DO $$
+DECLARE
+    last_id   UUID := '00000000-0000-0000-0000-000000000000';
+    batch_end UUID;
+BEGIN
+    LOOP
+        SELECT max(id) INTO batch_end
+        FROM (SELECT id FROM chat_messages WHERE id > last_id ORDER BY id LIMIT 10000) batch;
+        EXIT WHEN batch_end IS NULL;
+        WITH batch AS (
+            SELECT id, context
+            FROM chat_messages
+            WHERE id > last_id AND id <= batch_end
+              AND context IS NOT NULL AND substring(context FROM 1 FOR 1) <> '\xfe'::bytea
+            FOR UPDATE
+        ), blobs AS (
+            INSERT INTO context_blobs (hash, data, ref_count, search_vector)
+            SELECT sha256(context), context, count(*),
+                   setweight(to_tsvector('english', convert_from(context, 'UTF8')), 'B')
+            FROM batch
+            GROUP BY context
+            ON CONFLICT (hash) DO UPDATE SET ref_count = context_blobs.ref_count + EXCLUDED.ref_count
+        )
+        UPDATE chat_messages m
+        SET context_hash = sha256(batch.context), context = NULL
+        FROM batch
+        WHERE m.id = batch.id;
+        last_id := batch_end;
+        COMMIT;
+    END LOOP;
+END;
+$$;
+
+-- New messages take their context's search terms from its blob, which is written first in the same transaction.
+CREATE OR REPLACE FUNCTION chat_messages_search_vector() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.search_vector := setweight(to_tsvector('english', NEW.content), 'A');
+    IF NEW.context_hash IS NOT NULL THEN
+        NEW.search_vector := NEW.search_vector
+            || coalesce((SELECT b.search_vector FROM context_blobs b WHERE b.hash = NEW.context_hash), ''::tsvector);
+    ELSIF NEW.context IS NOT NULL AND substring(NEW.context FROM 1 FOR 1) <> '\xfe'::bytea THEN
+        NEW.search_vector := NEW.search_vector
+            || setweight(to_tsvector('english', convert_from(NEW.context, 'UTF8')), 'B');
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
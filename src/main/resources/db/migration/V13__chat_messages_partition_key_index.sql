@@ -0,0 +1,4 @@
+-- A partitioned table's primary key has to include the partition column. Building the matching unique index
+-- here, concurrently, lets V14 attach the existing table as a partition without rebuilding it under lock.
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS chat_messages_legacy_id_created
+    ON chat_messages (id, created_at);
@@ -0,0 +1,92 @@
+-- Creates the monthly partitions of chat_messages from the current month through months_ahead months from now
+-- and returns how many were added. Months already covered by another partition, such as the one holding rows
+-- from before partitioning, are skipped. Called by PartitionMaintainer on startup and daily.
+CREATE OR REPLACE FUNCTION ensure_chat_message_partitions(months_ahead INTEGER) RETURNS INTEGER AS $$
+DECLARE
+    month_start TIMESTAMPTZ := date_trunc('month', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC';
+    bound_from  TIMESTAMPTZ;
+    partition   TEXT;
+    created     INTEGER := 0;
+BEGIN
+    FOR i IN 0..months_ahead LOOP
+        bound_from := month_start + make_interval(months => i);
+        partition := 'chat_messages_' || to_char(bound_from AT TIME ZONE 'UTC', 'YYYY_MM');
+        CONTINUE WHEN to_regclass(partition) IS NOT NULL;
+        BEGIN
+            EXECUTE format('CREATE TABLE %I PARTITION OF chat_messages FOR VALUES FROM (%L) TO (%L)',
+                           partition, bound_from, bound_from + interval '1 month');
+            created := created + 1;
+        EXCEPTION WHEN invalid_object_definition OR duplicate_table THEN
+            NULL;
+        END;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- The existing table becomes the first partition, covering everything before next month, so no rows are copied.
+-- A matching CHECK is added without validation and validated on its own first: that scan only takes a SHARE
+-- UPDATE EXCLUSIVE lock, and lets the ATTACH below skip its own scan under ACCESS EXCLUSIVE. The indexes already
+-- exist (V2, V8, V13) and are reused. Each step commits on its own, so this migration runs outside a
+-- transaction (see the .conf file next to it).
+DO $$
+DECLARE
+    cutover TIMESTAMPTZ := date_trunc('month', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' + interval '1 month';
+BEGIN
+    EXECUTE format('ALTER TABLE chat_messages ADD CONSTRAINT chat_messages_legacy_bound'
+                   ' CHECK (created_at IS NOT NULL AND created_at < %L) NOT VALID', cutover);
+END;
+$$;
+ALTER TABLE chat_messages VALIDATE CONSTRAINT chat_messages_legacy_bound;
+
+-- Renaming, creating the parent and attaching are catalog-only and happen in one transaction.
+DO $$
+DECLARE
+    cutover TIMESTAMPTZ := date_trunc('month', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' + interval '1 month';
+BEGIN
+    ALTER TABLE chat_message_embeddings DROP CONSTRAINT IF EXISTS chat_message_embeddings_message_id_fkey;
+    ALTER TABLE chat_messages RENAME TO chat_messages_legacy;
+    ALTER TABLE chat_messages_legacy RENAME CONSTRAINT chat_messages_pkey TO chat_messages_legacy_pkey;
+    ALTER INDEX idx_chat_messages_session_created RENAME TO chat_messages_legacy_session_created;
+    ALTER INDEX idx_chat_messages_search RENAME TO chat_messages_legacy_search;
+    -- The trigger moves to the parent below; a partition keeping its own copy would run it twice.
+    DROP TRIGGER IF EXISTS chat_messages_search_vector ON chat_messages_legacy;
+
+    CREATE TABLE chat_messages (
+        id            UUID                        NOT NULL,
+        session_id    UUID                        NOT NULL REFERENCES chat_sessions (id),
+        sender        VARCHAR(255)                NOT NULL CHECK (sender IN ('USER', 'ASSISTANT', 'SYSTEM')),
+        content       TEXT                        NOT NULL,
+        context       BYTEA,
+        created_at    TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+        search_vector TSVECTOR,
+        context_hash  BYTEA,
+        PRIMARY KEY (id, created_at)
+    ) PARTITION BY RANGE (created_at);
+    ALTER TABLE chat_messages ALTER COLUMN context SET STORAGE EXTERNAL;
+    BEGIN
+        EXECUTE 'ALTER TABLE chat_messages ALTER COLUMN content SET COMPRESSION lz4';
+    EXCEPTION WHEN feature_not_supported OR syntax_error THEN
+        RAISE NOTICE 'lz4 compression is not available, chat_messages.content keeps the default compression';
+    END;
+    CREATE TRIGGER chat_messages_search_vector BEFORE INSERT ON chat_messages
+        FOR EACH ROW EXECUTE FUNCTION chat_messages_search_vector();
+
+    CREATE INDEX idx_chat_messages_session_created ON chat_messages (session_id, created_at, id);
+    CREATE INDEX idx_chat_messages_search ON chat_messages USING gin (search_vector);
+
+    EXECUTE format('ALTER TABLE chat_messages ATTACH PARTITION chat_messages_legacy'
+                   ' FOR VALUES FROM (MINVALUE) TO (%L)', cutover);
+    ALTER TABLE chat_messages_legacy DROP CONSTRAINT chat_messages_legacy_bound;
+END;
+$$;
+
+SELECT ensure_chat_message_partitions(3);
+
+-- Embeddings referenced the old table's id-only key (dropped above). They carry the message's created_at, so they
+-- reference the partitioned key instead, validated separately so existing rows are checked without blocking
+-- writes.
+ALTER TABLE chat_message_embeddings
+    ADD CONSTRAINT chat_message_embeddings_message_fkey FOREIGN KEY (message_id, created_at)
+        REFERENCES chat_messages (id, created_at) ON DELETE CASCADE DEFERRABLE INITIALLY DEFERRED NOT VALID;
+ALTER TABLE chat_message_embeddings VALIDATE CONSTRAINT chat_message_embeddings_message_fkey;
@@ -0,0 +1,13 @@
+-- Set while a session's messages live in an archive segment instead of chat_messages.
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS archived_at TIMESTAMP(6) WITH TIME ZONE;
+
+-- Where each archived session's record sits. Segments are immutable; a restored or purged session only loses
+-- its row here.
+CREATE TABLE IF NOT EXISTS session_archives (
+    session_id    UUID PRIMARY KEY REFERENCES chat_sessions (id) ON DELETE CASCADE,
+    segment       VARCHAR(255)                NOT NULL,
+    record_offset BIGINT                      NOT NULL,
+    record_length INTEGER                     NOT NULL,
+    message_count INTEGER                     NOT NULL,
+    archived_at   TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,4 @@
+-- Archival queue: live sessions that are not archived yet, oldest activity first.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_archive_candidates
+    ON chat_sessions (updated_at)
+    WHERE deleted_at IS NULL AND archived_at IS NULL;
@@ -0,0 +1,33 @@
+-- Per-session message numbers, taken from chat_sessions.message_seq while the append holds the session row, so
+-- they follow commit order. A stream resumes after the last number a client received and cannot miss a message
+-- that committed after it with an earlier created_at. Rows written before this migration, or restored from the
+-- archive, have none. Both columns are added without a rewrite.
+ALTER TABLE chat_sessions ADD COLUMN IF NOT EXISTS message_seq BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS seq BIGINT;
+
+-- Runs outside a transaction (see the .conf file next to it). chat_messages_legacy holds every row written
+-- before V14 and takes appends until the first monthly partition starts, so its index is built concurrently.
+-- The monthly partitions only hold rows written since V14. They are built one at a time, each committed on its
+-- own, so one only blocks writes while its own index is built; the loop attaches the legacy index as it is.
+CREATE INDEX IF NOT EXISTS idx_chat_messages_session_seq
+    ON ONLY chat_messages (session_id, seq) WHERE seq IS NOT NULL;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS chat_messages_legacy_session_seq
+    ON chat_messages_legacy (session_id, seq) WHERE seq IS NOT NULL;
+
+DO $$
+DECLARE
+    partition_name TEXT;
+BEGIN
+    FOR partition_name IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'chat_messages'::regclass
+    LOOP
+        EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON %I (session_id, seq) WHERE seq IS NOT NULL',
+                       partition_name || '_session_seq', partition_name);
+        EXECUTE format('ALTER INDEX idx_chat_messages_session_seq ATTACH PARTITION %I',
+                       partition_name || '_session_seq');
+        COMMIT;
+    END LOOP;
+END;
+$$;
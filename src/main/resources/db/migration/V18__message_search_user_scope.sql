@@ -0,0 +1,70 @@
+-- Message search is always scoped to one user, but chat_messages only knew its session, so the GIN index on
+-- search_vector found every user's matches before the join to chat_sessions dropped the other users' rows. The
+-- owner is copied onto each message and indexed with the vector through btree_gin (V7), as V8 does for session
+-- titles, so the user filter is applied inside the index scan. Adding the column is catalog-only.
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS user_id VARCHAR(255);
+
+-- Sessions never change owner, so the column is filled on insert, by every writer including archive restores.
+CREATE OR REPLACE FUNCTION chat_messages_search_vector() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.user_id := (SELECT s.user_id FROM chat_sessions s WHERE s.id = NEW.session_id);
+    NEW.search_vector := setweight(to_tsvector('english', NEW.content), 'A');
+    IF NEW.context_hash IS NOT NULL THEN
+        NEW.search_vector := NEW.search_vector
+            || coalesce((SELECT b.search_vector FROM context_blobs b WHERE b.hash = NEW.context_hash), ''::tsvector);
+    ELSIF NEW.context IS NOT NULL AND substring(NEW.context FROM 1 FOR 1) <> '\xfe'::bytea THEN
+        NEW.search_vector := NEW.search_vector
+            || setweight(to_tsvector('english', convert_from(NEW.context, 'UTF8')), 'B');
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Existing rows are filled a thousand sessions at a time, each batch committed on its own so row locks are held
+-- only briefly; this migration therefore runs outside a transaction (see the .conf file next to it). Rows
+-- inserted before the trigger above took effect are still null and are picked up here.
+DO $$
+DECLARE
+    last_id   UUID := '00000000-0000-0000-0000-000000000000';
+    batch_end UUID;
+BEGIN
+    LOOP
+        SELECT max(id) INTO batch_end
+        FROM (SELECT id FROM chat_sessions WHERE id > last_id ORDER BY id LIMIT 1000) batch;
+        EXIT WHEN batch_end IS NULL;
+        UPDATE chat_messages m SET user_id = s.user_id
+        FROM chat_sessions s
+        WHERE s.id > last_id AND s.id <= batch_end AND m.session_id = s.id AND m.user_id IS NULL;
+        last_id := batch_end;
+        COMMIT;
+    END LOOP;
+END;
+$$;
+
+-- Built as V17 builds its index: concurrently on chat_messages_legacy, which takes appends until the first
+-- monthly partition starts, and one monthly partition at a time otherwise. Partitions created later inherit it.
+CREATE INDEX IF NOT EXISTS idx_chat_messages_user_search
+    ON ONLY chat_messages USING gin (user_id, search_vector);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS chat_messages_legacy_user_search
+    ON chat_messages_legacy USING gin (user_id, search_vector);
+
+DO $$
+DECLARE
+    partition_name TEXT;
+BEGIN
+    FOR partition_name IN
+        SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'chat_messages'::regclass
+    LOOP
+        EXECUTE format('CREATE INDEX IF NOT EXISTS %I ON %I USING gin (user_id, search_vector)',
+                       partition_name || '_user_search', partition_name);
+        EXECUTE format('ALTER INDEX idx_chat_messages_user_search ATTACH PARTITION %I',
+                       partition_name || '_user_search');
+        COMMIT;
+    END LOOP;
+END;
+$$;
+
+-- Every search now goes through the index above; the unscoped one would only slow down inserts.
+DROP INDEX IF EXISTS idx_chat_messages_search;
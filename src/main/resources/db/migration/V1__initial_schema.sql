@@ -0,0 +1,18 @@
+CREATE TABLE IF NOT EXISTS chat_sessions (
+    id          UUID PRIMARY KEY,
+    user_id     VARCHAR(255)                NOT NULL,
+    title       VARCHAR(255)                NOT NULL,
+    is_favorite BOOLEAN                     NOT NULL,
+    created_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    updated_at  TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    version     BIGINT
+);
+
+CREATE TABLE IF NOT EXISTS chat_messages (
+    id         UUID PRIMARY KEY,
+    session_id UUID                        NOT NULL REFERENCES chat_sessions (id),
+    sender     VARCHAR(255)                NOT NULL CHECK (sender IN ('USER', 'ASSISTANT', 'SYSTEM')),
+    content    TEXT                        NOT NULL,
+    context    TEXT,
+    created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL
+);
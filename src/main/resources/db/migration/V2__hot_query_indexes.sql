@@ -0,0 +1,9 @@
+-- Built concurrently so upgrading a populated database does not block writers.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_messages_session_created
+    ON chat_messages (session_id, created_at, id);
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_user_updated
+    ON chat_sessions (user_id, updated_at DESC, id DESC);
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_id_user
+    ON chat_sessions (id, user_id);
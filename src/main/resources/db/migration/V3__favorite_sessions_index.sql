@@ -0,0 +1,3 @@
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_user_favorite_updated
+    ON chat_sessions (user_id, updated_at DESC, id DESC)
+    WHERE is_favorite;
@@ -0,0 +1,17 @@
+-- Listing queries only ever see live sessions, so their indexes skip tombstones.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_user_updated_live
+    ON chat_sessions (user_id, updated_at DESC, id DESC)
+    WHERE deleted_at IS NULL;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_user_favorite_updated_live
+    ON chat_sessions (user_id, updated_at DESC, id DESC)
+    WHERE is_favorite AND deleted_at IS NULL;
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_chat_sessions_user_updated;
+
+DROP INDEX CONCURRENTLY IF EXISTS idx_chat_sessions_user_favorite_updated;
+
+-- Purge queue.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_deleted_at
+    ON chat_sessions (deleted_at)
+    WHERE deleted_at IS NOT NULL;
@@ -0,0 +1,8 @@
+CREATE TABLE IF NOT EXISTS rate_limit_counters (
+    key_id        BIGINT NOT NULL,
+    window_start  BIGINT NOT NULL,
+    request_count BIGINT NOT NULL,
+    PRIMARY KEY (key_id, window_start)
+);
+
+CREATE INDEX IF NOT EXISTS idx_rate_limit_counters_window ON rate_limit_counters (window_start);
@@ -0,0 +1,9 @@
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+-- Content outranks retrieved context. Maintained by PostgreSQL on every insert and update.
+ALTER TABLE chat_messages ADD COLUMN IF NOT EXISTS search_vector TSVECTOR
+    GENERATED ALWAYS AS (
+        setweight(to_tsvector('english', content), 'A')
+            || setweight(to_tsvector('english', coalesce(context, '')), 'B')
+    ) STORED;
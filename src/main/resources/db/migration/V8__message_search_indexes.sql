@@ -0,0 +1,7 @@
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_messages_search
+    ON chat_messages USING gin (search_vector);
+
+-- btree_gin lets one index answer both the user filter and the trigram match.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_chat_sessions_user_title_trgm
+    ON chat_sessions USING gin (user_id, title gin_trgm_ops)
+    WHERE deleted_at IS NULL;
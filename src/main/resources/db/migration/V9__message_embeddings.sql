@@ -0,0 +1,17 @@
+-- Kept apart from chat_messages so history reads never drag vectors along.
+-- The foreign key is deferred so embeddings can be written before Hibernate flushes the message rows.
+CREATE TABLE IF NOT EXISTS chat_message_embeddings (
+    message_id UUID PRIMARY KEY REFERENCES chat_messages (id) ON DELETE CASCADE DEFERRABLE INITIALLY DEFERRED,
+    session_id UUID                        NOT NULL,
+    user_id    VARCHAR(255)                NOT NULL,
+    created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    vector     BYTEA                       NOT NULL
+);
+
+-- Index loads and incremental catch-up per user.
+CREATE INDEX IF NOT EXISTS idx_chat_message_embeddings_user_created
+    ON chat_message_embeddings (user_id, created_at);
+
+-- Rows arrive in created_at order, so a BRIN index is enough to find recently active users at startup.
+CREATE INDEX IF NOT EXISTS idx_chat_message_embeddings_created_brin
+    ON chat_message_embeddings USING brin (created_at);
@@ -0,0 +1,170 @@
+package com.example.chatstorage;
+
+import com.example.chatstorage.security.ApiKeyService;
+import com.example.chatstorage.security.ApiKeyTier;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class VirtualThreadLoadTest {
+
+    private static final int CLIENTS = 400;
+    private static final int SESSIONS = 200;
+    private static final int DB_POOL_SIZE = 20;
+    private static final Duration WARMUP = Duration.ofSeconds(10);
+    private static final Duration MEASUREMENT = Duration.ofSeconds(30);
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16")
+            .withCommand("postgres", "-c", "max_connections=200");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void platformVersusVirtualThreads() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        platform.print("platform threads");
+        virtual.print("virtual threads");
+        assertThat(virtual.errors.get()).isZero();
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ChatStorageApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + POSTGRES.getJdbcUrl(),
+                        "spring.datasource.username=" + POSTGRES.getUsername(),
+                        "spring.datasource.password=" + POSTGRES.getPassword(),
+                        "spring.datasource.hikari.maximum-pool-size=" + DB_POOL_SIZE,
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "virtual-threads.maximum-pool-size=" + DB_POOL_SIZE,
+                        "virtual-threads.connection-timeout=30s",
+                        "logging.config=classpath:benchmark/log4j2-async.xml",
+                        "request-logging.enabled=false",
+                        "message-tail-cache.enabled=false",
+                        "ratelimit.premium-requests-per-minute=1000000000",
+                        "KEY_EXPIRATION_MS=3600000",
+                        "purge.enabled=false")
+                .run();
+             HttpClient client = HttpClient.newBuilder()
+                     .executor(Executors.newVirtualThreadPerTaskExecutor())
+                     .build()) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/v1";
+            String apiKey = context.getBean(ApiKeyService.class).generateApiKey(ApiKeyTier.PREMIUM).getApiKey();
+            List<String> sessions = createSessions(client, baseUrl, apiKey);
+
+            drive(client, baseUrl, apiKey, sessions, WARMUP, new Result());
+            Result result = new Result();
+            drive(client, baseUrl, apiKey, sessions, MEASUREMENT, result);
+            return result;
+        }
+    }
+
+    private List<String> createSessions(HttpClient client, String baseUrl, String apiKey) throws Exception {
+        List<String> sessions = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            HttpResponse<String> response = client.send(
+                    post(baseUrl + "/sessions", apiKey, "{\"userId\":\"user-" + i + "\",\"title\":\"Load " + i + "\"}"),
+                    HttpResponse.BodyHandlers.ofString());
+            JsonNode body = objectMapper.readTree(response.body());
+            sessions.add(body.get("id").asText());
+        }
+        return sessions;
+    }
+
+    // Each client loops over what the RAG orchestrator does per turn: append a message, then read the tail.
+    private void drive(HttpClient client, String baseUrl, String apiKey, List<String> sessions, Duration duration,
+                       Result result) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        long started = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                int sessionIndex = c % SESSIONS;
+                String sessionPath = baseUrl + "/sessions/" + sessions.get(sessionIndex);
+                String userId = "user-" + sessionIndex;
+                String tailPath = sessionPath + "/messages?pagination=cursor&direction=PREVIOUS&size=20&userId=" + userId;
+                futures.add(clients.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        result.record(client, post(sessionPath + "/messages?userId=" + userId, apiKey,
+                                "{\"sender\":\"USER\",\"content\":\"load test message\"}"));
+                        result.record(client, get(tailPath, apiKey));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        result.elapsedNanos = System.nanoTime() - started;
+    }
+
+    private static HttpRequest post(String url, String apiKey, String json) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("X-API-KEY", apiKey)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json))
+                .build();
+    }
+
+    private static HttpRequest get(String url, String apiKey) {
+        return HttpRequest.newBuilder(URI.create(url)).header("X-API-KEY", apiKey).GET().build();
+    }
+
+    private static final class Result {
+
+        private final Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+        private final AtomicLong errors = new AtomicLong();
+        private long elapsedNanos;
+
+        private void record(HttpClient client, HttpRequest request) {
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() >= 300) {
+                    errors.incrementAndGet();
+                }
+            } catch (Exception ex) {
+                errors.incrementAndGet();
+            }
+            latencies.add(System.nanoTime() - start);
+        }
+
+        private void print(String mode) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("%-17s %8.0f req/s  p50=%6.1fms  p99=%7.1fms  errors=%d%n", mode,
+                    sorted.length / seconds,
+                    sorted[sorted.length / 2] / 1e6,
+                    sorted[(int) Math.ceil(sorted.length * 0.99) - 1] / 1e6,
+                    errors.get());
+        }
+    }
+}
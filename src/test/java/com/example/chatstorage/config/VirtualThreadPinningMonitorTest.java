@@ -0,0 +1,44 @@
+package com.example.chatstorage.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VirtualThreadPinningMonitorTest {
+
+    private final Object lock = new Object();
+
+    @Test
+    void pinnedVirtualThreadShouldBeCountedAtItsCallSite() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (VirtualThreadPinningMonitor monitor = new VirtualThreadPinningMonitor(Duration.ofMillis(5), meterRegistry)) {
+            monitor.start();
+
+            Thread.ofVirtual().start(this::sleepWhileHoldingMonitor).join();
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (meterRegistry.find("chatstorage.virtual.threads.pinned").counter() == null
+                    && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+            }
+        }
+
+        Counter pinned = meterRegistry.find("chatstorage.virtual.threads.pinned").counter();
+        assertThat(pinned).isNotNull();
+        assertThat(pinned.getId().getTag("site")).startsWith(getClass().getName() + ".sleepWhileHoldingMonitor");
+    }
+
+    private void sleepWhileHoldingMonitor() {
+        synchronized (lock) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.chatstorage.datasource;
+
+import com.example.chatstorage.ChatStorageApplication;
+import com.example.chatstorage.dto.ChatSessionCreateRequest;
+import com.example.chatstorage.dto.ChatSessionResponse;
+import com.example.chatstorage.service.ChatSessionService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two independent databases stand in for a primary and its replica. Without replication between them, what a
+// read returns shows which one served it.
+@Testcontainers(disabledWithoutDocker = true)
+class ReadReplicaRoutingTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> PRIMARY = new PostgreSQLContainer<>("postgres:16");
+
+    @Container
+    private static final PostgreSQLContainer<?> REPLICA = new PostgreSQLContainer<>("postgres:16");
+
+    private static ConfigurableApplicationContext context;
+
+    @BeforeAll
+    static void start() {
+        Flyway.configure()
+                .dataSource(REPLICA.getJdbcUrl(), REPLICA.getUsername(), REPLICA.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        context = new SpringApplicationBuilder(ChatStorageApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + PRIMARY.getJdbcUrl(),
+                        "spring.datasource.username=" + PRIMARY.getUsername(),
+                        "spring.datasource.password=" + PRIMARY.getPassword(),
+                        "read-replicas.urls=" + REPLICA.getJdbcUrl(),
+                        "read-replicas.stickiness=1m",
+                        "purge.enabled=false")
+                .run();
+    }
+
+    @AfterAll
+    static void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void readsShouldGoToTheReplicaUnlessTheUserJustWrote() {
+        ChatSessionService sessions = context.getBean(ChatSessionService.class);
+        ReadYourWrites readYourWrites = context.getBean(ReadYourWrites.class);
+        ChatSessionCreateRequest request = new ChatSessionCreateRequest();
+        request.setUserId("user-1");
+        request.setTitle("Routed");
+
+        ChatSessionResponse created = sessions.createSession(request);
+        List<ChatSessionResponse> fromReplica = sessions.listSessions("user-1", null, null, null, null, 10, false)
+                .getData();
+        readYourWrites.pinIfRecentWriter("user-1");
+        List<ChatSessionResponse> fromPrimary;
+        try {
+            fromPrimary = sessions.listSessions("user-1", null, null, null, null, 10, false).getData();
+        } finally {
+            readYourWrites.unpin();
+        }
+
+        assertThat(fromReplica).isEmpty();
+        assertThat(fromPrimary).extracting(ChatSessionResponse::getId).containsExactly(created.getId());
+    }
+}
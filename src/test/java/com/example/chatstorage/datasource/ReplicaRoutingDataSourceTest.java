@@ -0,0 +1,174 @@
+package com.example.chatstorage.datasource;
+
+import com.example.chatstorage.config.ReadReplicaProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Connection primaryConnection = connection(0);
+    private final DataSource primary = dataSource(primaryConnection);
+
+    @AfterEach
+    void unpin() {
+        new ReadYourWrites(properties()).unpin();
+    }
+
+    @Test
+    void readOnlyTransactionsShouldReadFromReplicasAndOthersFromPrimary() throws SQLException {
+        Connection replicaConnection = connection(0);
+        LazyConnectionDataSourceProxy dataSource = route(dataSource(replicaConnection));
+
+        runStatement(dataSource, true);
+        runStatement(dataSource, false);
+
+        verify(replicaConnection, times(2)).createStatement();
+        verify(primaryConnection, times(1)).createStatement();
+        assertThat(reads("replica")).isEqualTo(1);
+    }
+
+    @Test
+    void recentWriterShouldReadFromPrimary() throws SQLException {
+        Connection replicaConnection = connection(0);
+        LazyConnectionDataSourceProxy dataSource = route(dataSource(replicaConnection));
+        ReadYourWrites readYourWrites = new ReadYourWrites(properties());
+
+        readYourWrites.recordWrite("user-1");
+        readYourWrites.pinIfRecentWriter("user-1");
+        runStatement(dataSource, true);
+        readYourWrites.unpin();
+        readYourWrites.pinIfRecentWriter("user-2");
+        runStatement(dataSource, true);
+
+        assertThat(reads("primary-pinned")).isEqualTo(1);
+        assertThat(reads("replica")).isEqualTo(1);
+    }
+
+    @Test
+    void unreachableReplicaShouldLeaveRotationUntilItRecovers() throws SQLException {
+        Connection replicaConnection = connection(0);
+        DataSource replica = mock(DataSource.class);
+        when(replica.getConnection())
+                .thenReturn(replicaConnection)
+                .thenThrow(new SQLException("Connection refused"))
+                .thenReturn(replicaConnection);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary,
+                List.of(new ReplicaPool("replica-1", replica)), Duration.ofSeconds(10), meterRegistry);
+        LazyConnectionDataSourceProxy dataSource = proxy(routing);
+
+        runStatement(dataSource, true);
+        runStatement(dataSource, true);
+        assertThat(reads("primary-fallback")).isEqualTo(2);
+        assertThat(meterRegistry.get("chatstorage.datasource.replica.healthy").gauge().value()).isZero();
+
+        routing.checkReplicas();
+        runStatement(dataSource, true);
+        assertThat(reads("replica")).isEqualTo(1);
+        verify(replica, times(4)).getConnection();
+    }
+
+    @Test
+    void laggingReplicaShouldNotReceiveReads() throws SQLException {
+        Connection replicaConnection = connection(30);
+        LazyConnectionDataSourceProxy dataSource = route(dataSource(replicaConnection));
+
+        runStatement(dataSource, true);
+
+        assertThat(reads("primary-fallback")).isEqualTo(1);
+        assertThat(meterRegistry.get("chatstorage.datasource.replica.lag").gauge().value()).isEqualTo(30);
+        verify(replicaConnection, times(1)).createStatement();
+    }
+
+    @Test
+    void stickinessShorterThanLagPlusHealthCheckIntervalShouldFailStartup() {
+        ReadReplicaProperties properties = properties();
+        properties.setMaxLag(Duration.ofSeconds(10));
+        properties.setHealthCheckIntervalMs(5000);
+        properties.setStickiness(Duration.ofSeconds(10));
+
+        assertThatThrownBy(() -> new ReadYourWrites(properties)).isInstanceOf(IllegalStateException.class);
+        properties.setStickiness(Duration.ofSeconds(15));
+        new ReadYourWrites(properties);
+    }
+
+    private LazyConnectionDataSourceProxy route(DataSource replica) {
+        return proxy(new ReplicaRoutingDataSource(primary, List.of(new ReplicaPool("replica-1", replica)),
+                Duration.ofSeconds(10), meterRegistry));
+    }
+
+    private LazyConnectionDataSourceProxy proxy(ReplicaRoutingDataSource routing) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(routing);
+        return dataSource;
+    }
+
+    private static void runStatement(DataSource dataSource, boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        transaction.executeWithoutResult(status -> {
+            try {
+                DataSourceUtils.getConnection(dataSource).createStatement();
+            } catch (SQLException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+    }
+
+    private double reads(String target) {
+        return meterRegistry.get("chatstorage.datasource.reads").tag("target", target).counter().count();
+    }
+
+    private static ReadReplicaProperties properties() {
+        ReadReplicaProperties properties = new ReadReplicaProperties();
+        properties.setUrls(List.of("jdbc:postgresql://replica:5432/chatdb"));
+        return properties;
+    }
+
+    private static DataSource dataSource(Connection connection) {
+        try {
+            DataSource dataSource = mock(DataSource.class);
+            when(dataSource.getConnection()).thenReturn(connection);
+            return dataSource;
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // A connection whose health check reports the given replay lag.
+    private static Connection connection(double lagSeconds) {
+        try {
+            Connection connection = mock(Connection.class);
+            Statement statement = mock(Statement.class);
+            ResultSet resultSet = mock(ResultSet.class);
+            when(connection.createStatement()).thenReturn(statement);
+            when(statement.executeQuery(anyString())).thenReturn(resultSet);
+            when(resultSet.next()).thenReturn(true);
+            when(resultSet.getDouble(1)).thenReturn(lagSeconds);
+            return connection;
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.chatstorage.domain;
+
+import com.example.chatstorage.config.MessageCompressionProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompressedTextConverterTest {
+
+    private static final String[] WORDS = {
+            "retrieval", "document", "context", "the", "policy", "invoice", "customer", "of", "and", "quarterly"
+    };
+
+    private final CompressedTextConverter converter = converter(true, 512);
+
+    @Test
+    void largeContextShouldBeStoredCompressedAndReadBack() {
+        String context = ragContext(4_000);
+
+        byte[] stored = converter.convertToDatabaseColumn(CompressedText.of(context));
+
+        assertThat(stored[0]).isEqualTo(TextCodec.LZ4_BLOCK);
+        assertThat(stored.length).isLessThan(context.length() / 2);
+        assertThat(converter.convertToEntityAttribute(stored).text()).isEqualTo(context);
+    }
+
+    @Test
+    void smallOrIncompressibleContextShouldBeStoredAsPlainUtf8() {
+        String small = ragContext(200);
+        StringBuilder noise = new StringBuilder();
+        Random random = new Random(3);
+        while (noise.length() < 2_000) {
+            noise.appendCodePoint(0x4E00 + random.nextInt(0x5000));
+        }
+
+        assertThat(converter.convertToDatabaseColumn(CompressedText.of(small)))
+                .isEqualTo(small.getBytes(StandardCharsets.UTF_8));
+        assertThat(converter.convertToDatabaseColumn(CompressedText.of(noise.toString())))
+                .isEqualTo(noise.toString().getBytes(StandardCharsets.UTF_8));
+        assertThat(converter(false, 512).convertToDatabaseColumn(CompressedText.of(ragContext(4_000)))[0])
+                .isNotEqualTo(TextCodec.LZ4_BLOCK);
+    }
+
+    @Test
+    void rowsWrittenBeforeCompressionShouldReadUnchanged() {
+        String legacy = "Ünïcödé context written as TEXT " + ragContext(1_000);
+
+        CompressedText read = converter.convertToEntityAttribute(legacy.getBytes(StandardCharsets.UTF_8));
+
+        assertThat(read.text()).isEqualTo(legacy);
+        assertThat(converter.convertToEntityAttribute(new byte[0]).text()).isEmpty();
+        assertThat(converter.convertToEntityAttribute(null)).isNull();
+    }
+
+    @Test
+    void loadedValuesShouldBeWrittenBackWithoutReencoding() {
+        byte[] stored = converter.convertToDatabaseColumn(CompressedText.of(ragContext(4_000)));
+
+        CompressedText read = converter.convertToEntityAttribute(stored);
+
+        assertThat(converter.convertToDatabaseColumn(read)).isSameAs(stored);
+    }
+
+    private static CompressedTextConverter converter(boolean enabled, long minBytes) {
+        MessageCompressionProperties properties = new MessageCompressionProperties();
+        properties.setEnabled(enabled);
+        properties.setMinSize(DataSize.ofBytes(minBytes));
+        return new CompressedTextConverter(properties);
+    }
+
+    private static String ragContext(int length) {
+        Random random = new Random(length);
+        StringBuilder builder = new StringBuilder("[{\"doc\":\"doc-42\",\"text\":\"");
+        while (builder.length() < length) {
+            builder.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        builder.setLength(length);
+        return builder.toString();
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.chatstorage.load;
+
+import com.example.chatstorage.ChatStorageApplication;
+import com.example.chatstorage.security.ApiKeyService;
+import com.example.chatstorage.security.ApiKeyTier;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@Tag("load")
+class ChatStorageLoadTest {
+
+    private static final int BATCH_LIMIT = 100;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // pg_column_size is what a row actually holds after application and TOAST compression. context_bytes is what
+    // the contexts would take stored inline and uncompressed; the size of an LZ4 payload is read from its header.
+    private static final String STORAGE_SQL = """
+            WITH message_contexts AS (
+                SELECT coalesce(b.data, m.context) AS data
+                FROM chat_messages m
+                LEFT JOIN context_blobs b ON b.hash = m.context_hash
+            )
+            SELECT pg_total_relation_size('chat_messages') AS table_bytes,
+                   pg_total_relation_size('context_blobs') AS context_blob_table_bytes,
+                   (SELECT coalesce(sum(octet_length(content)), 0) FROM chat_messages) AS content_bytes,
+                   (SELECT coalesce(sum(pg_column_size(content)), 0) FROM chat_messages) AS content_stored_bytes,
+                   (SELECT coalesce(sum(CASE WHEN substring(data FROM 1 FOR 1) = '\\xfe'::bytea
+                                             THEN ('x' || encode(substring(data FROM 2 FOR 4), 'hex'))::bit(32)::int
+                                             ELSE octet_length(data) END), 0)
+                    FROM message_contexts) AS context_bytes,
+                   (SELECT coalesce(sum(pg_column_size(context)), 0) FROM chat_messages)
+                       + (SELECT coalesce(sum(pg_column_size(data)), 0) FROM context_blobs) AS context_stored_bytes
+            """;
+
+    private static final LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+    private static PostgreSQLContainer<?> postgres;
+    private static ConfigurableApplicationContext context;
+    private static HttpClient client;
+    private static String baseUrl;
+    private static String apiKey;
+
+    private final List<SeededSession> corpus = new ArrayList<>();
+    private final Queue<SeededSession> disposable = new ConcurrentLinkedQueue<>();
+    private final Map<Endpoint, EndpointStats> stats = new LinkedHashMap<>();
+
+    private record SeededSession(String id, String userId) {
+    }
+
+    private enum Endpoint {
+        GET_MESSAGES_BY_CURSOR("getMessagesByCursor", 25),
+        ADD_MESSAGE("addMessage", 25),
+        LIST_SESSIONS("listSessions", 12),
+        GET_MESSAGES("getMessages", 8),
+        ADD_MESSAGES("addMessages", 6),
+        CREATE_SESSION("createSession", 5),
+        RENAME_SESSION("renameSession", 5),
+        UPDATE_FAVORITE("updateFavorite", 5),
+        DELETE_SESSION("deleteSession", 5),
+        EXPORT_MESSAGES("exportMessages", 4);
+
+        // Named after the ChatSessionController handler so reports line up with the code.
+        private final String handler;
+        private final int weight;
+
+        Endpoint(String handler, int weight) {
+            this.handler = handler;
+            this.weight = weight;
+        }
+
+        static Endpoint pick(int roll) {
+            for (Endpoint endpoint : values()) {
+                roll -= endpoint.weight;
+                if (roll < 0) {
+                    return endpoint;
+                }
+            }
+            throw new IllegalStateException();
+        }
+
+        static int totalWeight() {
+            int total = 0;
+            for (Endpoint endpoint : values()) {
+                total += endpoint.weight;
+            }
+            return total;
+        }
+    }
+
+    @BeforeAll
+    static void startApplication() {
+        String jdbcUrl = settings.jdbcUrl();
+        String username = settings.jdbcUsername();
+        String password = settings.jdbcPassword();
+        if (jdbcUrl == null) {
+            assumeTrue(DockerClientFactory.instance().isDockerAvailable(),
+                    "Set -Dload.jdbc-url or provide Docker for a throwaway PostgreSQL");
+            postgres = new PostgreSQLContainer<>("postgres:16").withCommand("postgres", "-c", "max_connections=200");
+            postgres.start();
+            jdbcUrl = postgres.getJdbcUrl();
+            username = postgres.getUsername();
+            password = postgres.getPassword();
+        }
+        context = new SpringApplicationBuilder(ChatStorageApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=" + jdbcUrl,
+                        "spring.datasource.username=" + username,
+                        "spring.datasource.password=" + password,
+                        "logging.config=classpath:benchmark/log4j2-async.xml",
+                        "ratelimit.premium-requests-per-minute=" + Integer.MAX_VALUE,
+                        "KEY_EXPIRATION_MS=86400000")
+                .run();
+        client = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/v1";
+        apiKey = context.getBean(ApiKeyService.class).generateApiKey(ApiKeyTier.PREMIUM).getApiKey();
+    }
+
+    @AfterAll
+    static void stopApplication() {
+        if (client != null) {
+            client.close();
+        }
+        if (context != null) {
+            context.close();
+        }
+        if (postgres != null) {
+            postgres.stop();
+        }
+    }
+
+    @Test
+    void mixedWorkloadAgainstSeededCorpus() throws Exception {
+        LoadReport baseline = LoadReport.readBaseline();
+        if (settings.maxP99Regression() != null) {
+            // Fails before seeding rather than after the whole run.
+            LoadReport.requireRecorded(baseline);
+        }
+        long seedStarted = System.nanoTime();
+        seedCorpus();
+        System.out.printf("Seeded %d users, %d sessions, %d messages in %.1f s%n", settings.users(),
+                settings.sessions(), settings.messages(), (System.nanoTime() - seedStarted) / 1e9);
+        Map<String, Object> storage = measureStorage();
+        System.out.printf("Storage after seeding: %s%n", storage);
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint, new EndpointStats(endpoint.handler));
+        }
+        drive(settings.warmup().toNanos());
+        stats.values().forEach(EndpointStats::reset);
+        long started = System.nanoTime();
+        drive(settings.duration().toNanos());
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+
+        LoadReport report = new LoadReport(Instant.now(), corpusDescription(storage), settings.clients(), elapsedSeconds,
+                stats.values().stream().map(endpointStats -> endpointStats.snapshot(elapsedSeconds)).toList());
+        System.out.print(report.format(baseline));
+        report.write(Path.of("target", "load-report.json"));
+        if (settings.writeBaseline()) {
+            report.write(LoadReport.BASELINE_SOURCE);
+        }
+
+        assertThat(report.endpoints()).allSatisfy(result -> assertThat(result.errors()).isZero());
+        if (settings.maxP99Regression() != null) {
+            assertThat(report.regressionsAgainst(baseline, settings.maxP99Regression())).isEmpty();
+        }
+    }
+
+    private void seedCorpus() throws Exception {
+        Semaphore inFlight = new Semaphore(settings.clients());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<SeededSession>> futures = new ArrayList<>();
+            for (int u = 0; u < settings.users(); u++) {
+                for (int s = 0; s < settings.sessionsPerUser(); s++) {
+                    String userId = "load-" + u;
+                    long sessionSeed = settings.seed() * 31 + (long) u * settings.sessionsPerUser() + s;
+                    futures.add(executor.submit(() -> {
+                        inFlight.acquire();
+                        try {
+                            return seedSession(userId, new CorpusGenerator(sessionSeed));
+                        } finally {
+                            inFlight.release();
+                        }
+                    }));
+                }
+            }
+            for (Future<SeededSession> future : futures) {
+                corpus.add(future.get());
+            }
+        }
+    }
+
+    private SeededSession seedSession(String userId, CorpusGenerator generator) throws IOException, InterruptedException {
+        SeededSession session = createSession(userId, generator);
+        int remaining = settings.messagesPerSession();
+        int index = 0;
+        while (remaining > 0) {
+            int batch = Math.min(BATCH_LIMIT, remaining);
+            HttpResponse<String> response = send(post("/sessions/" + session.id() + "/messages:batch",
+                    session.userId(), batchBody(generator, index, batch)));
+            assertThat(response.statusCode()).as(response.body()).isEqualTo(201);
+            index += batch;
+            remaining -= batch;
+        }
+        return session;
+    }
+
+    private void drive(long durationNanos) throws Exception {
+        long deadline = System.nanoTime() + durationNanos;
+        int totalWeight = Endpoint.totalWeight();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < settings.clients(); c++) {
+                CorpusGenerator generator = new CorpusGenerator(settings.seed() + 7919L * c);
+                futures.add(executor.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        execute(Endpoint.pick(generator.nextInt(totalWeight)), generator);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+    }
+
+    private void execute(Endpoint endpoint, CorpusGenerator generator) throws IOException, InterruptedException {
+        SeededSession session = corpus.get(generator.nextInt(corpus.size()));
+        String sessionPath = "/sessions/" + session.id();
+        HttpRequest request = switch (endpoint) {
+            case GET_MESSAGES_BY_CURSOR -> get(sessionPath + "/messages?pagination=cursor&direction="
+                    + (generator.nextInt(4) == 0 ? "NEXT" : "PREVIOUS") + "&size=20", session.userId());
+            case ADD_MESSAGE -> post(sessionPath + "/messages", session.userId(),
+                    messageBody(generator, generator.nextInt(2)).toString());
+            case LIST_SESSIONS -> get("/sessions?size=20" + (generator.nextInt(5) == 0 ? "&favorite=true" : ""),
+                    session.userId());
+            case GET_MESSAGES -> get(sessionPath + "/messages?page=" + generator.nextInt(3) + "&size=20",
+                    session.userId());
+            case ADD_MESSAGES -> post(sessionPath + "/messages:batch", session.userId(),
+                    batchBody(generator, 0, 2 + generator.nextInt(9)));
+            case CREATE_SESSION -> {
+                long start = System.nanoTime();
+                SeededSession created = createSession(session.userId(), generator);
+                stats.get(endpoint).record(System.nanoTime() - start, true);
+                disposable.add(created);
+                yield null;
+            }
+            case RENAME_SESSION -> patch(sessionPath + "/rename", session.userId(),
+                    "{\"title\":\"" + generator.title() + "\"}");
+            case UPDATE_FAVORITE -> patch(sessionPath + "/favorite", session.userId(),
+                    "{\"favorite\":" + (generator.nextInt(2) == 0) + "}");
+            case DELETE_SESSION -> {
+                SeededSession victim = disposable.poll();
+                yield victim != null ? delete("/sessions/" + victim.id(), victim.userId()) : null;
+            }
+            case EXPORT_MESSAGES -> get(sessionPath + "/messages:export", session.userId());
+        };
+        if (request == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            success = response.statusCode() < 300;
+        } catch (IOException ex) {
+            success = false;
+        }
+        stats.get(endpoint).record(System.nanoTime() - start, success);
+    }
+
+    private SeededSession createSession(String userId, CorpusGenerator generator) throws IOException, InterruptedException {
+        ObjectNode body = MAPPER.createObjectNode().put("userId", userId).put("title", generator.title());
+        HttpResponse<String> response = send(post("/sessions", userId, body.toString()));
+        if (response.statusCode() != 201) {
+            throw new IllegalStateException("Creating a session failed: " + response.body());
+        }
+        JsonNode created = MAPPER.readTree(response.body());
+        return new SeededSession(created.get("id").asText(), userId);
+    }
+
+    private static String batchBody(CorpusGenerator generator, int firstIndex, int count) {
+        ObjectNode body = MAPPER.createObjectNode();
+        ArrayNode messages = body.putArray("messages");
+        for (int i = 0; i < count; i++) {
+            messages.add(messageBody(generator, firstIndex + i));
+        }
+        return body.toString();
+    }
+
+    private static ObjectNode messageBody(CorpusGenerator generator, int index) {
+        boolean fromUser = index % 2 == 0;
+        ObjectNode message = MAPPER.createObjectNode()
+                .put("sender", fromUser ? "USER" : "ASSISTANT")
+                .put("content", fromUser ? generator.userContent() : generator.assistantContent());
+        String context = fromUser ? null : generator.context();
+        if (context != null) {
+            message.put("context", context);
+        }
+        return message;
+    }
+
+    private Map<String, Object> corpusDescription(Map<String, Object> storage) {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("users", settings.users());
+        description.put("sessionsPerUser", settings.sessionsPerUser());
+        description.put("messagesPerSession", settings.messagesPerSession());
+        description.put("seed", settings.seed());
+        description.put("storage", storage);
+        return description;
+    }
+
+    private static Map<String, Object> measureStorage() {
+        Map<String, Object> storage = new LinkedHashMap<>();
+        storage.put("messageCompression", context.getEnvironment().getProperty("message-compression.enabled"));
+        storage.putAll(context.getBean(JdbcTemplate.class).queryForMap(STORAGE_SQL));
+        return storage;
+    }
+
+    private static HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static HttpRequest get(String path, String userId) {
+        return builder(path, userId).GET().build();
+    }
+
+    private static HttpRequest post(String path, String userId, String json) {
+        return builder(path, userId).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private static HttpRequest patch(String path, String userId, String json) {
+        return builder(path, userId).header("Content-Type", "application/json")
+                .method("PATCH", HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private static HttpRequest delete(String path, String userId) {
+        return builder(path, userId).DELETE().build();
+    }
+
+    private static HttpRequest.Builder builder(String path, String userId) {
+        String separator = path.contains("?") ? "&" : "?";
+        URI uri = URI.create(baseUrl + path + separator + "userId=" + URLEncoder.encode(userId, StandardCharsets.UTF_8));
+        return HttpRequest.newBuilder(uri).header("X-API-KEY", apiKey);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.chatstorage.load;
+
+import java.util.Random;
+
+// Produces deterministic, text-like message bodies so payload sizes and compressibility resemble real chats:
+// short user questions, longer assistant answers, and retrieved RAG context chunks, all capped at the
+// 5000-character limit of ChatMessageCreateRequest.
+final class CorpusGenerator {
+
+    static final int MAX_LENGTH = 5000;
+    static final int TITLE_MAX_LENGTH = 20;
+    static final int CONTEXT_POOL = 2_000;
+
+    private static final String[] WORDS = {
+            "the", "session", "message", "storage", "query", "index", "latency", "user", "assistant", "context",
+            "retrieval", "document", "vector", "embedding", "answer", "question", "model", "token", "window",
+            "policy", "deploy", "replica", "database", "cursor", "page", "cache", "request", "response", "error",
+            "timeout", "configure", "rotate", "key", "signing", "partition", "archive", "summary", "customer",
+            "invoice", "schedule", "report", "quarterly", "revenue", "forecast", "incident", "runbook", "escalate",
+            "a", "of", "to", "and", "in", "is", "for", "with", "on", "that", "by", "this", "we", "can", "should"
+    };
+
+    private final Random random;
+
+    CorpusGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    String title() {
+        String title = capitalize(words(2 + random.nextInt(3)));
+        return title.length() > TITLE_MAX_LENGTH ? title.substring(0, TITLE_MAX_LENGTH).strip() : title;
+    }
+
+    String userContent() {
+        return sentence(40 + (int) Math.min(MAX_LENGTH - 40, Math.abs(random.nextGaussian()) * 250));
+    }
+
+    String assistantContent() {
+        // Log-normal: median around 900 characters with a long tail up to the limit.
+        int length = (int) Math.exp(6.8 + random.nextGaussian() * 0.7);
+        return sentence(Math.max(80, Math.min(MAX_LENGTH, length)));
+    }
+
+    // Retrieval returns the same chunks for related questions, so contexts are drawn with a skew from a fixed
+    // pool of distinct payloads rather than generated fresh for every message.
+    String context() {
+        if (random.nextInt(10) < 4) {
+            return null;
+        }
+        int contextId = (int) Math.min(CONTEXT_POOL - 1, Math.abs(random.nextGaussian()) * CONTEXT_POOL / 3);
+        return context(new Random(contextId));
+    }
+
+    private static String context(Random random) {
+        CorpusGenerator pooled = new CorpusGenerator(random.nextLong());
+        StringBuilder builder = new StringBuilder("[");
+        int chunks = 1 + random.nextInt(4);
+        for (int i = 0; i < chunks && builder.length() < MAX_LENGTH - 200; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"doc\":\"doc-").append(random.nextInt(10_000))
+                    .append("\",\"score\":").append(String.format("%.3f", random.nextDouble()))
+                    .append(",\"text\":\"")
+                    .append(pooled.sentence(Math.min(MAX_LENGTH - builder.length() - 10, 200 + random.nextInt(1000))))
+                    .append("\"}");
+        }
+        return builder.append(']').toString();
+    }
+
+    int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    private String sentence(int length) {
+        StringBuilder builder = new StringBuilder(length + 16);
+        while (builder.length() < length) {
+            if (!builder.isEmpty()) {
+                builder.append(random.nextInt(12) == 0 ? ". " : " ");
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        builder.setLength(length);
+        return capitalize(builder.toString().trim());
+    }
+
+    private String words(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+
+    private static String capitalize(String value) {
+        return value.isEmpty() ? value : Character.toUpperCase(value.charAt(0)) + value.substring(1);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.chatstorage.load;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+final class EndpointStats {
+
+    private static final long MAX_TRACKED_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final String endpoint;
+    private final Recorder recorder = new Recorder(MAX_TRACKED_NANOS, 3);
+    private final AtomicLong errors = new AtomicLong();
+
+    EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    void record(long latencyNanos, boolean success) {
+        recorder.recordValue(Math.min(latencyNanos, MAX_TRACKED_NANOS));
+        if (!success) {
+            errors.incrementAndGet();
+        }
+    }
+
+    void reset() {
+        recorder.reset();
+        errors.set(0);
+    }
+
+    LoadReport.EndpointResult snapshot(double elapsedSeconds) {
+        Histogram histogram = recorder.getIntervalHistogram();
+        return new LoadReport.EndpointResult(
+                endpoint,
+                histogram.getTotalCount(),
+                errors.get(),
+                histogram.getTotalCount() / elapsedSeconds,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(95)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getMaxValue()));
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+}
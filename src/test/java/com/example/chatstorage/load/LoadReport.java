@@ -0,0 +1,90 @@
+package com.example.chatstorage.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+record LoadReport(Instant recordedAt, Map<String, Object> corpus, int clients, double durationSeconds,
+                  List<EndpointResult> endpoints) {
+
+    static final String BASELINE_RESOURCE = "/load/baseline.json";
+    static final Path BASELINE_SOURCE = Path.of("src/test/resources/load/baseline.json");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules()
+            .enable(SerializationFeature.INDENT_OUTPUT)
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    record EndpointResult(String endpoint, long requests, long errors, double throughputPerSecond,
+                          double p50Ms, double p95Ms, double p99Ms, double maxMs) {
+    }
+
+    static LoadReport readBaseline() throws IOException {
+        try (InputStream input = LoadReport.class.getResourceAsStream(BASELINE_RESOURCE)) {
+            return input != null ? MAPPER.readValue(input, LoadReport.class) : null;
+        }
+    }
+
+    void write(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        MAPPER.writeValue(path.toFile(), this);
+    }
+
+    // Without a recorded run there is nothing to compare against, which must not pass as "no regressions".
+    static void requireRecorded(LoadReport baseline) {
+        if (baseline == null || baseline.byEndpoint().isEmpty()) {
+            throw new IllegalStateException("No load baseline recorded in " + BASELINE_SOURCE
+                    + "; record one with -Dload.write-baseline=true before using -Dload.max-p99-regression");
+        }
+    }
+
+    // Endpoints whose p99 grew by more than the allowed fraction over the baseline, or that the baseline lacks.
+    List<String> regressionsAgainst(LoadReport baseline, double maxP99Regression) {
+        requireRecorded(baseline);
+        Map<String, EndpointResult> previous = baseline.byEndpoint();
+        List<String> regressions = new ArrayList<>();
+        for (EndpointResult result : endpoints) {
+            EndpointResult before = previous.get(result.endpoint());
+            if (before == null || before.p99Ms() <= 0) {
+                regressions.add("%s has no baseline p99".formatted(result.endpoint()));
+            } else if (result.p99Ms() > before.p99Ms() * (1 + maxP99Regression)) {
+                regressions.add("%s p99 %.2f ms vs baseline %.2f ms".formatted(
+                        result.endpoint(), result.p99Ms(), before.p99Ms()));
+            }
+        }
+        return regressions;
+    }
+
+    String format(LoadReport baseline) {
+        Map<String, EndpointResult> previous = baseline != null ? baseline.byEndpoint() : Map.of();
+        StringBuilder out = new StringBuilder();
+        out.append("%-22s %9s %7s %9s %9s %9s %9s %14s%n".formatted(
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "p99 vs base"));
+        for (EndpointResult result : endpoints) {
+            EndpointResult before = previous.get(result.endpoint());
+            String delta = before != null && before.p99Ms() > 0
+                    ? "%+.1f%%".formatted((result.p99Ms() / before.p99Ms() - 1) * 100)
+                    : "n/a";
+            out.append("%-22s %9d %7d %9.1f %9.2f %9.2f %9.2f %14s%n".formatted(result.endpoint(),
+                    result.requests(), result.errors(), result.throughputPerSecond(),
+                    result.p50Ms(), result.p95Ms(), result.p99Ms(), delta));
+        }
+        return out.toString();
+    }
+
+    private Map<String, EndpointResult> byEndpoint() {
+        Map<String, EndpointResult> results = new LinkedHashMap<>();
+        if (endpoints != null) {
+            endpoints.forEach(result -> results.put(result.endpoint(), result));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.chatstorage.load;
+
+import java.time.Duration;
+
+// All knobs are system properties so a run can be resized from the command line, e.g.
+// mvn test -Pload -Dload.users=500 -Dload.duration=PT5M
+record LoadTestSettings(int users, int sessionsPerUser, int messagesPerSession, int clients,
+                        Duration warmup, Duration duration, long seed, String jdbcUrl, String jdbcUsername,
+                        String jdbcPassword, boolean writeBaseline, Double maxP99Regression) {
+
+    static LoadTestSettings fromSystemProperties() {
+        String maxRegression = System.getProperty("load.max-p99-regression");
+        return new LoadTestSettings(
+                Integer.getInteger("load.users", 50),
+                Integer.getInteger("load.sessions-per-user", 10),
+                Integer.getInteger("load.messages-per-session", 50),
+                Integer.getInteger("load.clients", 32),
+                Duration.parse(System.getProperty("load.warmup", "PT15S")),
+                Duration.parse(System.getProperty("load.duration", "PT60S")),
+                Long.getLong("load.seed", 42L),
+                System.getProperty("load.jdbc-url"),
+                System.getProperty("load.jdbc-username", "chat_user"),
+                System.getProperty("load.jdbc-password", "chat_password"),
+                Boolean.getBoolean("load.write-baseline"),
+                maxRegression != null ? Double.valueOf(maxRegression) : null);
+    }
+
+    int sessions() {
+        return users * sessionsPerUser;
+    }
+
+    long messages() {
+        return (long) sessions() * messagesPerSession;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.chatstorage.logging;
+
+import com.example.chatstorage.config.RequestLoggingProperties;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestResponseLoggingFilterTest {
+
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURED_ITERATIONS = 50_000;
+    private static final byte[] REQUEST_BODY = repeat('q', 1024);
+    private static final byte[] RESPONSE_BODY = repeat('r', 32 * 1024);
+
+    @AfterAll
+    static void restoreLogging() {
+        Configurator.reconfigure();
+    }
+
+    @Test
+    void capturesAtMostMaxBodyBytesWhilePassingTheFullResponseThrough() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        BodyCaptureResponseWrapper wrapper = new BodyCaptureResponseWrapper(response, 16);
+
+        wrapper.getOutputStream().write(RESPONSE_BODY);
+        wrapper.getOutputStream().write('!');
+
+        assertThat(response.getContentAsByteArray()).hasSize(RESPONSE_BODY.length + 1);
+        assertThat(wrapper.getCapturedBody()).isEqualTo(Arrays.copyOf(RESPONSE_BODY, 16));
+        assertThat(wrapper.isTruncated()).isTrue();
+    }
+
+    @Test
+    void capturesWriterOutputWithoutTruncationWhenUnderTheLimit() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        BodyCaptureResponseWrapper wrapper = new BodyCaptureResponseWrapper(response, 64);
+
+        wrapper.getWriter().write("{\"ok\":true}");
+
+        assertThat(new String(wrapper.getCapturedBody(), StandardCharsets.UTF_8)).isEqualTo("{\"ok\":true}");
+        assertThat(wrapper.isTruncated()).isFalse();
+        assertThat(response.getContentAsString()).isEqualTo("{\"ok\":true}");
+    }
+
+    @Test
+    void dropsTheCapturedBodyWhenTheResponseIsReset() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        BodyCaptureResponseWrapper wrapper = new BodyCaptureResponseWrapper(response, 64);
+
+        wrapper.getOutputStream().write("{\"partial\":".getBytes(StandardCharsets.UTF_8));
+        wrapper.resetBuffer();
+        wrapper.getOutputStream().write("{\"error\":1}".getBytes(StandardCharsets.UTF_8));
+        assertThat(new String(wrapper.getCapturedBody(), StandardCharsets.UTF_8)).isEqualTo("{\"error\":1}");
+
+        wrapper.reset();
+        wrapper.getWriter().write("{\"error\":2}");
+        assertThat(new String(wrapper.getCapturedBody(), StandardCharsets.UTF_8)).isEqualTo("{\"error\":2}");
+        assertThat(wrapper.isTruncated()).isFalse();
+    }
+
+    @Test
+    void passesRequestsThroughUnwrappedWhenNotSampled() throws Exception {
+        RequestLoggingProperties properties = new RequestLoggingProperties();
+        properties.setSampleRate(0.0);
+        RequestResponseLoggingFilter filter = new RequestResponseLoggingFilter(properties);
+        MockHttpServletRequest request = newRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<ServletRequest> seenRequest = new AtomicReference<>();
+        AtomicReference<ServletResponse> seenResponse = new AtomicReference<>();
+
+        filter.doFilter(request, response, (req, res) -> {
+            seenRequest.set(req);
+            seenResponse.set(res);
+        });
+
+        assertThat(seenRequest.get()).isSameAs(request);
+        assertThat(seenResponse.get()).isSameAs(response);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void filterOverheadLegacyVersusCurrent() throws Exception {
+        FilterChain chain = (req, res) -> {
+            req.getInputStream().readAllBytes();
+            ((HttpServletResponse) res).setContentType("application/json");
+            res.getOutputStream().write(RESPONSE_BODY);
+        };
+
+        reconfigure("/benchmark/log4j2-sync.xml");
+        long[] legacy = measure(new LegacyLoggingFilter(), chain);
+
+        reconfigure("/benchmark/log4j2-async.xml");
+        long[] current = measure(new RequestResponseLoggingFilter(new RequestLoggingProperties()), chain);
+
+        RequestLoggingProperties sampled = new RequestLoggingProperties();
+        sampled.setSampleRate(0.1);
+        long[] currentSampled = measure(new RequestResponseLoggingFilter(sampled), chain);
+
+        long[] baseline = measure(new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                            FilterChain filterChain) throws ServletException, IOException {
+                filterChain.doFilter(request, response);
+            }
+        }, chain);
+
+        report("no logging", baseline);
+        report("legacy (sync appenders, full body)", legacy);
+        report("current (async, 2 KB cap)", current);
+        report("current (async, 2 KB cap, 10% sampled)", currentSampled);
+    }
+
+    private static long[] measure(OncePerRequestFilter filter, FilterChain chain) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            filter.doFilter(newRequest(), new MockHttpServletResponse(), chain);
+        }
+        long[] samples = new long[MEASURED_ITERATIONS];
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            MockHttpServletRequest request = newRequest();
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            long start = System.nanoTime();
+            filter.doFilter(request, response, chain);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    private static MockHttpServletRequest newRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/sessions/abc/messages");
+        request.setQueryString("userId=user-1");
+        request.addHeader("X-API-KEY", "secret-key");
+        request.addHeader("Content-Type", "application/json");
+        request.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        request.setContent(REQUEST_BODY);
+        return request;
+    }
+
+    private static void reconfigure(String resource) throws URISyntaxException {
+        Configurator.reconfigure(RequestResponseLoggingFilterTest.class.getResource(resource).toURI());
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        return sorted[(int) Math.ceil(percentile * sorted.length) - 1];
+    }
+
+    private static void report(String name, long[] sorted) {
+        System.out.printf("%-42s p50=%6.1fus p99=%7.1fus p99.9=%7.1fus%n", name,
+                percentile(sorted, 0.50) / 1_000.0,
+                percentile(sorted, 0.99) / 1_000.0,
+                percentile(sorted, 0.999) / 1_000.0);
+    }
+
+    private static byte[] repeat(char c, int length) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) c);
+        return bytes;
+    }
+
+    private static class LegacyLoggingFilter extends OncePerRequestFilter {
+
+        private static final Logger requestLogger = LogManager.getLogger("REQUEST_LOG");
+        private static final Logger responseLogger = LogManager.getLogger("RESPONSE_LOG");
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                        FilterChain filterChain) throws ServletException, IOException {
+            ContentCachingRequestWrapper requestWrapper = new ContentCachingRequestWrapper(request);
+            ContentCachingResponseWrapper responseWrapper = new ContentCachingResponseWrapper(response);
+            long startTime = System.currentTimeMillis();
+            try {
+                filterChain.doFilter(requestWrapper, responseWrapper);
+            } finally {
+                long duration = System.currentTimeMillis() - startTime;
+                Map<String, String> requestHeaders = Collections.list(requestWrapper.getHeaderNames()).stream()
+                        .collect(Collectors.toMap(name -> name, requestWrapper::getHeader,
+                                (first, second) -> second, LinkedHashMap::new));
+                requestLogger.info("method={} uri={} query={} headers={} payload={}",
+                        requestWrapper.getMethod(),
+                        requestWrapper.getRequestURI(),
+                        requestWrapper.getQueryString(),
+                        requestHeaders,
+                        new String(requestWrapper.getContentAsByteArray(), StandardCharsets.UTF_8));
+                Map<String, String> responseHeaders = responseWrapper.getHeaderNames().stream()
+                        .collect(Collectors.toMap(name -> name, responseWrapper::getHeader,
+                                (first, second) -> second, LinkedHashMap::new));
+                responseLogger.info("status={} durationMs={} headers={} payload={}",
+                        responseWrapper.getStatus(),
+                        duration,
+                        responseHeaders,
+                        new String(responseWrapper.getContentAsByteArray(), StandardCharsets.UTF_8));
+                responseWrapper.copyBodyToResponse();
+            }
+        }
+    }
+}
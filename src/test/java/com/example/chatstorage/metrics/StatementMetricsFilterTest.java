@@ -0,0 +1,52 @@
+package com.example.chatstorage.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatementMetricsFilterTest {
+
+    private static final String MESSAGES_URI = "/api/v1/sessions/{sessionId}/messages";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StatementMetricsFilter filter = new StatementMetricsFilter(meterRegistry);
+
+    @Test
+    void recordsStatementsExecutedDuringTheRequestByRoute() throws Exception {
+        StatementMetricsListener listener = new StatementMetricsListener();
+
+        filter.doFilter(new MockHttpServletRequest("POST", "/api/v1/sessions/3f1c/messages"),
+                new MockHttpServletResponse(), (req, res) -> {
+                    req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, MESSAGES_URI);
+                    listener.jdbcExecuteStatementStart();
+                    listener.jdbcExecuteStatementEnd();
+                    listener.jdbcExecuteBatchStart();
+                    listener.jdbcExecuteBatchEnd();
+                });
+
+        DistributionSummary statements = meterRegistry.get(StatementMetricsFilter.STATEMENTS)
+                .tag("method", "POST").tag("uri", MESSAGES_URI).summary();
+        assertThat(statements.count()).isEqualTo(1);
+        assertThat(statements.totalAmount()).isEqualTo(2);
+        assertThat(meterRegistry.get(StatementMetricsFilter.STATEMENT_TIME).timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void ignoresStatementsOutsideARequestAndUnmappedRequests() throws Exception {
+        StatementMetricsListener listener = new StatementMetricsListener();
+        listener.jdbcExecuteStatementStart();
+        listener.jdbcExecuteStatementEnd();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/missing"), new MockHttpServletResponse(),
+                (req, res) -> {
+                });
+
+        assertThat(RequestStatements.current()).isNull();
+        assertThat(meterRegistry.find(StatementMetricsFilter.STATEMENTS).meters()).isEmpty();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.chatstorage.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class HotQueryPlanTest {
+
+    private static final String SESSION_ID = "'00000000-0000-0000-0000-000000000042'";
+    private static final String USER_ID = "'user-42'";
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16");
+
+    @BeforeAll
+    static void migrateAndSeed() throws SQLException {
+        Flyway.configure()
+                .dataSource(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("""
+                    INSERT INTO chat_sessions (id, user_id, title, is_favorite, created_at, updated_at, version)
+                    SELECT ('00000000-0000-0000-0000-' || lpad(to_hex(s), 12, '0'))::uuid,
+                           'user-' || (s % 2000),
+                           'session ' || s,
+                           s % 7 = 0,
+                           now() - (s || ' minutes')::interval,
+                           now() - ((s % 5000) || ' seconds')::interval,
+                           0
+                    FROM generate_series(1, 50000) AS s
+                    """);
+            statement.execute("""
+                    INSERT INTO chat_messages (id, session_id, sender, content, context, created_at)
+                    SELECT gen_random_uuid(),
+                           ('00000000-0000-0000-0000-' || lpad(to_hex(1 + m % 50000), 12, '0'))::uuid,
+                           CASE m % 3 WHEN 0 THEN 'USER' WHEN 1 THEN 'ASSISTANT' ELSE 'SYSTEM' END,
+                           repeat('content ', 20),
+                           NULL,
+                           now() - (m || ' milliseconds')::interval
+                    FROM generate_series(1, 1000000) AS m
+                    """);
+            statement.execute("ANALYZE");
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "SELECT * FROM chat_messages WHERE session_id = " + SESSION_ID
+                    + " ORDER BY created_at, id LIMIT 21",
+            "SELECT * FROM chat_messages WHERE session_id = " + SESSION_ID
+                    + " ORDER BY created_at DESC, id DESC LIMIT 21",
+            "SELECT * FROM chat_messages WHERE session_id = " + SESSION_ID
+                    + " AND created_at >= now() - interval '1 minute'"
+                    + " AND (created_at > now() - interval '1 minute' OR id > '00000000-0000-0000-0000-000000000000')"
+                    + " ORDER BY created_at, id LIMIT 21",
+            "SELECT * FROM chat_messages WHERE session_id = " + SESSION_ID
+                    + " AND created_at <= now() AND (created_at < now() OR id < 'ffffffff-ffff-ffff-ffff-ffffffffffff')"
+                    + " ORDER BY created_at DESC, id DESC LIMIT 21",
+            "SELECT * FROM chat_messages WHERE session_id = " + SESSION_ID
+                    + " ORDER BY created_at OFFSET 0 LIMIT 20",
+            "SELECT count(*) FROM chat_messages WHERE session_id = " + SESSION_ID,
+            "SELECT id FROM chat_messages WHERE session_id = " + SESSION_ID,
+            "SELECT * FROM chat_sessions WHERE id = " + SESSION_ID + " AND user_id = " + USER_ID
+                    + " AND deleted_at IS NULL",
+            "SELECT * FROM chat_sessions WHERE user_id = " + USER_ID + " AND deleted_at IS NULL"
+                    + " ORDER BY updated_at DESC, id DESC LIMIT 21",
+            "SELECT * FROM chat_sessions WHERE user_id = " + USER_ID + " AND deleted_at IS NULL"
+                    + " AND updated_at <= now() AND (updated_at < now() OR id < 'ffffffff-ffff-ffff-ffff-ffffffffffff')"
+                    + " ORDER BY updated_at DESC, id DESC LIMIT 21",
+            "SELECT * FROM chat_sessions WHERE user_id = " + USER_ID + " AND is_favorite = true AND deleted_at IS NULL"
+                    + " ORDER BY updated_at DESC, id DESC LIMIT 21",
+            "SELECT count(*) FROM chat_sessions WHERE user_id = " + USER_ID
+                    + " AND updated_at >= now() - interval '1 hour' AND deleted_at IS NULL",
+            "SELECT id FROM chat_sessions WHERE deleted_at IS NOT NULL ORDER BY deleted_at LIMIT 10",
+            "SELECT m.id FROM chat_messages m JOIN chat_sessions s ON s.id = m.session_id"
+                    + " WHERE m.user_id = " + USER_ID
+                    + " AND m.search_vector @@ websearch_to_tsquery('english', 'ferry timetable')"
+                    + " AND s.deleted_at IS NULL",
+            "SELECT id FROM chat_sessions WHERE user_id = " + USER_ID + " AND deleted_at IS NULL"
+                    + " AND 'session' <% title",
+            "DELETE FROM chat_messages WHERE id IN"
+                    + " (SELECT id FROM chat_messages WHERE session_id = " + SESSION_ID + " LIMIT 1000)"
+    })
+    void hotQueryShouldNotScanSequentially(String sql) throws SQLException {
+        String plan = explain(sql);
+        assertThat(plan).as(plan).doesNotContain("Seq Scan");
+    }
+
+    // Every seeded message contains the word, so an index that could not filter by user would read all of them.
+    @Test
+    void messageSearchShouldFilterByUserInsideTheIndexScan() throws SQLException {
+        String plan = explain("SELECT m.id FROM chat_messages m"
+                + " WHERE m.user_id = " + USER_ID + " AND m.search_vector @@ websearch_to_tsquery('english', 'content')");
+        assertThat(plan).as(plan).contains("user_search").doesNotContain("Seq Scan");
+        assertThat(plan.lines().filter(line -> line.contains("Index Cond")).toList())
+                .as(plan)
+                .isNotEmpty()
+                .allMatch(line -> line.contains("user_id") && line.contains("search_vector"));
+    }
+
+    @Test
+    void contextShouldBeSearchableThroughItsBlob() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            // Blob data is opaque to PostgreSQL (it may be LZ4); only the vector passed in at acquire time counts.
+            statement.execute("INSERT INTO context_blobs (hash, data, ref_count, search_vector)"
+                    + " VALUES ('\\x01', '\\xfe00', 1, setweight(to_tsvector('english', 'harbour ferry timetable'), 'B'))");
+            statement.execute("INSERT INTO chat_messages (id, session_id, sender, content, context_hash, created_at)"
+                    + " VALUES (gen_random_uuid(), " + SESSION_ID + ", 'USER', 'when does it leave?', '\\x01', now())");
+            try (ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM chat_messages"
+                    + " WHERE search_vector @@ websearch_to_tsquery('english', 'harbour timetable')")) {
+                resultSet.next();
+                assertThat(resultSet.getLong(1)).isEqualTo(1);
+            }
+        }
+    }
+
+    private static String explain(String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("EXPLAIN " + sql)) {
+            while (resultSet.next()) {
+                plan.append(resultSet.getString(1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(POSTGRES.getJdbcUrl(), POSTGRES.getUsername(), POSTGRES.getPassword());
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.chatstorage.security;
+
+import com.example.chatstorage.config.RateLimitProperties;
+import com.example.chatstorage.config.SecurityProperties;
+import com.example.chatstorage.security.exception.ApiKeyExpiredException;
+import com.example.chatstorage.security.exception.ApiKeyRateLimitExceededException;
+import com.example.chatstorage.security.exception.InvalidApiKeyException;
+import com.example.chatstorage.security.exception.MissingApiKeyException;
+import com.example.chatstorage.security.ratelimit.InMemoryRateLimitStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ApiKeyServiceTest {
+
+    private static final int THREADS = 64;
+
+    private final MutableClock clock = new MutableClock(1_700_000_000_000L);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void limitShouldResetWhenWindowRollsOver() {
+        ApiKeyService service = service(300_000, 3);
+        String key = service.generateApiKey().getApiKey();
+
+        for (int i = 0; i < 3; i++) {
+            service.validateAndRecordUsage(key);
+        }
+        assertThrows(ApiKeyRateLimitExceededException.class, () -> service.validateAndRecordUsage(key));
+
+        clock.advance(60_000);
+        service.validateAndRecordUsage(key);
+    }
+
+    @Test
+    void expiredKeysShouldBeSwept() {
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore(clock);
+        ApiKeyService service = new ApiKeyService(new SecurityProperties("test-secret", 5_000),
+                new RateLimitProperties(10), store, meterRegistry, clock);
+        service.validateAndRecordUsage(service.generateApiKey().getApiKey());
+        service.validateAndRecordUsage(service.generateApiKey().getApiKey());
+        assertThat(store.trackedKeys()).isEqualTo(2);
+
+        clock.advance(6_000);
+        store.sweepExpired();
+
+        assertThat(store.trackedKeys()).isZero();
+    }
+
+    @Test
+    void keysShouldBeVerifiableByAnyInstanceSharingTheSecret() {
+        String key = service(60_000, 10).generateApiKey().getApiKey();
+        service(60_000, 10).validateAndRecordUsage(key);
+    }
+
+    @Test
+    void tamperedOrForeignKeysShouldBeRejected() {
+        ApiKeyService service = service(60_000, 10);
+        String key = service.generateApiKey().getApiKey();
+        char last = key.charAt(key.length() - 1);
+        String tampered = key.substring(0, key.length() - 1) + (last == 'A' ? 'B' : 'A');
+        ApiKeyService otherSecret = new ApiKeyService(new SecurityProperties("other-secret", 60_000),
+                new RateLimitProperties(10), new InMemoryRateLimitStore(clock), meterRegistry, clock);
+
+        assertThrows(InvalidApiKeyException.class, () -> service.validateAndRecordUsage(tampered));
+        assertThrows(InvalidApiKeyException.class, () -> service.validateAndRecordUsage("not-a-key"));
+        assertThrows(InvalidApiKeyException.class, () -> otherSecret.validateAndRecordUsage(key));
+        assertThrows(MissingApiKeyException.class, () -> service.validateAndRecordUsage("  "));
+    }
+
+    @Test
+    void premiumTierShouldUseItsOwnLimit() {
+        ApiKeyService service = new ApiKeyService(new SecurityProperties("test-secret", 60_000),
+                new RateLimitProperties(1, 3), new InMemoryRateLimitStore(clock), meterRegistry, clock);
+        String key = service.generateApiKey(ApiKeyTier.PREMIUM).getApiKey();
+        for (int i = 0; i < 3; i++) {
+            service.validateAndRecordUsage(key);
+        }
+        assertThrows(ApiKeyRateLimitExceededException.class, () -> service.validateAndRecordUsage(key));
+    }
+
+    @Test
+    void expiredKeyShouldBeRejected() {
+        ApiKeyService service = service(5_000, 10);
+        String key = service.generateApiKey().getApiKey();
+        clock.advance(5_000);
+        assertThrows(ApiKeyExpiredException.class, () -> service.validateAndRecordUsage(key));
+    }
+
+    @Test
+    void rejectionsShouldBeCountedByReason() {
+        ApiKeyService service = service(5_000, 1);
+        String key = service.generateApiKey().getApiKey();
+        service.validateAndRecordUsage(key);
+
+        assertThrows(ApiKeyRateLimitExceededException.class, () -> service.validateAndRecordUsage(key));
+        assertThrows(ApiKeyRateLimitExceededException.class, () -> service.validateAndRecordUsage(key));
+        assertThrows(MissingApiKeyException.class, () -> service.validateAndRecordUsage(null));
+        assertThrows(InvalidApiKeyException.class, () -> service.validateAndRecordUsage("not-a-key"));
+        clock.advance(5_000);
+        assertThrows(ApiKeyExpiredException.class, () -> service.validateAndRecordUsage(key));
+
+        assertThat(rejections("rate_limited")).isEqualTo(2);
+        assertThat(rejections("missing")).isEqualTo(1);
+        assertThat(rejections("invalid")).isEqualTo(1);
+        assertThat(rejections("expired")).isEqualTo(1);
+        assertThat(meterRegistry.get("chatstorage.apikey.tracked").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void contendedKeyShouldAdmitExactlyTheLimit() throws Exception {
+        int limit = 10_000;
+        ApiKeyService service = service(60_000, limit);
+        String key = service.generateApiKey().getApiKey();
+
+        AtomicLong admitted = new AtomicLong();
+        runConcurrently(THREADS, 500, () -> {
+            try {
+                service.validateAndRecordUsage(key);
+                admitted.incrementAndGet();
+            } catch (ApiKeyRateLimitExceededException ex) {
+                // expected once the window is exhausted
+            }
+        });
+
+        assertThat(admitted.get()).isEqualTo(limit);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void contendedKeyThroughput() throws Exception {
+        int perThread = 20_000;
+        ApiKeyService service = service(60_000, THREADS * perThread);
+        String key = service.generateApiKey().getApiKey();
+
+        LongAdder admitted = new LongAdder();
+        long start = System.nanoTime();
+        runConcurrently(THREADS, perThread, () -> {
+            service.validateAndRecordUsage(key);
+            admitted.increment();
+        });
+        long elapsedNanos = System.nanoTime() - start;
+
+        double opsPerSecond = THREADS * (double) perThread / (elapsedNanos / 1_000_000_000.0);
+        System.out.printf("validateAndRecordUsage: %d threads on one key, %.0f ops/s%n", THREADS, opsPerSecond);
+        assertThat(admitted.sum()).isEqualTo((long) THREADS * perThread);
+        assertThrows(ApiKeyRateLimitExceededException.class, () -> service.validateAndRecordUsage(key));
+    }
+
+    private void runConcurrently(int threads, int iterations, Runnable action) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < iterations; i++) {
+                        action.run();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private double rejections(String reason) {
+        return meterRegistry.get("chatstorage.apikey.rejections").tag("reason", reason).counter().count();
+    }
+
+    private ApiKeyService service(long expirationMs, int requestsPerMinute) {
+        return new ApiKeyService(new SecurityProperties("test-secret", expirationMs),
+                new RateLimitProperties(requestsPerMinute), new InMemoryRateLimitStore(clock), meterRegistry, clock);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private final AtomicLong millis;
+
+        private MutableClock(long millis) {
+            this.millis = new AtomicLong(millis);
+        }
+
+        private void advance(long deltaMs) {
+            millis.addAndGet(deltaMs);
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
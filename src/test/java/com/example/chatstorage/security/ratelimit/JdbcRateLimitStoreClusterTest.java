@@ -0,0 +1,83 @@
+package com.example.chatstorage.security.ratelimit;
+
+import com.example.chatstorage.ChatStorageApplication;
+import com.example.chatstorage.security.ApiKeyService;
+import com.example.chatstorage.security.exception.ApiKeyRateLimitExceededException;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class JdbcRateLimitStoreClusterTest {
+
+    private static final int REPLICAS = 3;
+    private static final int LIMIT = 60;
+    private static final long SYNC_INTERVAL_MS = 50;
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16");
+
+    private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+    @BeforeAll
+    static void startReplicas() {
+        for (int i = 0; i < REPLICAS; i++) {
+            contexts.add(new SpringApplicationBuilder(ChatStorageApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .properties(
+                            "spring.datasource.url=" + POSTGRES.getJdbcUrl(),
+                            "spring.datasource.username=" + POSTGRES.getUsername(),
+                            "spring.datasource.password=" + POSTGRES.getPassword(),
+                            "RATE_LIMIT_REQUESTS_PER_MINUTE=" + LIMIT,
+                            "ratelimit.store=jdbc",
+                            "ratelimit.sync-interval-ms=" + SYNC_INTERVAL_MS,
+                            "purge.enabled=false")
+                    .run());
+        }
+    }
+
+    @AfterAll
+    static void stopReplicas() {
+        contexts.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    void limitShouldHoldAcrossReplicas() throws InterruptedException {
+        awaitFreshWindow();
+        String key = contexts.get(0).getBean(ApiKeyService.class).generateApiKey().getApiKey();
+
+        int admitted = 0;
+        for (int i = 0; i < LIMIT * 3; i++) {
+            ApiKeyService replica = contexts.get(i % REPLICAS).getBean(ApiKeyService.class);
+            try {
+                replica.validateAndRecordUsage(key);
+                admitted++;
+            } catch (ApiKeyRateLimitExceededException ex) {
+                // expected once the shared window is exhausted
+            }
+            Thread.sleep(10);
+        }
+
+        // Each replica may over-admit by what it sees between two syncs.
+        long slack = REPLICAS * (SYNC_INTERVAL_MS / 10 + 1);
+        assertThat(admitted).isBetween(LIMIT, (int) (LIMIT + slack));
+    }
+
+    private static void awaitFreshWindow() throws InterruptedException {
+        long intoWindow = System.currentTimeMillis() % InMemoryRateLimitStore.WINDOW_MS;
+        if (intoWindow > InMemoryRateLimitStore.WINDOW_MS - 15_000) {
+            Thread.sleep(InMemoryRateLimitStore.WINDOW_MS - intoWindow + 100);
+        }
+    }
+}
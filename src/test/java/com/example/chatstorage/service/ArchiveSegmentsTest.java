@@ -0,0 +1,124 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.ArchiveProperties;
+import com.example.chatstorage.domain.SenderType;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.repository.ArchiveLocation;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ArchiveSegmentsTest {
+
+    private static final OffsetDateTime BASE_TIME = OffsetDateTime.of(2024, 1, 1, 12, 0, 0, 123_456_000, ZoneOffset.UTC);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void sessionsShouldReadBackFromACommittedSegment() throws IOException {
+        ArchiveSegments segments = segments();
+        List<ChatMessageResponse> first = messages(3, "Ünïcödé context");
+        List<ChatMessageResponse> second = messages(2, null);
+
+        List<ArchiveLocation> locations = new ArrayList<>();
+        try (ArchiveSegments.SegmentWriter writer = segments.create()) {
+            locations.add(writer.append(withoutEmbeddings(first)));
+            locations.add(writer.append(withoutEmbeddings(second)));
+            writer.commit();
+        }
+
+        assertThat(segments.read(locations.get(1))).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(second);
+        assertThat(segments.read(locations.get(0))).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(first);
+        assertThat(locations.get(0).messageCount()).isEqualTo(3);
+        try (var files = Files.list(directory)) {
+            assertThat(files.map(path -> path.getFileName().toString()))
+                    .containsExactly(locations.get(0).segment());
+        }
+    }
+
+    @Test
+    void embeddingsShouldReadBackWithTheirSession() throws IOException {
+        ArchiveSegments segments = segments();
+        List<ChatMessageResponse> messages = messages(3, null);
+        Map<UUID, float[]> embeddings = Map.of(messages.get(1).getId(), new float[]{0.25f, -1.5f, 3f});
+
+        ArchiveLocation location;
+        try (ArchiveSegments.SegmentWriter writer = segments.create()) {
+            location = writer.append(new ArchiveSegments.ArchivedSession(messages, embeddings));
+            writer.commit();
+        }
+
+        ArchiveSegments.ArchivedSession session = segments.readSession(location);
+        assertThat(session.messages()).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(messages);
+        assertThat(session.embeddings()).containsOnlyKeys(messages.get(1).getId());
+        assertThat(session.embeddings().get(messages.get(1).getId())).containsExactly(0.25f, -1.5f, 3f);
+    }
+
+    @Test
+    void uncommittedSegmentShouldLeaveNothingBehind() throws IOException {
+        try (ArchiveSegments.SegmentWriter writer = segments().create()) {
+            writer.append(withoutEmbeddings(messages(1, null)));
+        }
+
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void corruptedRecordShouldBeRejected() throws IOException {
+        ArchiveLocation location;
+        try (ArchiveSegments.SegmentWriter writer = segments().create()) {
+            location = writer.append(withoutEmbeddings(messages(50, "context")));
+            writer.commit();
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve(location.segment()), StandardOpenOption.WRITE)) {
+            // Overwrite the stored checksum.
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 42), location.offset() + Integer.BYTES);
+        }
+
+        assertThrows(IllegalStateException.class, () -> segments().read(location));
+    }
+
+    private ArchiveSegments segments() {
+        ArchiveProperties properties = new ArchiveProperties();
+        properties.setDirectory(directory);
+        return new ArchiveSegments(properties);
+    }
+
+    private static ArchiveSegments.ArchivedSession withoutEmbeddings(List<ChatMessageResponse> messages) {
+        return new ArchiveSegments.ArchivedSession(messages, Map.of());
+    }
+
+    private static List<ChatMessageResponse> messages(int count, String context) {
+        List<ChatMessageResponse> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ChatMessageResponse message = new ChatMessageResponse();
+            message.setId(UUID.randomUUID());
+            message.setSender(i % 2 == 0 ? SenderType.USER : SenderType.ASSISTANT);
+            message.setContent("message-" + i);
+            message.setContext(context);
+            message.setCreatedAt(BASE_TIME.plusSeconds(i));
+            messages.add(message);
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,411 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.ContextBlobCacheProperties;
+import com.example.chatstorage.config.MessageTailCacheProperties;
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.domain.ChatSession;
+import com.example.chatstorage.domain.SenderType;
+import com.example.chatstorage.dto.ChatMessageCreateRequest;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.dto.CursorDirection;
+import com.example.chatstorage.dto.CursorPagedResponse;
+import com.example.chatstorage.dto.PagedResponse;
+import com.example.chatstorage.dto.SimilarMessageResponse;
+import com.example.chatstorage.mapper.ChatMessageMapper;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.repository.ContextBlob;
+import com.example.chatstorage.repository.ContextBlobRepository;
+import com.example.chatstorage.repository.SessionVersion;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ChatMessageServiceTest {
+
+    private static final OffsetDateTime BASE_TIME = OffsetDateTime.of(2024, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private ChatMessageRepository chatMessageRepository;
+    private ChatSessionService chatSessionService;
+    private EmbeddingService embeddingService;
+    private ContextBlobRepository contextBlobRepository;
+    private MessageArchive messageArchive;
+    private MessageStreamRelay messageStreamRelay;
+    private ChatMessageService chatMessageService;
+    private ChatSession session;
+
+    @BeforeEach
+    void setUp() {
+        chatMessageRepository = mock(ChatMessageRepository.class);
+        chatSessionService = mock(ChatSessionService.class);
+        embeddingService = mock(EmbeddingService.class);
+        contextBlobRepository = mock(ContextBlobRepository.class);
+        messageArchive = mock(MessageArchive.class);
+        messageStreamRelay = mock(MessageStreamRelay.class);
+        chatMessageService = new ChatMessageService(chatMessageRepository, chatSessionService, new TestChatMessageMapper(),
+                new ObjectMapper().findAndRegisterModules(),
+                new MessageTailCache(new MessageTailCacheProperties(), new SimpleMeterRegistry()), embeddingService,
+                new ContextBlobStore(contextBlobRepository, new ContextBlobCacheProperties(), new SimpleMeterRegistry()),
+                messageArchive, mock(MessageStreamHub.class), messageStreamRelay);
+        session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        session.setUserId("user-1");
+        when(chatSessionService.getOwnedSession(session.getId(), "user-1")).thenReturn(SessionSnapshot.of(session));
+        when(chatSessionService.getSessionReference(session.getId(), "user-1")).thenReturn(session);
+    }
+
+    @Test
+    void firstCursorPageShouldTrimLookaheadRowAndSkipCount() {
+        List<ChatMessage> rows = messages(0, 3);
+        when(chatMessageRepository.findHead(session.getId(), PageRequest.of(0, 3))).thenReturn(rows);
+
+        CursorPagedResponse<ChatMessageResponse> response = chatMessageService.getMessagesByCursor(
+                session.getId(), "user-1", null, CursorDirection.NEXT, 2, false);
+
+        assertThat(response.getData()).extracting(ChatMessageResponse::getId)
+                .containsExactly(rows.get(0).getId(), rows.get(1).getId());
+        assertThat(response.isHasNext()).isTrue();
+        assertThat(response.isHasPrevious()).isFalse();
+        assertThat(response.getTotalElements()).isNull();
+        assertThat(KeysetCursor.decode(response.getNextCursor()).id()).isEqualTo(rows.get(1).getId());
+        verify(chatMessageRepository, never()).countBySessionId(any());
+    }
+
+    @Test
+    void messagesETagShouldFollowTheSessionVersionWithoutReadingMessages() {
+        OffsetDateTime updatedAt = OffsetDateTime.of(2024, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+        when(chatSessionService.getSessionVersion(session.getId(), "user-1")).thenReturn(
+                new SessionVersion(updatedAt, 0L),
+                new SessionVersion(updatedAt.withOffsetSameInstant(ZoneOffset.ofHours(2)), 0L),
+                new SessionVersion(updatedAt.plusNanos(1_000), 0L));
+
+        String first = chatMessageService.messagesETag(session.getId(), "user-1");
+
+        assertThat(chatMessageService.messagesETag(session.getId(), "user-1")).isEqualTo(first);
+        assertThat(chatMessageService.messagesETag(session.getId(), "user-1")).isNotEqualTo(first);
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    @Test
+    void latestPageETagShouldFollowTheMessagesServed() {
+        List<ChatMessage> rows = messages(0, 2);
+        when(chatMessageRepository.findTail(session.getId(), PageRequest.of(0, 51)))
+                .thenReturn(List.of(rows.get(1), rows.get(0)));
+        when(chatMessageRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            ChatMessage message = invocation.getArgument(0);
+            message.setId(UUID.randomUUID());
+            return message;
+        });
+        when(chatSessionService.getCommittedMessageSeq(session.getId(), "user-1")).thenReturn(2L, 2L, 3L);
+        when(chatSessionService.touchSession(session.getId(), "user-1", 1)).thenReturn(3L);
+
+        assertThat(chatMessageService.servesLatestFromTailCache(null, CursorDirection.PREVIOUS, 10, false)).isTrue();
+        String first = latestPageETag();
+        assertThat(latestPageETag()).isEqualTo(first);
+        chatMessageService.addMessage(session.getId(), "user-1", request(SenderType.ASSISTANT, "answer"));
+
+        assertThat(latestPageETag()).isNotEqualTo(first);
+        verify(chatSessionService, never()).getSessionVersion(any(), any());
+    }
+
+    private String latestPageETag() {
+        return chatMessageService.latestPageETag(session.getId(), chatMessageService.getMessagesByCursor(
+                session.getId(), "user-1", null, CursorDirection.PREVIOUS, 10, false));
+    }
+
+    @Test
+    void previousCursorPageShouldSeekBackwardsAndReturnAscendingOrder() {
+        List<ChatMessage> rows = messages(0, 4);
+        ChatMessage anchor = rows.get(3);
+        List<ChatMessage> descending = new ArrayList<>(List.of(rows.get(2), rows.get(1)));
+        when(chatMessageRepository.findBefore(session.getId(), anchor.getCreatedAt(), anchor.getId(), PageRequest.of(0, 3)))
+                .thenReturn(descending);
+        when(chatMessageRepository.countBySessionId(session.getId())).thenReturn(4L);
+
+        String cursor = new KeysetCursor(anchor.getCreatedAt(), anchor.getId()).encode();
+        CursorPagedResponse<ChatMessageResponse> response = chatMessageService.getMessagesByCursor(
+                session.getId(), "user-1", cursor, CursorDirection.PREVIOUS, 2, true);
+
+        assertThat(response.getData()).extracting(ChatMessageResponse::getId)
+                .containsExactly(rows.get(1).getId(), rows.get(2).getId());
+        assertThat(response.isHasPrevious()).isFalse();
+        assertThat(response.isHasNext()).isTrue();
+        assertThat(response.getTotalElements()).isEqualTo(4L);
+    }
+
+    @Test
+    void addMessagesShouldSaveBatchInOrderAndTouchSessionOnce() {
+        when(chatMessageRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(chatSessionService.touchSession(session.getId(), "user-1", 3)).thenReturn(7L);
+
+        List<ChatMessageResponse> responses = chatMessageService.addMessages(session.getId(), "user-1", List.of(
+                request(SenderType.USER, "question"),
+                request(SenderType.SYSTEM, "tool output"),
+                request(SenderType.ASSISTANT, "answer")));
+
+        assertThat(responses).extracting(ChatMessageResponse::getContent)
+                .containsExactly("question", "tool output", "answer");
+        assertThat(responses).extracting(ChatMessageResponse::getCreatedAt).isSorted().doesNotHaveDuplicates();
+        verify(chatSessionService, times(1)).getSessionReference(session.getId(), "user-1");
+        InOrder order = inOrder(chatMessageRepository, chatSessionService);
+        order.verify(chatMessageRepository).saveAllAndFlush(anyList());
+        order.verify(chatSessionService, times(1)).touchSession(session.getId(), "user-1", 3);
+        // Numbered after the touch, while the session row is locked.
+        order.verify(chatMessageRepository).assignSeq(session.getId(),
+                responses.stream().map(ChatMessageResponse::getId).toList(),
+                responses.get(0).getCreatedAt(), responses.get(2).getCreatedAt(), 7L);
+        verify(chatMessageRepository, never()).save(any());
+        verify(messageStreamRelay).publish(session.getId(), 7L, responses);
+    }
+
+    @Test
+    void exportShouldWriteOneJsonLinePerMessageAndDetachEachEntity() throws Exception {
+        EntityManager entityManager = mock(EntityManager.class);
+        ReflectionTestUtils.setField(chatMessageService, "entityManager", entityManager);
+        List<ChatMessage> rows = messages(0, 3);
+        when(chatMessageRepository.streamBySessionId(session.getId())).thenReturn(rows.stream());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        chatMessageService.exportMessages(session.getId(), "user-1", output);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).contains("\"content\":\"message-0\"");
+        rows.forEach(message -> verify(entityManager).detach(message));
+    }
+
+    @Test
+    void latestMessagesShouldBeServedFromTailCacheAfterFirstRead() {
+        List<ChatMessage> rows = messages(0, 5);
+        List<ChatMessage> newestFirst = new ArrayList<>(rows);
+        Collections.reverse(newestFirst);
+        when(chatMessageRepository.findTail(session.getId(), PageRequest.of(0, 51))).thenReturn(newestFirst);
+
+        chatMessageService.getMessagesByCursor(session.getId(), "user-1", null, CursorDirection.PREVIOUS, 3, false);
+        CursorPagedResponse<ChatMessageResponse> response = chatMessageService.getMessagesByCursor(
+                session.getId(), "user-1", null, CursorDirection.PREVIOUS, 3, false);
+
+        assertThat(response.getData()).extracting(ChatMessageResponse::getId)
+                .containsExactly(rows.get(2).getId(), rows.get(3).getId(), rows.get(4).getId());
+        assertThat(response.isHasPrevious()).isTrue();
+        assertThat(response.isHasNext()).isFalse();
+        verify(chatMessageRepository, times(1)).findTail(any(), any());
+    }
+
+    @Test
+    void appendedMessageShouldReachTailCacheWithoutAnotherRead() {
+        List<ChatMessage> rows = messages(0, 2);
+        when(chatMessageRepository.findTail(session.getId(), PageRequest.of(0, 51)))
+                .thenReturn(List.of(rows.get(1), rows.get(0)));
+        when(chatMessageRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            ChatMessage message = invocation.getArgument(0);
+            message.setId(UUID.randomUUID());
+            return message;
+        });
+
+        when(chatSessionService.getCommittedMessageSeq(session.getId(), "user-1")).thenReturn(2L, 3L);
+        when(chatSessionService.touchSession(session.getId(), "user-1", 1)).thenReturn(3L);
+
+        chatMessageService.getMessagesByCursor(session.getId(), "user-1", null, CursorDirection.PREVIOUS, 10, false);
+        ChatMessageResponse added = chatMessageService.addMessage(session.getId(), "user-1",
+                request(SenderType.ASSISTANT, "answer"));
+        CursorPagedResponse<ChatMessageResponse> response = chatMessageService.getMessagesByCursor(
+                session.getId(), "user-1", null, CursorDirection.PREVIOUS, 10, false);
+
+        assertThat(response.getData()).extracting(ChatMessageResponse::getId)
+                .containsExactly(rows.get(0).getId(), rows.get(1).getId(), added.getId());
+        assertThat(response.isHasPrevious()).isFalse();
+        verify(chatMessageRepository, times(1)).findTail(any(), any());
+    }
+
+    @Test
+    void cachedTailShouldBeReloadedOnceAnotherNodeAppended() {
+        List<ChatMessage> rows = messages(0, 3);
+        when(chatMessageRepository.findTail(session.getId(), PageRequest.of(0, 51)))
+                .thenReturn(List.of(rows.get(1), rows.get(0)), List.of(rows.get(2), rows.get(1), rows.get(0)));
+        when(chatSessionService.getCommittedMessageSeq(session.getId(), "user-1")).thenReturn(2L, 3L);
+
+        chatMessageService.getMessagesByCursor(session.getId(), "user-1", null, CursorDirection.PREVIOUS, 10, false);
+        CursorPagedResponse<ChatMessageResponse> response = chatMessageService.getMessagesByCursor(
+                session.getId(), "user-1", null, CursorDirection.PREVIOUS, 10, false);
+
+        assertThat(response.getData()).extracting(ChatMessageResponse::getId)
+                .containsExactly(rows.get(0).getId(), rows.get(1).getId(), rows.get(2).getId());
+        verify(chatMessageRepository, times(2)).findTail(any(), any());
+    }
+
+    @Test
+    void malformedCursorShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> chatMessageService.getMessagesByCursor(
+                session.getId(), "user-1", "not-a-cursor", CursorDirection.NEXT, 10, false));
+    }
+
+    @Test
+    void cursorShouldRoundTrip() {
+        KeysetCursor cursor = new KeysetCursor(BASE_TIME.plusNanos(123_456_000), UUID.randomUUID());
+        assertThat(KeysetCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void similarMessagesShouldKeepIndexOrderAndDropMessagesNoLongerLive() {
+        List<ChatMessage> rows = messages(0, 2);
+        float[] vector = {1f, 0f};
+        UUID gone = UUID.randomUUID();
+        OffsetDateTime goneAt = BASE_TIME.minusDays(40);
+        when(embeddingService.findSimilar("user-1", null, vector, 3)).thenReturn(List.of(
+                new HnswIndex.Match(rows.get(1).getId(), session.getId(), rows.get(1).getCreatedAt(), 0.9f),
+                new HnswIndex.Match(gone, UUID.randomUUID(), goneAt, 0.8f),
+                new HnswIndex.Match(rows.get(0).getId(), session.getId(), rows.get(0).getCreatedAt(), 0.7f)));
+        when(chatMessageRepository.findLive(anyList(), anySet())).thenReturn(rows);
+
+        List<SimilarMessageResponse> similar = chatMessageService.findSimilar("user-1", null, vector, 3);
+
+        assertThat(similar).extracting(result -> result.getMessage().getId())
+                .containsExactly(rows.get(1).getId(), rows.get(0).getId());
+        assertThat(similar.get(0).getScore()).isEqualTo(0.9f);
+        // The lookup is keyed by created_at as well, so it only reads the partitions holding the matches.
+        verify(chatMessageRepository).findLive(List.of(rows.get(1).getId(), gone, rows.get(0).getId()),
+                Set.of(rows.get(1).getCreatedAt(), goneAt, rows.get(0).getCreatedAt()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void repeatedContextShouldBeStoredOnceWithOneReferencePerMessage() {
+        when(chatMessageRepository.saveAllAndFlush(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        ChatMessageCreateRequest first = request(SenderType.ASSISTANT, "first");
+        ChatMessageCreateRequest second = request(SenderType.ASSISTANT, "second");
+        first.setContext("[{\"doc\":\"runbook-42\"}]");
+        second.setContext("[{\"doc\":\"runbook-42\"}]");
+
+        List<ChatMessageResponse> responses = chatMessageService.addMessages(session.getId(), "user-1",
+                List.of(first, request(SenderType.USER, "no context"), second));
+
+        ArgumentCaptor<List<ContextBlob>> acquired = ArgumentCaptor.forClass(List.class);
+        verify(contextBlobRepository).acquireAll(acquired.capture());
+        assertThat(acquired.getValue()).singleElement().satisfies(blob -> {
+            assertThat(blob.references()).isEqualTo(2);
+            assertThat(blob.hash()).isEqualTo(ContextBlobStore.hash(first.getContext()));
+        });
+        assertThat(responses).extracting(ChatMessageResponse::getContext)
+                .containsExactly(first.getContext(), null, first.getContext());
+    }
+
+    @Test
+    void contextsShouldBeFetchedOnceAndThenServedFromCache() {
+        List<ChatMessage> rows = messages(0, 3);
+        byte[] hash = ContextBlobStore.hash("shared context");
+        // Each load hands out entities whose context has not been resolved yet.
+        when(chatMessageRepository.findHead(session.getId(), PageRequest.of(0, 4)))
+                .thenAnswer(invocation -> {
+                    rows.forEach(message -> message.setContext(hash, null));
+                    return rows;
+                });
+        when(contextBlobRepository.findAll(anyList()))
+                .thenReturn(List.of(new ContextBlob(hash, "shared context", 3)));
+
+        for (int i = 0; i < 2; i++) {
+            CursorPagedResponse<ChatMessageResponse> response = chatMessageService.getMessagesByCursor(
+                    session.getId(), "user-1", null, CursorDirection.NEXT, 3, false);
+            assertThat(response.getData()).extracting(ChatMessageResponse::getContext).containsOnly("shared context");
+        }
+        verify(contextBlobRepository, times(1)).findAll(anyList());
+    }
+
+    private static ChatMessageCreateRequest request(SenderType sender, String content) {
+        ChatMessageCreateRequest request = new ChatMessageCreateRequest();
+        request.setSender(sender);
+        request.setContent(content);
+        return request;
+    }
+
+    @Test
+    void archivedSessionShouldBeServedFromItsSegment() {
+        List<ChatMessageResponse> archived = messages(0, 5).stream().map(new TestChatMessageMapper()::toResponse).toList();
+        when(messageArchive.find(session.getId())).thenReturn(Optional.of(archived));
+        when(chatMessageRepository.findHead(session.getId(), PageRequest.of(0, 3))).thenReturn(List.of());
+        when(chatMessageRepository.findAfter(any(), any(), any(), any())).thenReturn(List.of());
+        when(chatMessageRepository.findBySessionIdOrderByCreatedAtAsc(session.getId(), PageRequest.of(2, 2)))
+                .thenReturn(Page.empty(PageRequest.of(2, 2)));
+
+        CursorPagedResponse<ChatMessageResponse> first = chatMessageService.getMessagesByCursor(
+                session.getId(), "user-1", null, CursorDirection.NEXT, 2, true);
+        CursorPagedResponse<ChatMessageResponse> second = chatMessageService.getMessagesByCursor(
+                session.getId(), "user-1", first.getNextCursor(), CursorDirection.NEXT, 2, false);
+        PagedResponse<ChatMessageResponse> last = chatMessageService.getMessages(session.getId(), "user-1", 2, 2);
+
+        assertThat(first.getData()).containsExactlyElementsOf(archived.subList(0, 2));
+        assertThat(first.getTotalElements()).isEqualTo(5L);
+        assertThat(second.getData()).containsExactlyElementsOf(archived.subList(2, 4));
+        assertThat(second.isHasNext()).isTrue();
+        assertThat(last.getData()).containsExactly(archived.get(4));
+        assertThat(last.getTotalElements()).isEqualTo(5);
+        assertThat(last.isLast()).isTrue();
+        verify(contextBlobRepository, never()).findAll(anyList());
+    }
+
+    private List<ChatMessage> messages(int from, int count) {
+        List<ChatMessage> result = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            ChatMessage message = new ChatMessage();
+            message.setId(UUID.randomUUID());
+            message.setSession(session);
+            message.setSender(SenderType.USER);
+            message.setContent("message-" + i);
+            message.setCreatedAt(BASE_TIME.plusSeconds(i));
+            result.add(message);
+        }
+        return result;
+    }
+
+    private static class TestChatMessageMapper implements ChatMessageMapper {
+
+        @Override
+        public ChatMessage toEntity(ChatMessageCreateRequest request) {
+            ChatMessage message = new ChatMessage();
+            message.setSender(request.getSender());
+            message.setContent(request.getContent());
+            return message;
+        }
+
+        @Override
+        public ChatMessageResponse toResponse(ChatMessage message) {
+            ChatMessageResponse response = new ChatMessageResponse();
+            response.setId(message.getId());
+            response.setSender(message.getSender());
+            response.setContent(message.getContent());
+            response.setContext(message.getContext());
+            response.setCreatedAt(message.getCreatedAt());
+            return response;
+        }
+    }
+}
@@ -1,21 +1,35 @@
 package com.example.chatstorage.service;
 
+import com.example.chatstorage.config.MessageTailCacheProperties;
+import com.example.chatstorage.config.ReadReplicaProperties;
+import com.example.chatstorage.config.SessionCacheProperties;
+import com.example.chatstorage.datasource.ReadYourWrites;
 import com.example.chatstorage.domain.ChatSession;
 import com.example.chatstorage.dto.ChatSessionCreateRequest;
 import com.example.chatstorage.dto.ChatSessionResponse;
+import com.example.chatstorage.dto.CursorDirection;
+import com.example.chatstorage.dto.CursorPagedResponse;
 import com.example.chatstorage.mapper.ChatSessionMapper;
 import com.example.chatstorage.repository.ChatSessionRepository;
+import com.example.chatstorage.repository.SessionListVersion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 
 import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class ChatSessionServiceTest {
@@ -23,12 +37,19 @@ class ChatSessionServiceTest {
     private ChatSessionRepository chatSessionRepository;
     private ChatSessionMapper chatSessionMapper;
     private ChatSessionService chatSessionService;
+    private MessageArchive messageArchive;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     void setUp() {
         chatSessionRepository = mock(ChatSessionRepository.class);
         chatSessionMapper = new TestChatSessionMapper();
-        chatSessionService = new ChatSessionService(chatSessionRepository, chatSessionMapper);
+        meterRegistry = new SimpleMeterRegistry();
+        messageArchive = mock(MessageArchive.class);
+        chatSessionService = new ChatSessionService(chatSessionRepository, chatSessionMapper,
+                new SessionOwnershipCache(new SessionCacheProperties(), meterRegistry),
+                new MessageTailCache(new MessageTailCacheProperties(), meterRegistry), mock(EmbeddingIndex.class),
+                messageArchive, new ReadYourWrites(new ReadReplicaProperties()));
     }
 
     @Test
@@ -59,6 +80,174 @@ class ChatSessionServiceTest {
         assertThrows(ResourceNotFoundException.class, () -> chatSessionService.getSession(sessionId, "user-1"));
     }
 
+    @Test
+    void ownedSessionShouldBeServedFromCacheAfterFirstLookup() {
+        ChatSession session = session(OffsetDateTime.now());
+        when(chatSessionRepository.findByIdAndUserId(session.getId(), "user-1")).thenReturn(Optional.of(session));
+
+        chatSessionService.getOwnedSession(session.getId(), "user-1");
+        SessionSnapshot snapshot = chatSessionService.getOwnedSession(session.getId(), "user-1");
+
+        assertThat(snapshot.id()).isEqualTo(session.getId());
+        verify(chatSessionRepository, times(1)).findByIdAndUserId(session.getId(), "user-1");
+        assertThat(meterRegistry.get("cache.gets").tag("cache", SessionOwnershipCache.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", SessionOwnershipCache.CACHE_NAME)
+                .tag("result", "miss").functionCounter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void ownedSessionShouldNotCacheMissingSessionsOrOtherUsers() {
+        ChatSession session = session(OffsetDateTime.now());
+        when(chatSessionRepository.findByIdAndUserId(session.getId(), "user-1")).thenReturn(Optional.of(session));
+        when(chatSessionRepository.findByIdAndUserId(session.getId(), "user-2")).thenReturn(Optional.empty());
+
+        chatSessionService.getOwnedSession(session.getId(), "user-1");
+
+        assertThrows(ResourceNotFoundException.class, () -> chatSessionService.getOwnedSession(session.getId(), "user-2"));
+        assertThrows(ResourceNotFoundException.class, () -> chatSessionService.getOwnedSession(session.getId(), "user-2"));
+        verify(chatSessionRepository, times(2)).findByIdAndUserId(session.getId(), "user-2");
+    }
+
+    @Test
+    void deleteSessionShouldInvalidateCachedOwnership() {
+        ChatSession session = session(OffsetDateTime.now());
+        when(chatSessionRepository.findByIdAndUserId(session.getId(), "user-1"))
+                .thenReturn(Optional.of(session), Optional.empty());
+        when(chatSessionRepository.markDeleted(eq(session.getId()), eq("user-1"), any(OffsetDateTime.class))).thenReturn(1);
+
+        chatSessionService.getOwnedSession(session.getId(), "user-1");
+        chatSessionService.deleteSession(session.getId(), "user-1");
+
+        assertThrows(ResourceNotFoundException.class, () -> chatSessionService.getOwnedSession(session.getId(), "user-1"));
+    }
+
+    @Test
+    void sessionDeletedThroughAnotherNodeShouldDropCachedOwnership() {
+        ChatSession session = session(OffsetDateTime.now());
+        when(chatSessionRepository.findByIdAndUserId(session.getId(), "user-1"))
+                .thenReturn(Optional.of(session), Optional.empty());
+        when(chatSessionRepository.findLiveMessageSeq(session.getId())).thenReturn(Optional.of(4L), Optional.empty());
+
+        chatSessionService.getOwnedSession(session.getId(), "user-1");
+        assertThat(chatSessionService.getCommittedMessageSeq(session.getId(), "user-1")).isEqualTo(4L);
+
+        assertThrows(ResourceNotFoundException.class,
+                () -> chatSessionService.getCommittedMessageSeq(session.getId(), "user-1"));
+        assertThrows(ResourceNotFoundException.class, () -> chatSessionService.getOwnedSession(session.getId(), "user-1"));
+    }
+
+    @Test
+    void renameSessionShouldInvalidateCachedOwnership() {
+        ChatSession session = session(OffsetDateTime.now());
+        when(chatSessionRepository.findByIdAndUserId(session.getId(), "user-1")).thenReturn(Optional.of(session));
+        when(chatSessionRepository.findForUpdate(session.getId(), "user-1")).thenReturn(Optional.of(session));
+
+        chatSessionService.getOwnedSession(session.getId(), "user-1");
+        chatSessionService.renameSession(session.getId(), "user-1", "Renamed");
+        chatSessionService.getOwnedSession(session.getId(), "user-1");
+
+        verify(chatSessionRepository, times(2)).findByIdAndUserId(session.getId(), "user-1");
+    }
+
+    @Test
+    void renameSessionShouldMoveUpdatedAtStrictlyForward() {
+        OffsetDateTime future = OffsetDateTime.now().plusMinutes(5);
+        ChatSession session = session(future);
+        when(chatSessionRepository.findForUpdate(session.getId(), "user-1")).thenReturn(Optional.of(session));
+
+        chatSessionService.renameSession(session.getId(), "user-1", "Renamed");
+
+        assertThat(session.getUpdatedAt()).isAfter(future);
+    }
+
+    @Test
+    void sessionListETagShouldChangeOnlyWithTheListVersion() {
+        when(chatSessionRepository.findListVersion("user-1")).thenReturn(
+                new SessionListVersion(2, 600, 1_000), new SessionListVersion(2, 600, 1_000),
+                new SessionListVersion(2, 601, 1_000), new SessionListVersion(2, 600, 1_001),
+                new SessionListVersion(3, 600, 1_000));
+
+        String first = chatSessionService.sessionListETag("user-1");
+
+        assertThat(first).startsWith("\"").endsWith("\"");
+        assertThat(chatSessionService.sessionListETag("user-1")).isEqualTo(first);
+        assertThat(chatSessionService.sessionListETag("user-1")).isNotEqualTo(first);
+        assertThat(chatSessionService.sessionListETag("user-1")).isNotEqualTo(first);
+        assertThat(chatSessionService.sessionListETag("user-1")).isNotEqualTo(first);
+    }
+
+    @Test
+    void touchSessionShouldThrowAndInvalidateWhenSessionIsGone() {
+        ChatSession session = session(OffsetDateTime.now());
+        when(chatSessionRepository.findByIdAndUserId(session.getId(), "user-1")).thenReturn(Optional.of(session));
+        when(chatSessionRepository.touch(eq(session.getId()), eq("user-1"), any(OffsetDateTime.class), eq(1)))
+                .thenReturn(Optional.empty());
+
+        chatSessionService.getOwnedSession(session.getId(), "user-1");
+        assertThrows(ResourceNotFoundException.class,
+                () -> chatSessionService.touchSession(session.getId(), "user-1", 1));
+        chatSessionService.getOwnedSession(session.getId(), "user-1");
+
+        verify(chatSessionRepository, times(2)).findByIdAndUserId(session.getId(), "user-1");
+    }
+
+    @Test
+    void touchOfArchivedSessionShouldRestoreItBeforeAppending() {
+        UUID sessionId = UUID.randomUUID();
+        when(chatSessionRepository.touch(eq(sessionId), eq("user-1"), any(OffsetDateTime.class), eq(2)))
+                .thenReturn(Optional.empty(), Optional.of(2L));
+        when(messageArchive.restore(sessionId, "user-1")).thenReturn(true);
+
+        assertThat(chatSessionService.touchSession(sessionId, "user-1", 2)).isEqualTo(2L);
+
+        verify(messageArchive).restore(sessionId, "user-1");
+        verify(chatSessionRepository, times(2)).touch(eq(sessionId), eq("user-1"), any(OffsetDateTime.class), eq(2));
+    }
+
+    @Test
+    void deleteSessionShouldTombstoneWithoutLoadingMessages() {
+        UUID sessionId = UUID.randomUUID();
+        when(chatSessionRepository.markDeleted(eq(sessionId), eq("user-1"), any(OffsetDateTime.class))).thenReturn(1);
+
+        chatSessionService.deleteSession(sessionId, "user-1");
+
+        verify(chatSessionRepository, never()).delete(any(ChatSession.class));
+    }
+
+    @Test
+    void deleteSessionShouldThrowWhenNothingWasTombstoned() {
+        UUID sessionId = UUID.randomUUID();
+        when(chatSessionRepository.markDeleted(eq(sessionId), eq("user-1"), any(OffsetDateTime.class))).thenReturn(0);
+        assertThrows(ResourceNotFoundException.class, () -> chatSessionService.deleteSession(sessionId, "user-1"));
+    }
+
+    @Test
+    void listSessionsShouldFetchOneLookaheadRowAndExposeCursor() {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<ChatSession> rows = List.of(session(now), session(now.minusMinutes(1)), session(now.minusMinutes(2)));
+        when(chatSessionRepository.findSessionsPage("user-1", true, null, null, null, true, 3)).thenReturn(rows);
+
+        CursorPagedResponse<ChatSessionResponse> response = chatSessionService.listSessions(
+                "user-1", true, null, null, CursorDirection.NEXT, 2, false);
+
+        assertThat(response.getData()).hasSize(2);
+        assertThat(response.isHasNext()).isTrue();
+        assertThat(response.getTotalElements()).isNull();
+        assertThat(KeysetCursor.decode(response.getNextCursor()).id()).isEqualTo(rows.get(1).getId());
+    }
+
+    private static ChatSession session(OffsetDateTime updatedAt) {
+        ChatSession session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        session.setUserId("user-1");
+        session.setTitle("Session");
+        session.setFavorite(true);
+        session.setCreatedAt(updatedAt);
+        session.setUpdatedAt(updatedAt);
+        return session;
+    }
+
     private static class TestChatSessionMapper implements ChatSessionMapper {
 
         @Override
@@ -0,0 +1,171 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.ChatStorageApplication;
+import com.example.chatstorage.domain.ChatSession;
+import com.example.chatstorage.domain.SenderType;
+import com.example.chatstorage.dto.ChatMessageCreateRequest;
+import com.example.chatstorage.dto.ChatSessionCreateRequest;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.repository.SessionArchiveRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Parallel tool-call results land on one session at once. Appends must not fail, and must not break renames that
+// run in between or restores of an archived session. That they do not queue behind each other for their whole
+// transaction is measured by the benchmark-tagged test.
+@Testcontainers(disabledWithoutDocker = true)
+class ConcurrentAppendTest {
+
+    private static final int APPENDERS = 32;
+    private static final int APPENDS_PER_THREAD = 100;
+    private static final String USER_ID = "user-1";
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16");
+
+    @TempDir
+    static Path archiveDirectory;
+
+    private static ConfigurableApplicationContext context;
+
+    @BeforeAll
+    static void start() {
+        context = new SpringApplicationBuilder(ChatStorageApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + POSTGRES.getJdbcUrl(),
+                        "spring.datasource.username=" + POSTGRES.getUsername(),
+                        "spring.datasource.password=" + POSTGRES.getPassword(),
+                        "spring.datasource.hikari.maximum-pool-size=" + (APPENDERS + 2),
+                        "purge.enabled=false",
+                        "archive.enabled=true",
+                        "archive.idle-after=0s",
+                        "archive.directory=" + archiveDirectory)
+                .run();
+    }
+
+    @AfterAll
+    static void stop() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    void concurrentAppendsAndRenamesShouldAllSucceed() throws Exception {
+        ChatSessionService sessions = context.getBean(ChatSessionService.class);
+        ChatMessageRepository messages = context.getBean(ChatMessageRepository.class);
+        UUID sessionId = createSession(sessions);
+        long initialVersion = sessions.getSession(sessionId, USER_ID).getVersion();
+
+        AtomicBoolean appending = new AtomicBoolean(true);
+        AtomicInteger renames = new AtomicInteger();
+        Thread renamer = Thread.ofPlatform().start(() -> {
+            while (appending.get()) {
+                sessions.renameSession(sessionId, USER_ID, "Renamed " + renames.incrementAndGet());
+            }
+        });
+        appendConcurrently(sessionId, APPENDERS, APPENDS_PER_THREAD, appending);
+        renamer.join();
+
+        assertThat(messages.countBySessionId(sessionId)).isEqualTo((long) APPENDERS * APPENDS_PER_THREAD);
+        // Only renames bump the version, and none of them moved updated_at back behind an append.
+        ChatSession session = sessions.getSession(sessionId, USER_ID);
+        assertThat(session.getVersion()).isEqualTo(initialVersion + renames.get());
+        assertThat(session.getUpdatedAt())
+                .isAfter(messages.findTail(sessionId, PageRequest.of(0, 1)).get(0).getCreatedAt());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void appendsToOneSessionShouldScale() throws Exception {
+        UUID sessionId = createSession(context.getBean(ChatSessionService.class));
+
+        appendConcurrently(sessionId, 1, APPENDS_PER_THREAD, null);
+        double single = appendConcurrently(sessionId, 1, APPENDS_PER_THREAD, null);
+        double parallel = appendConcurrently(sessionId, APPENDERS, APPENDS_PER_THREAD, null);
+
+        double speedup = parallel / single;
+        System.out.printf("appends/s: 1 appender %.0f, %d appenders %.0f (%.1fx)%n",
+                single, APPENDERS, parallel, speedup);
+        assertThat(speedup).isGreaterThanOrEqualTo(Math.min(8, Runtime.getRuntime().availableProcessors()) / 2.0);
+    }
+
+    // Every appender finds the session archived; one restores it and the others must append once it has.
+    @Test
+    void appendsRacingToRestoreAnArchivedSessionShouldAllSucceed() throws Exception {
+        ChatSessionService sessions = context.getBean(ChatSessionService.class);
+        SessionArchiveRepository archives = context.getBean(SessionArchiveRepository.class);
+        UUID sessionId = createSession(sessions);
+        appendConcurrently(sessionId, 1, APPENDS_PER_THREAD, null);
+        context.getBean(SessionArchiver.class).archiveIdleSessions();
+        assertThat(archives.find(sessionId)).isPresent();
+
+        appendConcurrently(sessionId, APPENDERS, 1, null);
+
+        assertThat(archives.find(sessionId)).isEmpty();
+        assertThat(context.getBean(ChatMessageRepository.class).countBySessionId(sessionId))
+                .isEqualTo(APPENDS_PER_THREAD + APPENDERS);
+    }
+
+    // Returns appends per second; any failed append fails the test.
+    private static double appendConcurrently(UUID sessionId, int threads, int appendsPerThread,
+                                             AtomicBoolean running) throws Exception {
+        ChatMessageService messages = context.getBean(ChatMessageService.class);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < appendsPerThread; i++) {
+                        ChatMessageCreateRequest request = new ChatMessageCreateRequest();
+                        request.setSender(SenderType.SYSTEM);
+                        request.setContent("tool result " + thread + "-" + i);
+                        messages.addMessage(sessionId, USER_ID, request);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return threads * appendsPerThread / ((System.nanoTime() - start) / 1e9);
+        } finally {
+            if (running != null) {
+                running.set(false);
+            }
+            executor.shutdown();
+        }
+    }
+
+    private static UUID createSession(ChatSessionService sessions) {
+        ChatSessionCreateRequest request = new ChatSessionCreateRequest();
+        request.setUserId(USER_ID);
+        request.setTitle("Agent run");
+        return sessions.createSession(request).getId();
+    }
+}
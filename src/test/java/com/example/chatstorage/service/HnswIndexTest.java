@@ -0,0 +1,142 @@
+package com.example.chatstorage.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.offset;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+    private static final OffsetDateTime CREATED_AT = OffsetDateTime.of(2024, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private final Random random = new Random(7);
+
+    @Test
+    void approximateSearchShouldRecallMostOfTheExactNeighbours() {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100);
+        List<float[]> vectors = new ArrayList<>();
+        List<UUID> ids = new ArrayList<>();
+        UUID sessionId = UUID.randomUUID();
+        for (int i = 0; i < 5_000; i++) {
+            float[] vector = randomVector();
+            UUID id = UUID.randomUUID();
+            vectors.add(vector);
+            ids.add(id);
+            index.add(id, sessionId, CREATED_AT, vector);
+        }
+
+        int k = 10;
+        int found = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector();
+            Set<UUID> exact = new HashSet<>();
+            IntStream.range(0, vectors.size()).boxed()
+                    .sorted(Comparator.comparingDouble(i -> -cosine(query, vectors.get(i))))
+                    .limit(k)
+                    .forEach(i -> exact.add(ids.get(i)));
+            for (HnswIndex.Match match : index.search(query, k, 64)) {
+                if (exact.contains(match.messageId())) {
+                    found++;
+                }
+            }
+        }
+
+        assertThat(found / (double) (queries * k)).isGreaterThan(0.9);
+    }
+
+    @Test
+    void searchShouldReturnTheIdenticalVectorFirstWithCosineScore() {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 32);
+        UUID sessionId = UUID.randomUUID();
+        float[] target = randomVector();
+        UUID targetId = UUID.randomUUID();
+        OffsetDateTime targetCreatedAt = CREATED_AT.plusDays(45);
+        index.add(targetId, sessionId, targetCreatedAt, target);
+        for (int i = 0; i < 200; i++) {
+            index.add(UUID.randomUUID(), sessionId, CREATED_AT, randomVector());
+        }
+
+        float[] scaled = target.clone();
+        for (int i = 0; i < scaled.length; i++) {
+            scaled[i] *= 3;
+        }
+        HnswIndex.Match best = index.search(scaled, 1, 32).get(0);
+
+        assertThat(best.messageId()).isEqualTo(targetId);
+        assertThat(best.createdAt()).isEqualTo(targetCreatedAt);
+        assertThat(best.score()).isCloseTo(1f, offset(1e-5f));
+    }
+
+    @Test
+    void sessionScopedSearchAndRemovedSessionsShouldBeRespected() {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 32);
+        UUID kept = UUID.randomUUID();
+        UUID removed = UUID.randomUUID();
+        for (int i = 0; i < 100; i++) {
+            index.add(UUID.randomUUID(), i % 2 == 0 ? kept : removed, CREATED_AT, randomVector());
+        }
+        float[] query = randomVector();
+
+        assertThat(index.searchSession(kept, query, 5)).hasSize(5)
+                .allSatisfy(match -> assertThat(match.sessionId()).isEqualTo(kept));
+
+        index.removeSession(removed);
+
+        assertThat(index.search(query, 20, 32)).hasSize(20)
+                .allSatisfy(match -> assertThat(match.sessionId()).isEqualTo(kept));
+        assertThat(index.searchSession(removed, query, 5)).isEmpty();
+
+        index.restoreSession(removed);
+
+        assertThat(index.searchSession(removed, query, 5)).hasSize(5)
+                .allSatisfy(match -> assertThat(match.sessionId()).isEqualTo(removed));
+    }
+
+    @Test
+    void duplicateMessagesAndInvalidVectorsShouldBeRejected() {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 8, 32);
+        UUID id = UUID.randomUUID();
+
+        assertThat(index.add(id, UUID.randomUUID(), CREATED_AT, randomVector())).isTrue();
+        assertThat(index.add(id, UUID.randomUUID(), CREATED_AT, randomVector())).isFalse();
+        assertThat(index.size()).isEqualTo(1);
+        assertThrows(IllegalArgumentException.class,
+                () -> index.add(UUID.randomUUID(), UUID.randomUUID(), CREATED_AT, new float[3]));
+        assertThrows(IllegalArgumentException.class,
+                () -> index.add(UUID.randomUUID(), UUID.randomUUID(), CREATED_AT, new float[DIMENSIONS]));
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+}
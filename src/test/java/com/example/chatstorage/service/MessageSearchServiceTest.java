@@ -0,0 +1,139 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.ContextBlobCacheProperties;
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.domain.ChatSession;
+import com.example.chatstorage.domain.SenderType;
+import com.example.chatstorage.dto.CursorPagedResponse;
+import com.example.chatstorage.dto.SearchHitResponse;
+import com.example.chatstorage.dto.SearchHitType;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.repository.ContextBlob;
+import com.example.chatstorage.repository.ContextBlobRepository;
+import com.example.chatstorage.repository.SearchRow;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class MessageSearchServiceTest {
+
+    private static final OffsetDateTime CREATED_AT = OffsetDateTime.of(2024, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private ChatMessageRepository chatMessageRepository;
+    private ContextBlobRepository contextBlobRepository;
+    private MessageSearchService messageSearchService;
+
+    @BeforeEach
+    void setUp() {
+        chatMessageRepository = mock(ChatMessageRepository.class);
+        contextBlobRepository = mock(ContextBlobRepository.class);
+        ContextBlobStore contextBlobStore = new ContextBlobStore(contextBlobRepository,
+                new ContextBlobCacheProperties(), new SimpleMeterRegistry());
+        messageSearchService = new MessageSearchService(chatMessageRepository, contextBlobStore);
+    }
+
+    @Test
+    void returnsRankedHitsWithACursorForTheNextPage() {
+        UUID sessionId = UUID.randomUUID();
+        SearchRow message = new SearchRow("MESSAGE", UUID.randomUUID(), sessionId, "Trip planning", "ASSISTANT",
+                CREATED_AT, 0.8f, "Book the \uE000ferry\uE001 early");
+        SearchRow title = new SearchRow("SESSION", sessionId, sessionId, "Ferry times", null, CREATED_AT, 0.5f,
+                "Ferry times");
+        SearchRow overflow = new SearchRow("MESSAGE", UUID.randomUUID(), sessionId, "Trip planning", "USER",
+                CREATED_AT, 0.1f, "ferry");
+        when(chatMessageRepository.search(eq("user-1"), eq("ferry"), isNull(), isNull(), anyString(), eq(3)))
+                .thenReturn(List.of(message, title, overflow));
+
+        CursorPagedResponse<SearchHitResponse> response = messageSearchService.search("user-1", " ferry ", null, 2);
+
+        assertThat(response.getData()).extracting(SearchHitResponse::getType)
+                .containsExactly(SearchHitType.MESSAGE, SearchHitType.SESSION);
+        assertThat(response.getData().get(0).getSender()).isEqualTo(SenderType.ASSISTANT);
+        assertThat(response.getData().get(1).getMessageId()).isNull();
+        assertThat(response.isHasNext()).isTrue();
+        assertThat(response.isHasPrevious()).isFalse();
+        assertThat(SearchCursor.decode(response.getNextCursor())).isEqualTo(new SearchCursor(0.5f, sessionId));
+        verify(chatMessageRepository, never()).findLive(any(), any());
+    }
+
+    @Test
+    void hitsMatchingOnlyTheirContextTakeTheSnippetFromTheContext() {
+        String context = "Harbour ferry timetable: the first sailing leaves at 07:15";
+        byte[] hash = ContextBlobStore.hash(context);
+        ChatSession session = new ChatSession();
+        session.setId(UUID.randomUUID());
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSession(session);
+        message.setContent("When does it leave?");
+        message.setCreatedAt(CREATED_AT);
+        // As loaded from the database: only the blob's hash, not its text.
+        message.setContext(hash, null);
+        SearchRow hit = new SearchRow("MESSAGE", message.getId(), session.getId(), "Trip planning", "USER",
+                CREATED_AT, 0.3f, null);
+        when(chatMessageRepository.search(eq("user-1"), eq("ferry"), isNull(), isNull(), anyString(), eq(21)))
+                .thenReturn(List.of(hit));
+        when(chatMessageRepository.findLive(List.of(message.getId()), Set.of(CREATED_AT))).thenReturn(List.of(message));
+        when(contextBlobRepository.findAll(anyList())).thenReturn(List.of(new ContextBlob(hash, context, 1)));
+        when(chatMessageRepository.headlines(eq(List.of(context)), eq("ferry"), anyString()))
+                .thenReturn(List.of("Harbour \uE000ferry\uE001 timetable: the first sailing leaves at 07:15"));
+
+        CursorPagedResponse<SearchHitResponse> response = messageSearchService.search("user-1", "ferry", null, 20);
+
+        assertThat(response.getData()).singleElement().satisfies(result -> {
+            assertThat(result.getMessageId()).isEqualTo(message.getId());
+            assertThat(result.getSnippet())
+                    .isEqualTo("Harbour <mark>ferry</mark> timetable: the first sailing leaves at 07:15");
+        });
+    }
+
+    @Test
+    void passesTheDecodedCursorToTheRepository() {
+        SearchCursor cursor = new SearchCursor(0.25f, UUID.randomUUID());
+        when(chatMessageRepository.search(any(), any(), any(), any(), any(), anyInt())).thenReturn(List.of());
+
+        CursorPagedResponse<SearchHitResponse> response =
+                messageSearchService.search("user-1", "ferry", cursor.encode(), 20);
+
+        verify(chatMessageRepository).search(eq("user-1"), eq("ferry"), eq(0.25f), eq(cursor.id()), anyString(), eq(21));
+        assertThat(response.getData()).isEmpty();
+        assertThat(response.isHasNext()).isFalse();
+        assertThat(response.getNextCursor()).isEqualTo(cursor.encode());
+    }
+
+    @Test
+    void escapesSnippetsAndKeepsOnlyTheHighlightMarkup() {
+        assertThat(MessageSearchService.highlight("<b>\uE000ferry\uE001</b> & co"))
+                .isEqualTo("&lt;b&gt;<mark>ferry</mark>&lt;/b&gt; &amp; co");
+    }
+
+    @Test
+    void rejectsBlankOrOversizedQueriesAndMalformedCursors() {
+        assertThrows(IllegalArgumentException.class, () -> messageSearchService.search("user-1", "  ", null, 20));
+        assertThrows(IllegalArgumentException.class, () -> messageSearchService.search("user-1",
+                "x".repeat(MessageSearchService.MAX_QUERY_LENGTH + 1), null, 20));
+        assertThrows(IllegalArgumentException.class, () -> messageSearchService.search("user-1", "ferry", "!!", 20));
+        assertThrows(IllegalArgumentException.class, () -> messageSearchService.search("user-1", "ferry", null, 0));
+        verifyNoInteractions(chatMessageRepository);
+    }
+}
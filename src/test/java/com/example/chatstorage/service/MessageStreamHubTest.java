@@ -0,0 +1,310 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.ContextBlobCacheProperties;
+import com.example.chatstorage.config.MessageStreamProperties;
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.domain.SenderType;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.mapper.ChatMessageMapper;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.repository.ChatSessionRepository;
+import com.example.chatstorage.repository.ContextBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MessageStreamHubTest {
+
+    private static final OffsetDateTime BASE_TIME = OffsetDateTime.of(2024, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+    private static final String HEARTBEAT = "heartbeat";
+
+    private final ChatMessageRepository chatMessageRepository = mock(ChatMessageRepository.class);
+    private final ChatSessionRepository chatSessionRepository = mock(ChatSessionRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MessageStreamProperties properties = new MessageStreamProperties();
+    private MessageStreamHub hub;
+
+    @AfterEach
+    void closeHub() {
+        if (hub != null) {
+            hub.close();
+        }
+    }
+
+    @Test
+    void publishedMessagesShouldReachOnlyTheSessionsSubscribers() throws InterruptedException {
+        UUID sessionId = UUID.randomUUID();
+        RecordingEmitter watching = new RecordingEmitter();
+        RecordingEmitter other = new RecordingEmitter();
+        hub().subscribe(sessionId, null, watching);
+        hub.subscribe(UUID.randomUUID(), null, other);
+
+        List<SequencedMessage> messages = sequenced(1, 2);
+        hub.publish(sessionId, messages);
+
+        assertThat(watching.next()).isEqualTo(HEARTBEAT);
+        assertThat(watching.next()).isEqualTo(messages.get(0).message().getId());
+        assertThat(watching.next()).isEqualTo(messages.get(1).message().getId());
+        assertThat(other.next()).isEqualTo(HEARTBEAT);
+        assertThat(other.events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(meterRegistry.get("chatstorage.stream.subscribers").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void slowSubscriberShouldBeDisconnectedWhenItsBufferFills() throws InterruptedException {
+        properties.setBufferSize(2);
+        UUID sessionId = UUID.randomUUID();
+        CountDownLatch unblock = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(unblock);
+        hub().subscribe(sessionId, null, slow);
+
+        hub.publish(sessionId, sequenced(1, 2));
+        hub.publish(sessionId, sequenced(3, 1));
+
+        assertThat(hub.hasSubscribers(sessionId)).isFalse();
+        assertThat(meterRegistry.get("chatstorage.stream.subscribers.dropped").counter().count()).isEqualTo(1);
+        // Completed by the blocked write once it returns, not by a dispatcher thread waiting on it.
+        unblock.countDown();
+        assertThat(slow.completed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void stalledSubscriberShouldBeDroppedWithoutHoldingUpOthers() throws InterruptedException {
+        properties.setDispatchThreads(1);
+        properties.setSendTimeout(Duration.ofMillis(50));
+        UUID sessionId = UUID.randomUUID();
+        CountDownLatch unblock = new CountDownLatch(1);
+        RecordingEmitter stalled = new RecordingEmitter(unblock);
+        hub().subscribe(sessionId, null, stalled);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (hub.hasSubscribers(sessionId) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+            hub.dropStalledSubscribers();
+        }
+        RecordingEmitter healthy = new RecordingEmitter();
+        hub.subscribe(sessionId, null, healthy);
+        List<SequencedMessage> messages = sequenced(1, 1);
+        hub.publish(sessionId, messages);
+
+        // The only dispatcher thread is still blocked in the stalled write.
+        assertThat(healthy.next()).isEqualTo(HEARTBEAT);
+        assertThat(healthy.next()).isEqualTo(messages.get(0).message().getId());
+        assertThat(meterRegistry.get("chatstorage.stream.subscribers.dropped").counter().count()).isEqualTo(1);
+        unblock.countDown();
+        assertThat(stalled.completed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void resumingSubscriberShouldReplayMissedMessagesBeforeLiveOnes() throws InterruptedException {
+        UUID sessionId = UUID.randomUUID();
+        KeysetCursor lastSeen = new KeysetCursor(BASE_TIME, UUID.randomUUID());
+        List<ChatMessage> missed = numbered(messages(2, 2), 2);
+        CountDownLatch published = new CountDownLatch(1);
+        when(chatMessageRepository.findSeq(sessionId, lastSeen.id(), lastSeen.timestamp())).thenReturn(Optional.of(1L));
+        when(chatMessageRepository.findAfterSeq(eq(sessionId), eq(1L), any(PageRequest.class)))
+                .thenAnswer(invocation -> {
+                    published.await(5, TimeUnit.SECONDS);
+                    return missed;
+                });
+        RecordingEmitter resuming = new RecordingEmitter();
+        hub().subscribe(sessionId, lastSeen, resuming);
+
+        // The second missed message committed while the replay was reading; it must not be sent twice.
+        List<SequencedMessage> live = sequenced(4, 1);
+        hub.publish(sessionId, List.of(new SequencedMessage(3, toResponse(missed.get(1))), live.get(0)));
+        published.countDown();
+
+        assertThat(resuming.next()).isEqualTo(HEARTBEAT);
+        assertThat(resuming.next()).isEqualTo(missed.get(0).getId());
+        assertThat(resuming.next()).isEqualTo(missed.get(1).getId());
+        assertThat(resuming.next()).isEqualTo(live.get(0).message().getId());
+        assertThat(resuming.events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void liveMessagesShouldBeSentInCommitOrderAndGapsReadFromTheDatabase() throws InterruptedException {
+        UUID sessionId = UUID.randomUUID();
+        when(chatSessionRepository.findMessageSeq(sessionId)).thenReturn(Optional.of(4L));
+        List<ChatMessage> fifth = numbered(messages(5, 1), 5);
+        CountDownLatch gapRead = new CountDownLatch(1);
+        when(chatMessageRepository.findAfterSeq(sessionId, 4L, PageRequest.of(0, 1))).thenAnswer(invocation -> {
+            gapRead.countDown();
+            return fifth;
+        });
+        RecordingEmitter watching = new RecordingEmitter();
+        hub().subscribe(sessionId, null, watching);
+
+        // Already committed when the stream opened.
+        hub.publish(sessionId, sequenced(4, 1));
+        // Number 6 arrives before 5, whose notification is still on its way from another node.
+        List<SequencedMessage> sixth = sequenced(6, 1);
+        hub.publish(sessionId, sixth);
+        assertThat(gapRead.await(5, TimeUnit.SECONDS)).isTrue();
+        hub.publish(sessionId, List.of(new SequencedMessage(5, toResponse(fifth.get(0)))));
+        List<SequencedMessage> seventh = sequenced(7, 1);
+        hub.publish(sessionId, seventh);
+
+        assertThat(watching.next()).isEqualTo(HEARTBEAT);
+        assertThat(watching.next()).isEqualTo(fifth.get(0).getId());
+        assertThat(watching.next()).isEqualTo(sixth.get(0).message().getId());
+        assertThat(watching.next()).isEqualTo(seventh.get(0).message().getId());
+        assertThat(watching.events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void resumingSubscriberShouldReplayInCommitOrder() throws InterruptedException {
+        UUID sessionId = UUID.randomUUID();
+        List<ChatMessage> unsequenced = messages(1, 1);
+        KeysetCursor lastSeen = new KeysetCursor(BASE_TIME, UUID.randomUUID());
+        // The second message committed first, although it was created later.
+        List<ChatMessage> sequenced = messages(2, 2);
+        sequenced.get(1).setSeq(1L);
+        sequenced.get(0).setSeq(2L);
+        when(chatMessageRepository.findUnsequencedAfter(eq(sessionId), eq(lastSeen.timestamp()), eq(lastSeen.id()),
+                any(PageRequest.class))).thenReturn(unsequenced);
+        when(chatMessageRepository.findAfterSeq(eq(sessionId), eq(0L), any(PageRequest.class)))
+                .thenReturn(List.of(sequenced.get(1), sequenced.get(0)));
+        RecordingEmitter fromUnsequenced = new RecordingEmitter();
+        hub().subscribe(sessionId, lastSeen, fromUnsequenced);
+
+        assertThat(fromUnsequenced.next()).isEqualTo(HEARTBEAT);
+        assertThat(fromUnsequenced.next()).isEqualTo(unsequenced.get(0).getId());
+        assertThat(fromUnsequenced.next()).isEqualTo(sequenced.get(1).getId());
+        assertThat(fromUnsequenced.next()).isEqualTo(sequenced.get(0).getId());
+
+        // Resuming from the message numbered 1 must still get the one created before it but committed after.
+        KeysetCursor lastNumbered = new KeysetCursor(sequenced.get(1).getCreatedAt(), sequenced.get(1).getId());
+        when(chatMessageRepository.findSeq(sessionId, lastNumbered.id(), lastNumbered.timestamp()))
+                .thenReturn(Optional.of(1L));
+        when(chatMessageRepository.findAfterSeq(eq(sessionId), eq(1L), any(PageRequest.class)))
+                .thenReturn(List.of(sequenced.get(0)));
+        RecordingEmitter fromNumbered = new RecordingEmitter();
+        hub.subscribe(sessionId, lastNumbered, fromNumbered);
+
+        assertThat(fromNumbered.next()).isEqualTo(HEARTBEAT);
+        assertThat(fromNumbered.next()).isEqualTo(sequenced.get(0).getId());
+        assertThat(fromNumbered.events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void replayShouldStopAtTheResumeLimitAndDisconnect() throws InterruptedException {
+        properties.setResumeLimit(2);
+        UUID sessionId = UUID.randomUUID();
+        KeysetCursor lastSeen = new KeysetCursor(BASE_TIME, UUID.randomUUID());
+        List<ChatMessage> missed = messages(1, 2);
+        when(chatMessageRepository.findUnsequencedAfter(eq(sessionId), eq(lastSeen.timestamp()), eq(lastSeen.id()),
+                eq(PageRequest.of(0, 2)))).thenReturn(missed);
+        RecordingEmitter resuming = new RecordingEmitter();
+
+        hub().subscribe(sessionId, lastSeen, resuming);
+
+        assertThat(resuming.completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(resuming.events).containsExactly(HEARTBEAT, missed.get(0).getId(), missed.get(1).getId());
+    }
+
+    private MessageStreamHub hub() {
+        hub = new MessageStreamHub(chatMessageRepository, chatSessionRepository,
+                new ContextBlobStore(mock(ContextBlobRepository.class), new ContextBlobCacheProperties(), meterRegistry),
+                Mappers.getMapper(ChatMessageMapper.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), properties, meterRegistry);
+        return hub;
+    }
+
+    private static List<ChatMessage> messages(int from, int count) {
+        List<ChatMessage> messages = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            ChatMessage message = new ChatMessage();
+            message.setId(UUID.randomUUID());
+            message.setSender(SenderType.USER);
+            message.setContent("message-" + i);
+            message.setCreatedAt(BASE_TIME.plusSeconds(i));
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static List<ChatMessage> numbered(List<ChatMessage> messages, long firstSeq) {
+        for (int i = 0; i < messages.size(); i++) {
+            messages.get(i).setSeq(firstSeq + i);
+        }
+        return messages;
+    }
+
+    // Numbered from `from`, like the messages of one append.
+    private static List<SequencedMessage> sequenced(int from, int count) {
+        List<SequencedMessage> sequenced = new ArrayList<>();
+        for (ChatMessage message : messages(from, count)) {
+            sequenced.add(new SequencedMessage(from + sequenced.size(), toResponse(message)));
+        }
+        return sequenced;
+    }
+
+    private static ChatMessageResponse toResponse(ChatMessage message) {
+        return Mappers.getMapper(ChatMessageMapper.class).toResponse(message);
+    }
+
+    // Records the id of each message sent, or HEARTBEAT for comments. Sends block until unblock is released.
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final CountDownLatch unblock;
+
+        private RecordingEmitter() {
+            this(new CountDownLatch(0));
+        }
+
+        private RecordingEmitter(CountDownLatch unblock) {
+            this.unblock = unblock;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            try {
+                unblock.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            Object event = HEARTBEAT;
+            for (DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof ChatMessageResponse message) {
+                    event = message.getId();
+                }
+            }
+            events.add(event);
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        private Object next() throws InterruptedException {
+            return events.poll(5, TimeUnit.SECONDS);
+        }
+    }
+}
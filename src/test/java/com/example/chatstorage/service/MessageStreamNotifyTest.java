@@ -0,0 +1,112 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.ChatStorageApplication;
+import com.example.chatstorage.domain.SenderType;
+import com.example.chatstorage.dto.ChatMessageCreateRequest;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.dto.ChatSessionCreateRequest;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Two application contexts on one database stand in for two nodes behind a load balancer.
+@Testcontainers(disabledWithoutDocker = true)
+class MessageStreamNotifyTest {
+
+    private static final String USER_ID = "user-1";
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16");
+
+    private static ConfigurableApplicationContext writer;
+    private static ConfigurableApplicationContext reader;
+
+    @BeforeAll
+    static void start() throws InterruptedException {
+        writer = node();
+        reader = node();
+        JdbcTemplate jdbcTemplate = writer.getBean(JdbcTemplate.class);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (listeners(jdbcTemplate) < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+        }
+    }
+
+    @AfterAll
+    static void stop() {
+        if (reader != null) {
+            reader.close();
+        }
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    @Test
+    void messagesAppendedOnOneNodeShouldReachSubscribersOnAnother() throws InterruptedException {
+        ChatSessionCreateRequest session = new ChatSessionCreateRequest();
+        session.setUserId(USER_ID);
+        session.setTitle("Streamed");
+        UUID sessionId = writer.getBean(ChatSessionService.class).createSession(session).getId();
+        CapturingEmitter emitter = new CapturingEmitter();
+        reader.getBean(MessageStreamHub.class).subscribe(sessionId, null, emitter);
+
+        ChatMessageCreateRequest request = new ChatMessageCreateRequest();
+        request.setSender(SenderType.ASSISTANT);
+        request.setContent("Hello from the other node");
+        ChatMessageResponse added = writer.getBean(ChatMessageService.class).addMessage(sessionId, USER_ID, request);
+
+        ChatMessageResponse received = emitter.messages.poll(10, TimeUnit.SECONDS);
+        assertThat(received).isNotNull();
+        assertThat(received.getId()).isEqualTo(added.getId());
+        assertThat(received.getContent()).isEqualTo("Hello from the other node");
+    }
+
+    private static ConfigurableApplicationContext node() {
+        return new SpringApplicationBuilder(ChatStorageApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + POSTGRES.getJdbcUrl(),
+                        "spring.datasource.username=" + POSTGRES.getUsername(),
+                        "spring.datasource.password=" + POSTGRES.getPassword(),
+                        "message-stream.notify-enabled=true",
+                        "purge.enabled=false")
+                .run();
+    }
+
+    private static long listeners(JdbcTemplate jdbcTemplate) {
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM pg_stat_activity WHERE query = 'LISTEN " + MessageStreamRelay.CHANNEL + "'",
+                Long.class);
+        return count != null ? count : 0;
+    }
+
+    private static final class CapturingEmitter extends SseEmitter {
+
+        private final BlockingQueue<ChatMessageResponse> messages = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            for (DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof ChatMessageResponse message) {
+                    messages.add(message);
+                }
+            }
+        }
+    }
+}
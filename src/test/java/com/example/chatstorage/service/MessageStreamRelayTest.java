@@ -0,0 +1,135 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.ContextBlobCacheProperties;
+import com.example.chatstorage.config.MessageStreamProperties;
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.domain.ChatSession;
+import com.example.chatstorage.domain.SenderType;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.mapper.ChatMessageMapper;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.repository.ContextBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.mockito.ArgumentCaptor;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class MessageStreamRelayTest {
+
+    private MessageStreamHub messageStreamHub;
+    private ChatMessageRepository chatMessageRepository;
+    private JdbcTemplate jdbcTemplate;
+    private MessageStreamRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        messageStreamHub = mock(MessageStreamHub.class);
+        chatMessageRepository = mock(ChatMessageRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        MessageStreamProperties properties = new MessageStreamProperties();
+        properties.setNotifyEnabled(true);
+        relay = new MessageStreamRelay(messageStreamHub, chatMessageRepository,
+                new ContextBlobStore(mock(ContextBlobRepository.class), new ContextBlobCacheProperties(),
+                        new SimpleMeterRegistry()),
+                Mappers.getMapper(ChatMessageMapper.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), jdbcTemplate,
+                new DataSourceProperties(), properties);
+    }
+
+    @Test
+    void publishShouldDeliverLocallyAndNotifyOtherNodesOnFlush() throws SQLException {
+        UUID sessionId = UUID.randomUUID();
+        ChatMessage message = message(sessionId);
+        List<ChatMessageResponse> responses = List.of(toResponse(message));
+
+        relay.publish(sessionId, 1L, responses);
+        relay.flush();
+
+        verify(messageStreamHub).publish(sessionId, List.of(new SequencedMessage(1L, responses.get(0))));
+        String payload = sentPayload();
+        assertThat(payload)
+                .endsWith(" " + sessionId + ":" + message.getId() + ":" + message.getCreatedAt().toInstant());
+
+        // The node's own notification comes back to it and is ignored.
+        relay.receive(new PGNotification[]{notification(payload)});
+        verifyNoInteractions(chatMessageRepository);
+    }
+
+    @Test
+    void notificationsFromOtherNodesShouldLoadOnlyWatchedSessions() {
+        UUID watched = UUID.randomUUID();
+        UUID unwatched = UUID.randomUUID();
+        ChatMessage message = message(watched);
+        message.setSeq(3L);
+        when(messageStreamHub.hasSubscribers(watched)).thenReturn(true);
+        when(chatMessageRepository.findLive(List.of(message.getId()), Set.of(message.getCreatedAt())))
+                .thenReturn(List.of(message));
+
+        relay.receive(new PGNotification[]{notification(UUID.randomUUID()
+                + " " + watched + ":" + message.getId() + ":" + message.getCreatedAt().toInstant()
+                + " " + unwatched + ":" + UUID.randomUUID() + ":" + Instant.now())});
+
+        ArgumentCaptor<List<SequencedMessage>> published = ArgumentCaptor.captor();
+        verify(messageStreamHub).publish(eq(watched), published.capture());
+        assertThat(published.getValue()).extracting(SequencedMessage::seq).containsExactly(3L);
+        assertThat(published.getValue()).extracting(sequenced -> sequenced.message().getId())
+                .containsExactly(message.getId());
+    }
+
+    private String sentPayload() throws SQLException {
+        ArgumentCaptor<PreparedStatementCallback<Boolean>> callback = ArgumentCaptor.captor();
+        verify(jdbcTemplate).execute(anyString(), callback.capture());
+        PreparedStatement statement = mock(PreparedStatement.class);
+        callback.getValue().doInPreparedStatement(statement);
+        ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+        verify(statement).setString(1, MessageStreamRelay.CHANNEL);
+        verify(statement).setString(eq(2), payload.capture());
+        return payload.getValue();
+    }
+
+    private static PGNotification notification(String payload) {
+        PGNotification notification = mock(PGNotification.class);
+        when(notification.getParameter()).thenReturn(payload);
+        return notification;
+    }
+
+    private static ChatMessage message(UUID sessionId) {
+        ChatSession session = new ChatSession();
+        session.setId(sessionId);
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSession(session);
+        message.setSender(SenderType.ASSISTANT);
+        message.setContent("streamed");
+        message.setCreatedAt(OffsetDateTime.now(ZoneOffset.UTC));
+        return message;
+    }
+
+    private static ChatMessageResponse toResponse(ChatMessage message) {
+        return Mappers.getMapper(ChatMessageMapper.class).toResponse(message);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.MessageTailCacheProperties;
+import com.example.chatstorage.domain.SenderType;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageTailCacheTest {
+
+    private static final OffsetDateTime BASE_TIME = OffsetDateTime.of(2024, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    private SimpleMeterRegistry meterRegistry;
+    private MessageTailCache cache;
+    private UUID sessionId;
+
+    @BeforeEach
+    void setUp() {
+        MessageTailCacheProperties properties = new MessageTailCacheProperties();
+        properties.setMessagesPerSession(2);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new MessageTailCache(properties, meterRegistry);
+        sessionId = UUID.randomUUID();
+    }
+
+    @Test
+    void tailShouldKeepOnlyNewestMessagesAsAppendsArrive() {
+        ChatMessageResponse first = message(0);
+        ChatMessageResponse second = message(1);
+        cache.populate(sessionId, cache.epoch(sessionId), 2, List.of(second, first));
+
+        ChatMessageResponse third = message(2);
+        ChatMessageResponse fourth = message(3);
+        cache.append(sessionId, 4, List.of(fourth, third));
+
+        assertThat(cache.latest(sessionId, 4, 2)).containsExactly(fourth, third, second);
+        assertThat(cache.latest(sessionId, 4, 1)).containsExactly(fourth, third);
+    }
+
+    @Test
+    void tailShouldNotBeServedOnceAnotherNodeAppended() {
+        cache.populate(sessionId, cache.epoch(sessionId), 1, List.of(message(0)));
+
+        // Another node committed message 2; this node's append is message 3.
+        assertThat(cache.latest(sessionId, 2, 2)).isNull();
+        cache.append(sessionId, 3, List.of(message(2)));
+        assertThat(cache.latest(sessionId, 3, 2)).isNull();
+
+        ChatMessageResponse newest = message(2);
+        cache.populate(sessionId, cache.epoch(sessionId), 3, List.of(newest, message(1), message(0)));
+
+        assertThat(cache.latest(sessionId, 3, 0)).containsExactly(newest);
+    }
+
+    @Test
+    void duplicateAppendsShouldBeIgnored() {
+        ChatMessageResponse first = message(0);
+        cache.populate(sessionId, cache.epoch(sessionId), 1, List.of(first));
+
+        cache.append(sessionId, 2, List.of(first));
+
+        assertThat(cache.latest(sessionId, 2, 2)).containsExactly(first);
+    }
+
+    @Test
+    void loadShouldBeDiscardedWhenAnAppendCommittedDuringIt() {
+        long epoch = cache.epoch(sessionId);
+        cache.append(sessionId, 2, List.of(message(1)));
+
+        cache.populate(sessionId, epoch, 1, List.of(message(0)));
+
+        assertThat(cache.latest(sessionId, 1, 2)).isNull();
+    }
+
+    @Test
+    void invalidateShouldDropTailAndRejectInFlightLoads() {
+        long epoch = cache.epoch(sessionId);
+        cache.populate(sessionId, epoch, 1, List.of(message(0)));
+        assertThat(meterRegistry.find("chatstorage.message.tail.bytes").gauge()).isNotNull();
+
+        cache.invalidate(sessionId);
+        cache.populate(sessionId, epoch, 1, List.of(message(0)));
+
+        assertThat(cache.latest(sessionId, 1, 2)).isNull();
+    }
+
+    @Test
+    void createdAtTiesShouldFollowTheDatabasesUnsignedUuidOrder() {
+        ChatMessageResponse low = message(0);
+        low.setId(UUID.fromString("7fffffff-ffff-ffff-ffff-ffffffffffff"));
+        ChatMessageResponse high = message(0);
+        high.setId(UUID.fromString("80000000-0000-0000-0000-000000000000"));
+
+        cache.populate(sessionId, cache.epoch(sessionId), 2, List.of(low, high));
+
+        assertThat(cache.latest(sessionId, 2, 2)).containsExactly(high, low);
+    }
+
+    private static ChatMessageResponse message(int index) {
+        ChatMessageResponse message = new ChatMessageResponse();
+        message.setId(UUID.randomUUID());
+        message.setSender(SenderType.USER);
+        message.setContent("message-" + index);
+        message.setCreatedAt(BASE_TIME.plusSeconds(index));
+        return message;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.ArchiveProperties;
+import com.example.chatstorage.config.ContextBlobCacheProperties;
+import com.example.chatstorage.config.EmbeddingProperties;
+import com.example.chatstorage.config.MessageTailCacheProperties;
+import com.example.chatstorage.domain.ChatMessage;
+import com.example.chatstorage.domain.SenderType;
+import com.example.chatstorage.dto.ChatMessageResponse;
+import com.example.chatstorage.mapper.ChatMessageMapper;
+import com.example.chatstorage.repository.ArchiveCandidate;
+import com.example.chatstorage.repository.ArchiveLocation;
+import com.example.chatstorage.repository.ChatMessageEmbeddingRepository;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.repository.ContextBlobRepository;
+import com.example.chatstorage.repository.EmbeddingRow;
+import com.example.chatstorage.repository.SessionArchiveRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionArchiverTest {
+
+    private static final String USER_ID = "user-1";
+    private static final OffsetDateTime CREATED_AT = OffsetDateTime.of(2024, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    @TempDir
+    Path directory;
+
+    private SessionArchiveRepository sessionArchiveRepository;
+    private ChatMessageRepository chatMessageRepository;
+    private ChatMessageEmbeddingRepository embeddingRepository;
+    private EmbeddingIndex embeddingIndex;
+    private SessionArchiver archiver;
+    private MessageArchive messageArchive;
+    // The embeddings table as the index's catch-up reads it.
+    private final List<EmbeddingRow> storedEmbeddings = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        sessionArchiveRepository = mock(SessionArchiveRepository.class);
+        chatMessageRepository = mock(ChatMessageRepository.class);
+        embeddingRepository = mock(ChatMessageEmbeddingRepository.class);
+        doAnswer(invocation -> {
+            Consumer<EmbeddingRow> consumer = invocation.getArgument(2);
+            List.copyOf(storedEmbeddings).forEach(consumer);
+            return null;
+        }).when(embeddingRepository).streamByUser(eq(USER_ID), any(), any());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        EmbeddingProperties embeddingProperties = new EmbeddingProperties();
+        embeddingProperties.setDimensions(4);
+        embeddingIndex = new EmbeddingIndex(embeddingProperties, embeddingRepository, transactionTemplate,
+                meterRegistry);
+        ArchiveProperties archiveProperties = new ArchiveProperties();
+        archiveProperties.setDirectory(directory);
+        ArchiveSegments archiveSegments = new ArchiveSegments(archiveProperties);
+        ContextBlobStore contextBlobStore = new ContextBlobStore(mock(ContextBlobRepository.class),
+                new ContextBlobCacheProperties(), meterRegistry);
+        MessageTailCache messageTailCache = new MessageTailCache(new MessageTailCacheProperties(), meterRegistry);
+        ChatMessageMapper chatMessageMapper = mock(ChatMessageMapper.class);
+        when(chatMessageMapper.toResponse(any())).thenAnswer(invocation -> toResponse(invocation.getArgument(0)));
+        archiver = new SessionArchiver(sessionArchiveRepository, chatMessageRepository, embeddingRepository,
+                mock(ContextBlobRepository.class), contextBlobStore, chatMessageMapper, archiveSegments,
+                messageTailCache, embeddingIndex, transactionTemplate, archiveProperties, meterRegistry);
+        messageArchive = new MessageArchive(sessionArchiveRepository, archiveSegments, contextBlobStore,
+                messageTailCache, embeddingRepository, embeddingIndex);
+    }
+
+    @Test
+    void archivedSessionsShouldLeaveSimilaritySearchUntilRestored() {
+        UUID archivedSession = UUID.randomUUID();
+        UUID activeSession = UUID.randomUUID();
+        ChatMessage archivedMessage = message("Where did we leave the ferry tickets?");
+        EmbeddingRow archivedEmbedding = new EmbeddingRow(archivedMessage.getId(), archivedSession, USER_ID,
+                CREATED_AT, new float[]{1f, 0f, 0f, 0f});
+        EmbeddingRow activeEmbedding = new EmbeddingRow(UUID.randomUUID(), activeSession, USER_ID,
+                CREATED_AT, new float[]{0f, 1f, 0f, 0f});
+        storedEmbeddings.addAll(List.of(archivedEmbedding, activeEmbedding));
+        float[] query = {1f, 0.1f, 0f, 0f};
+
+        assertThat(embeddingIndex.search(USER_ID, null, query, 2)).extracting(HnswIndex.Match::sessionId)
+                .containsExactly(archivedSession, activeSession);
+
+        ArchiveCandidate candidate = new ArchiveCandidate(archivedSession, USER_ID, CREATED_AT);
+        when(sessionArchiveRepository.findCandidates(any(), anyInt())).thenReturn(List.of(candidate));
+        when(chatMessageRepository.findHead(eq(archivedSession), any())).thenReturn(List.of(archivedMessage));
+        when(embeddingRepository.findByMessageIds(List.of(archivedMessage.getId())))
+                .thenReturn(List.of(archivedEmbedding));
+        when(sessionArchiveRepository.markArchived(eq(candidate), any(), any())).thenReturn(true);
+        archiver.archiveIdleSessions();
+        // Deleting the messages cascaded to their embeddings.
+        storedEmbeddings.remove(archivedEmbedding);
+
+        assertThat(embeddingIndex.search(USER_ID, null, query, 2)).extracting(HnswIndex.Match::sessionId)
+                .containsExactly(activeSession);
+        assertThat(embeddingIndex.search(USER_ID, archivedSession, query, 2)).isEmpty();
+
+        ArgumentCaptor<ArchiveLocation> location = ArgumentCaptor.forClass(ArchiveLocation.class);
+        verify(sessionArchiveRepository).markArchived(eq(candidate), location.capture(), any());
+        when(sessionArchiveRepository.unmarkArchived(archivedSession, USER_ID)).thenReturn(true);
+        when(sessionArchiveRepository.find(archivedSession)).thenReturn(Optional.of(location.getValue()));
+        assertThat(messageArchive.restore(archivedSession, USER_ID)).isTrue();
+        verify(embeddingRepository).insertAll(anyList());
+        storedEmbeddings.add(archivedEmbedding);
+
+        assertThat(embeddingIndex.search(USER_ID, null, query, 2)).extracting(HnswIndex.Match::sessionId)
+                .containsExactly(archivedSession, activeSession);
+        assertThat(embeddingIndex.search(USER_ID, archivedSession, query, 2)).extracting(HnswIndex.Match::messageId)
+                .containsExactly(archivedMessage.getId());
+    }
+
+    private static ChatMessage message(String content) {
+        ChatMessage message = new ChatMessage();
+        message.setId(UUID.randomUUID());
+        message.setSender(SenderType.USER);
+        message.setContent(content);
+        message.setCreatedAt(CREATED_AT);
+        return message;
+    }
+
+    private static ChatMessageResponse toResponse(ChatMessage message) {
+        ChatMessageResponse response = new ChatMessageResponse();
+        response.setId(message.getId());
+        response.setSender(message.getSender());
+        response.setContent(message.getContent());
+        response.setContext(message.getContext());
+        response.setCreatedAt(message.getCreatedAt());
+        return response;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.chatstorage.service;
+
+import com.example.chatstorage.config.PurgeProperties;
+import com.example.chatstorage.repository.ChatMessageRepository;
+import com.example.chatstorage.repository.ChatSessionRepository;
+import com.example.chatstorage.repository.ContextBlobRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionPurgerTest {
+
+    private ChatSessionRepository chatSessionRepository;
+    private ChatMessageRepository chatMessageRepository;
+    private ContextBlobRepository contextBlobRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private SessionPurger purger;
+
+    @BeforeEach
+    void setUp() {
+        chatSessionRepository = mock(ChatSessionRepository.class);
+        chatMessageRepository = mock(ChatMessageRepository.class);
+        contextBlobRepository = mock(ContextBlobRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        PurgeProperties properties = new PurgeProperties();
+        properties.setBatchSize(100);
+        properties.setPauseMs(0);
+        purger = new SessionPurger(chatSessionRepository, chatMessageRepository, contextBlobRepository,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), properties, meterRegistry);
+    }
+
+    @Test
+    void shouldDeleteMessagesInBatchesBeforeRemovingTombstone() {
+        UUID sessionId = UUID.randomUUID();
+        when(chatSessionRepository.findPurgeCandidates(10)).thenReturn(List.of(sessionId));
+        when(chatMessageRepository.deleteBatchBySessionId(sessionId, 100)).thenReturn(100, 100, 42);
+
+        purger.purgeDeletedSessions();
+
+        verify(chatMessageRepository, times(3)).deleteBatchBySessionId(sessionId, 100);
+        verify(contextBlobRepository, times(3)).deleteOrphans();
+        verify(chatSessionRepository).deleteTombstone(sessionId);
+        assertThat(meterRegistry.get("chatstorage.purge.messages.deleted").counter().count()).isEqualTo(242);
+        assertThat(meterRegistry.get("chatstorage.purge.sessions.purged").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldDoNothingWithoutTombstones() {
+        when(chatSessionRepository.findPurgeCandidates(10)).thenReturn(List.of());
+
+        purger.purgeDeletedSessions();
+
+        verify(chatSessionRepository, never()).deleteTombstone(any());
+    }
+}